@@ -4,6 +4,7 @@ import com.ct01.crypto.api.dto.*;
 import com.ct01.crypto.application.facade.CryptoApplicationFacade;
 import com.ct01.crypto.application.dto.CoinResult;
 import com.ct01.crypto.domain.Coin;
+import com.ct01.crypto.domain.PriceHistory;
 import com.ct01.crypto.infrastructure.service.ExchangeAdapterService;
 import com.ct01.shared.dto.ApiResponse;
 import com.ct01.shared.exception.ApiErrorCode;
@@ -16,10 +17,18 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +43,10 @@ import java.util.stream.Collectors;
 @Tag(name = "Coins API v1", description = "API для работы с базовой информацией о криптовалютных монетах")
 public class CoinApiController {
     
+    private static final int MAX_STREAM_SYMBOLS = 200;
+    private static final int MAX_STREAM_CONCURRENCY = 16;
+    private static final int MAX_LATEST_SYMBOLS = 500;
+    
     private final CryptoApplicationFacade cryptoFacade;
     private final ExchangeAdapterService exchangeAdapterService;
     
@@ -187,6 +200,53 @@ public class CoinApiController {
             .block(); // Blocking for REST API compatibility
     }
     
+    /**
+     * История цен порциями по токену продолжения
+     */
+    @Operation(
+        summary = "История цен с токеном продолжения",
+        description = "Возвращает историю цен по возрастанию времени. Следующая порция запрашивается по nextCursor; "
+            + "стоимость запроса не зависит от глубины прокрутки. approximateTotal - оценка планировщика, а не точный подсчет",
+        responses = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Порция получена"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректные параметры или токен")
+        }
+    )
+    @GetMapping("/{symbol}/history")
+    public ResponseEntity<ApiResponse<ApiCursorPage<ApiPriceDto>>> getPriceHistory(
+            @Parameter(description = "Символ монеты", example = "BTC")
+            @PathVariable String symbol,
+            @Parameter(description = "Биржа (по умолчанию все)", example = "BINANCE")
+            @RequestParam(required = false) String exchange,
+            @Parameter(description = "Начальная дата и время", example = "2024-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Конечная дата и время", example = "2024-01-31T23:59:59")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Токен продолжения из предыдущего ответа")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер порции", example = "100")
+            @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Вернуть приблизительное общее количество", example = "false")
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            HttpServletRequest request) {
+        
+        log.debug("Запрос истории цен {} на {} с {} по {}, cursor={}", symbol, exchange, from, to, cursor);
+        
+        CoinResult.HistoricalDataSliceResult result = cryptoFacade.getHistoricalDataSlice(
+            symbol.toUpperCase(), exchange, from, to, cursor, limit, includeTotal);
+        
+        ApiCursorPage<ApiPriceDto> page = new ApiCursorPage<>(
+            result.priceHistory().stream().map(ApiPriceDto::from).toList(),
+            result.nextCursor(),
+            result.hasMore(),
+            result.approximateTotal()
+        );
+        return ResponseEntity.ok(
+            ApiResponse.success(page, String.format("Получено %d записей истории", page.content().size()))
+                .withTraceId(getTraceId(request))
+        );
+    }
+    
     /**
      * Получить лучшую цену для монеты
      */
@@ -202,11 +262,13 @@ public class CoinApiController {
     public ResponseEntity<ApiResponse<ApiPriceDto>> getBestPrice(
             @Parameter(description = "Символ монеты", example = "BTC")
             @PathVariable String symbol,
+            @Parameter(description = "Сколько бирж должно ответить (0 - все)", example = "0")
+            @RequestParam(defaultValue = "0") int quorum,
             HttpServletRequest request) {
         
         log.debug("Запрос лучшей цены для символа: {}", symbol);
         
-        return exchangeAdapterService.getBestPrice(symbol)
+        return exchangeAdapterService.getBestPrice(symbol, quorum)
             .map(priceHistory -> {
                 ApiPriceDto priceDto = ApiPriceDto.from(priceHistory);
                 return ResponseEntity.ok(
@@ -232,6 +294,89 @@ public class CoinApiController {
                 "Цена для символа '" + symbol + "' не найдена"));
     }
     
+    /**
+     * Последние сохраненные цены нескольких монет одним запросом
+     */
+    @Operation(
+        summary = "Последние цены по списку монет",
+        description = "Возвращает последние известные цены сразу по нескольким монетам на указанных биржах "
+            + "одним обращением к индексу цен и БД, без запросов к биржам. Монеты без цен перечисляются в сообщении",
+        responses = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Цены получены"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректный список символов")
+        }
+    )
+    @GetMapping("/prices/latest")
+    public ResponseEntity<ApiResponse<Map<String, List<ApiPriceDto>>>> getLatestPrices(
+            @Parameter(description = "Символы монет", example = "BTC,ETH")
+            @RequestParam List<String> symbols,
+            @Parameter(description = "Биржи (по умолчанию все)", example = "BINANCE,OKX")
+            @RequestParam(required = false) List<String> exchanges,
+            HttpServletRequest request) {
+        
+        log.debug("Запрос последних цен для {} символов на биржах {}", symbols.size(), exchanges);
+        
+        Set<String> coinSymbols = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol == null || symbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Символ монеты не может быть пустым");
+            }
+            coinSymbols.add(symbol.trim().toUpperCase());
+        }
+        if (coinSymbols.isEmpty() || coinSymbols.size() > MAX_LATEST_SYMBOLS) {
+            throw new IllegalArgumentException("Количество символов должно быть от 1 до " + MAX_LATEST_SYMBOLS);
+        }
+        Set<String> exchangeNames = exchanges != null ? new LinkedHashSet<>(exchanges) : Set.of();
+        
+        CoinResult.LatestPricesResult result = cryptoFacade.getCurrentPrices(coinSymbols, exchangeNames);
+        
+        Map<String, List<ApiPriceDto>> prices = new LinkedHashMap<>();
+        result.pricesByCoin().forEach((symbol, coinPrices) ->
+            prices.put(symbol, coinPrices.stream().map(ApiPriceDto::from).toList()));
+        
+        String message = result.notFound().isEmpty()
+            ? String.format("Получены цены для %d монет", prices.size())
+            : String.format("Получены цены для %d монет, не найдены: %s",
+                prices.size(), String.join(", ", result.notFound()));
+        return ResponseEntity.ok(
+            ApiResponse.success(prices, message)
+                .withTraceId(getTraceId(request))
+        );
+    }
+    
+    /**
+     * Потоковое получение цен нескольких монет с нескольких бирж
+     */
+    @Operation(
+        summary = "Поток цен по списку монет",
+        description = "Запрашивает цены сразу по нескольким монетам и биржам; цены отдаются в формате NDJSON по мере ответа бирж"
+    )
+    @GetMapping(value = "/prices/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ApiPriceDto> streamPrices(
+            @Parameter(description = "Символы монет", example = "BTC,ETH")
+            @RequestParam List<String> symbols,
+            @Parameter(description = "Биржи (по умолчанию все)", example = "BINANCE,OKX")
+            @RequestParam(required = false) List<String> exchanges,
+            @Parameter(description = "Максимум одновременных запросов к одной бирже", example = "4")
+            @RequestParam(defaultValue = "4") int concurrency,
+            @Parameter(description = "Только лучшая цена по каждой монете после ответа указанного числа бирж (0 - все цены)", example = "0")
+            @RequestParam(defaultValue = "0") int bestOf) {
+        
+        log.debug("Потоковый запрос цен для символов: {}", symbols);
+        
+        if (symbols.isEmpty() || symbols.size() > MAX_STREAM_SYMBOLS) {
+            throw new IllegalArgumentException("Количество символов должно быть от 1 до " + MAX_STREAM_SYMBOLS);
+        }
+        if (concurrency < 1 || concurrency > MAX_STREAM_CONCURRENCY) {
+            throw new IllegalArgumentException("Число одновременных запросов должно быть от 1 до " + MAX_STREAM_CONCURRENCY);
+        }
+        
+        Flux<PriceHistory> prices = bestOf > 0
+            ? exchangeAdapterService.getBestPrices(exchanges, symbols, concurrency, bestOf)
+            : exchangeAdapterService.fetchTickers(exchanges, symbols, concurrency);
+        return prices.map(ApiPriceDto::from);
+    }
+    
     /**
      * Получить статус бирж
      */
@@ -292,6 +437,29 @@ public class CoinApiController {
             .block(); // Blocking for REST API compatibility
     }
     
+    /**
+     * Проверить, торгуется ли пара на бирже
+     */
+    @Operation(
+        summary = "Проверка торговой пары",
+        description = "Проверяет по каталогу в памяти, торгуется ли пара на бирже. Символ без котируемой валюты считается парой к USDT"
+    )
+    @GetMapping("/exchanges/{exchange}/symbols/{symbol}/supported")
+    public ResponseEntity<ApiResponse<Boolean>> isSymbolSupported(
+            @Parameter(description = "Название биржи", example = "BINANCE")
+            @PathVariable String exchange,
+            @Parameter(description = "Торговая пара", example = "BTC-USDT")
+            @PathVariable String symbol,
+            HttpServletRequest request) {
+        
+        boolean supported = exchangeAdapterService.isSymbolSupported(exchange, symbol);
+        return ResponseEntity.ok(
+            ApiResponse.success(supported,
+                String.format("Пара %s %s на бирже %s", symbol, supported ? "торгуется" : "не торгуется", exchange))
+                .withTraceId(getTraceId(request))
+        );
+    }
+    
     // ===== Утилиты =====
     
     /**
@@ -1,17 +1,30 @@
 package com.ct01.crypto.api.controller;
 
 import com.ct01.crypto.api.dto.*;
+import com.ct01.crypto.api.export.PriceHistoryExportFormat;
+import com.ct01.crypto.api.export.PriceHistoryExportThrottle;
+import com.ct01.crypto.api.export.PriceHistoryExportWriter;
 import com.ct01.crypto.application.facade.CryptoApplicationFacade;
 import com.ct01.crypto.application.dto.CoinResult;
 import com.ct01.shared.dto.ApiResponse;
+import com.ct01.shared.exception.ApiErrorCode;
+import com.ct01.shared.exception.ErrorResponse;
+import com.ct01.shared.security.SecurityUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,6 +42,7 @@ import java.util.stream.Collectors;
 public class PriceApiController {
     
     private final CryptoApplicationFacade cryptoFacade;
+    private final PriceHistoryExportThrottle exportThrottle;
     
     /**
      * Получить текущую цену монеты на конкретной бирже
@@ -150,4 +164,171 @@ public class PriceApiController {
             return ApiResponse.success(List.of(), "Исторические данные не найдены");
         }
     }
+    
+    /**
+     * Получить ценовой ряд для графика
+     */
+    @Operation(
+        summary = "Получить ценовой ряд для графика",
+        description = "Возвращает не больше maxPoints точек за любой период: ряд прореживается на сервере "
+            + "методом largest-triangle-three-buckets, сохраняя форму графика. Широкие периоды строятся по свечам",
+        responses = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Ряд получен"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректные параметры")
+        }
+    )
+    @GetMapping("/series/{symbol}")
+    public ApiResponse<ApiPriceSeriesDto> getPriceSeries(
+            @Parameter(description = "Символ монеты", example = "BTC")
+            @PathVariable String symbol,
+            @Parameter(description = "Биржа", example = "BINANCE")
+            @RequestParam String exchange,
+            @Parameter(description = "Начальная дата и время", example = "2024-01-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+            @Parameter(description = "Конечная дата и время", example = "2024-01-31T23:59:59")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+            @Parameter(description = "Максимальное количество точек", example = "500")
+            @RequestParam(defaultValue = "500") int maxPoints) {
+        
+        log.debug("Получение ценового ряда {} на {} с {} по {}, точек не больше {}",
+                 symbol, exchange, fromTime, toTime, maxPoints);
+        
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Символ монеты не может быть пустым");
+        }
+        if (exchange == null || exchange.trim().isEmpty()) {
+            throw new IllegalArgumentException("Биржа не может быть пустой");
+        }
+        if (!fromTime.isBefore(toTime)) {
+            throw new IllegalArgumentException("Начальная дата должна быть меньше конечной");
+        }
+        if (maxPoints < 3 || maxPoints > 5000) {
+            throw new IllegalArgumentException("Количество точек должно быть от 3 до 5000");
+        }
+        
+        CoinResult.PriceSeriesResult result = cryptoFacade.getPriceSeries(
+            symbol.toUpperCase(),
+            exchange.toUpperCase(),
+            fromTime,
+            toTime,
+            maxPoints
+        );
+        
+        ApiPriceSeriesDto series = ApiPriceSeriesDto.from(result);
+        return ApiResponse.success(series,
+            String.format("Получено %d точек из %d", series.points().size(), series.sourcePoints()));
+    }
+    
+    /**
+     * Выгрузить историю цен потоком NDJSON или CSV
+     */
+    @Operation(
+        summary = "Выгрузить историю цен",
+        description = "Построчно выгружает историю цен за период без ограничения объема. "
+            + "Каждая строка содержит id и timestamp: прерванную выгрузку можно продолжить "
+            + "с последней полученной записи через resumeAfter и resumeAfterId",
+        responses = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Выгрузка начата"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Некорректные параметры"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "429", description = "Превышено число одновременных выгрузок")
+        }
+    )
+    @GetMapping("/export/{symbol}")
+    public ResponseEntity<?> exportHistory(
+            @Parameter(description = "Символ монеты", example = "BTC")
+            @PathVariable String symbol,
+            @Parameter(description = "Биржа (все биржи, если не указана)", example = "BINANCE")
+            @RequestParam(required = false) String exchange,
+            @Parameter(description = "Начальная дата и время", example = "2024-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Конечная дата и время", example = "2024-01-31T23:59:59")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Формат: ndjson или csv", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "Сжимать gzip (по умолчанию - по заголовку Accept-Encoding)")
+            @RequestParam(required = false) Boolean gzip,
+            @Parameter(description = "Timestamp последней полученной записи", example = "2024-01-15T10:30:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime resumeAfter,
+            @Parameter(description = "Id последней полученной записи", example = "421")
+            @RequestParam(required = false) Long resumeAfterId,
+            HttpServletRequest request) {
+        
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Символ монеты не может быть пустым");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начальная дата не может быть больше конечной");
+        }
+        if ((resumeAfter == null) != (resumeAfterId == null)) {
+            throw new IllegalArgumentException("resumeAfter и resumeAfterId задаются вместе");
+        }
+        PriceHistoryExportFormat exportFormat = PriceHistoryExportFormat.parse(format);
+        boolean compress = gzip != null ? gzip : acceptsGzip(request);
+        String coinSymbol = symbol.toUpperCase();
+        
+        String userKey = exportUserKey(request);
+        PriceHistoryExportThrottle.Permit permit = exportThrottle.tryAcquire(userKey).orElse(null);
+        if (permit == null) {
+            ErrorResponse error = ErrorResponse.of(HttpStatus.TOO_MANY_REQUESTS.value(),
+                HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                "Превышено число одновременных выгрузок", ApiErrorCode.TOO_MANY_REQUESTS);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(error);
+        }
+        
+        log.debug("Выгрузка истории {} на {} с {} по {} ({}, gzip={}) для {}",
+                 coinSymbol, exchange, from, to, exportFormat, compress, userKey);
+        
+        try {
+            // Слот освобождается по завершении асинхронной обработки, в том числе если тело так и не начало писаться
+            permit.bindTo(request);
+            
+            StreamingResponseBody body = out -> {
+                try (permit) {
+                    PriceHistoryExportWriter writer = PriceHistoryExportWriter.create(exportFormat, out, compress);
+                    cryptoFacade.exportHistoricalData(coinSymbol, exchange, from, to, resumeAfter, resumeAfterId,
+                        price -> {
+                            writer.accept(price);
+                            permit.pace();
+                        });
+                    writer.finish();
+                }
+            };
+            
+            // gzip - кодирование передачи: клиент распаковывает тело сам, поэтому имя файла без .gz
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, String.format("attachment; filename=\"%s-history.%s\"",
+                    coinSymbol.toLowerCase(), exportFormat.getFileExtension()));
+            if (compress) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            if (gzip == null) {
+                response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            return response.body(body);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+    
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+    
+    /**
+     * Ключ лимита выгрузок: имя пользователя, для анонимных запросов - адрес соединения
+     * X-Forwarded-For не используется: клиент может подменять его и обходить лимит
+     */
+    private static String exportUserKey(HttpServletRequest request) {
+        if (SecurityUtils.isAuthenticated()) {
+            Authentication authentication = SecurityUtils.getCurrentAuthentication();
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
 } 
@@ -0,0 +1,25 @@
+package com.ct01.crypto.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * DTO для порции данных с токеном продолжения
+ */
+@Schema(description = "Порция результатов с токеном продолжения")
+public record ApiCursorPage<T>(
+    
+    @Schema(description = "Содержимое порции")
+    List<T> content,
+    
+    @Schema(description = "Токен следующей порции (null на последней порции)", example = "djF8MjAyNC0wMS0xNVQxMDozMHw0MjE")
+    String nextCursor,
+    
+    @Schema(description = "Есть ли следующая порция", example = "true")
+    boolean hasMore,
+    
+    @Schema(description = "Приблизительное общее количество элементов (если запрошено)", example = "125000")
+    Long approximateTotal
+) {
+}
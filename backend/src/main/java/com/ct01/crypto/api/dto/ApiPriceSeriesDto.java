@@ -0,0 +1,56 @@
+package com.ct01.crypto.api.dto;
+
+import com.ct01.crypto.application.dto.CoinResult;
+import com.ct01.crypto.domain.PricePoint;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO прореженного ценового ряда для графика
+ */
+@Schema(description = "Ценовой ряд для графика, прореженный до заданного числа точек")
+public record ApiPriceSeriesDto(
+    
+    @Schema(description = "Символ монеты", example = "BTC")
+    String symbol,
+    
+    @Schema(description = "Биржа", example = "BINANCE")
+    String exchange,
+    
+    @Schema(description = "Разрешение исходных свечей или raw для исходных тиков", example = "1h")
+    String resolution,
+    
+    @Schema(description = "Сколько точек прочитано до прореживания", example = "8760")
+    long sourcePoints,
+    
+    @Schema(description = "Точки ряда по возрастанию времени")
+    List<Point> points
+) {
+    
+    @Schema(description = "Точка ценового ряда")
+    public record Point(
+        @Schema(description = "Время", example = "2024-01-15T10:00:00")
+        LocalDateTime timestamp,
+    
+        @Schema(description = "Цена", example = "45000.50")
+        BigDecimal price
+    ) {
+    }
+    
+    public static ApiPriceSeriesDto from(CoinResult.PriceSeriesResult result) {
+        return new ApiPriceSeriesDto(
+            result.coinSymbol(),
+            result.exchangeName(),
+            result.resolution(),
+            result.sourcePoints(),
+            result.points().stream().map(ApiPriceSeriesDto::toPoint).toList()
+        );
+    }
+    
+    private static Point toPoint(PricePoint point) {
+        return new Point(point.timestamp(), point.price());
+    }
+}
@@ -0,0 +1,38 @@
+package com.ct01.crypto.api.export;
+
+/**
+ * Форматы выгрузки истории цен
+ */
+public enum PriceHistoryExportFormat {
+    
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+    
+    private final String contentType;
+    private final String fileExtension;
+    
+    PriceHistoryExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public String getFileExtension() {
+        return fileExtension;
+    }
+    
+    /**
+     * Формат по имени из запроса (ndjson, csv) без учета регистра
+     */
+    public static PriceHistoryExportFormat parse(String value) {
+        for (PriceHistoryExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value) || format.fileExtension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + value);
+    }
+}
@@ -0,0 +1,155 @@
+package com.ct01.crypto.api.export;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничение выгрузок истории цен на пользователя
+ * Число одновременных выгрузок ограничено жестко, скорость строк - общим для выгрузок пользователя
+ * token bucket: при исчерпании поток выгрузки ждет, а не получает ошибку посреди ответа.
+ * Длинный таймаут асинхронной обработки задается только запросам выгрузки.
+ */
+@Component
+@Slf4j
+public class PriceHistoryExportThrottle {
+    
+    private static final int PACE_CHUNK = 500;
+    
+    private final int rowsPerSecond;
+    private final int maxConcurrentPerUser;
+    private final int paceChunk;
+    private final Duration timeout;
+    private final Map<String, UserState> users = new ConcurrentHashMap<>();
+    
+    public PriceHistoryExportThrottle(@Value("${app.export.rows-per-second:20000}") int rowsPerSecond,
+                                      @Value("${app.export.max-concurrent-per-user:2}") int maxConcurrentPerUser,
+                                      @Value("${app.export.timeout:30m}") Duration timeout) {
+        if (rowsPerSecond <= 0 || maxConcurrentPerUser <= 0 || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Export limits must be positive");
+        }
+        this.rowsPerSecond = rowsPerSecond;
+        this.maxConcurrentPerUser = maxConcurrentPerUser;
+        this.paceChunk = Math.min(PACE_CHUNK, rowsPerSecond);
+        this.timeout = timeout;
+    }
+    
+    /**
+     * Занять слот выгрузки; пусто, если у пользователя уже максимум одновременных выгрузок
+     */
+    public Optional<Permit> tryAcquire(String userKey) {
+        boolean[] acquired = {false};
+        UserState state = users.compute(userKey, (key, current) -> {
+            UserState next = current != null ? current : new UserState(createBucket());
+            if (next.active < maxConcurrentPerUser) {
+                next.active++;
+                acquired[0] = true;
+            }
+            return next;
+        });
+    
+        if (!acquired[0]) {
+            log.debug("Export rejected for {}: {} exports already running", userKey, maxConcurrentPerUser);
+            return Optional.empty();
+        }
+        return Optional.of(new Permit(userKey, state.bucket));
+    }
+    
+    private void release(String userKey) {
+        // Состояние без активных выгрузок удаляется, чтобы карта не росла по числу клиентов
+        users.computeIfPresent(userKey, (key, state) -> --state.active > 0 ? state : null);
+    }
+    
+    private Bucket createBucket() {
+        return Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(rowsPerSecond)
+                        .refillGreedy(rowsPerSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+    }
+    
+    private static final class UserState {
+    
+        private final Bucket bucket;
+        private int active;
+    
+        private UserState(Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+    
+    /**
+     * Слот одной выгрузки; строки учитываются порциями, чтобы не обращаться к bucket на каждую
+     */
+    public final class Permit implements AutoCloseable {
+    
+        private final String userKey;
+        private final Bucket bucket;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private int pending;
+    
+        private Permit(String userKey, Bucket bucket) {
+            this.userKey = userKey;
+            this.bucket = bucket;
+        }
+    
+        /**
+         * Привязать слот к асинхронной обработке запроса: запросу задается таймаут выгрузки,
+         * слот освобождается по завершении, таймауту или обрыву соединения, даже если выгрузка не началась
+         */
+        public void bindTo(HttpServletRequest request) {
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(Permit.class.getName(),
+                    new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                            if (webRequest instanceof AsyncWebRequest asyncWebRequest) {
+                                asyncWebRequest.setTimeout(timeout.toMillis());
+                            }
+                        }
+    
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                            close();
+                        }
+                    });
+        }
+    
+        /**
+         * Учесть отправленную строку, при превышении скорости - подождать
+         */
+        public void pace() {
+            if (++pending < paceChunk) {
+                return;
+            }
+            try {
+                bucket.asBlocking().consume(pending);
+                pending = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Export interrupted", e);
+            }
+        }
+    
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(userKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.ct01.crypto.api.export;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Построчная запись истории цен в поток ответа
+ * Каждая строка содержит id и timestamp - по ним клиент продолжает прерванную выгрузку.
+ */
+public abstract class PriceHistoryExportWriter implements Consumer<PriceHistory> {
+    
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .enable(StreamWriteFeature.WRITE_BIGDECIMAL_AS_PLAIN)
+            .build();
+    
+    private static final int BUFFER_SIZE = 16 * 1024;
+    
+    private final GZIPOutputStream gzip;
+    
+    protected PriceHistoryExportWriter(GZIPOutputStream gzip) {
+        this.gzip = gzip;
+    }
+    
+    /**
+     * Писатель для формата поверх потока ответа, при gzip - со сжатием на лету
+     */
+    public static PriceHistoryExportWriter create(PriceHistoryExportFormat format, OutputStream out,
+                                                  boolean gzip) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        OutputStream target = gzipStream != null ? gzipStream : out;
+        return switch (format) {
+            case NDJSON -> new NdjsonWriter(JSON_FACTORY.createGenerator(target), gzipStream);
+            case CSV -> new CsvWriter(new BufferedWriter(
+                    new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE), gzipStream);
+        };
+    }
+    
+    @Override
+    public void accept(PriceHistory price) {
+        try {
+            write(price);
+        } catch (IOException e) {
+            // Обычно это обрыв соединения клиентом; исключение прерывает чтение курсора
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Дописать буферы и завершить gzip; сам поток ответа не закрывается
+     */
+    public void finish() throws IOException {
+        flush();
+        if (gzip != null) {
+            gzip.finish();
+        }
+    }
+    
+    protected abstract void write(PriceHistory price) throws IOException;
+    
+    protected abstract void flush() throws IOException;
+    
+    private static final class NdjsonWriter extends PriceHistoryExportWriter {
+    
+        private final JsonGenerator generator;
+    
+        NdjsonWriter(JsonGenerator generator, GZIPOutputStream gzip) {
+            super(gzip);
+            this.generator = generator;
+        }
+    
+        @Override
+        protected void write(PriceHistory price) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", price.getId());
+            generator.writeStringField("timestamp", price.getTimestamp().toString());
+            generator.writeStringField("symbol", price.getCoinSymbol());
+            generator.writeStringField("exchange", price.getExchangeName());
+            generator.writeStringField("tradingPair", price.getTradingPair());
+            generator.writeStringField("quoteCurrency", price.getQuoteCurrency());
+            writeDecimal("open", price.getOpenPrice());
+            writeDecimal("high", price.getHighPrice());
+            writeDecimal("low", price.getLowPrice());
+            writeDecimal("close", price.getClosePrice());
+            writeDecimal("volume", price.getVolume());
+            writeDecimal("volumeUsd", price.getVolumeUsd());
+            if (price.getTradesCount() != null) {
+                generator.writeNumberField("tradesCount", price.getTradesCount());
+            } else {
+                generator.writeNullField("tradesCount");
+            }
+            generator.writeStringField("priceType", price.getPriceType());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    
+        private void writeDecimal(String field, BigDecimal value) throws IOException {
+            if (value != null) {
+                generator.writeNumberField(field, value);
+            } else {
+                generator.writeNullField(field);
+            }
+        }
+    
+        @Override
+        protected void flush() throws IOException {
+            generator.flush();
+        }
+    }
+    
+    private static final class CsvWriter extends PriceHistoryExportWriter {
+    
+        private static final String HEADER = "id,timestamp,symbol,exchange,trading_pair,quote_currency,"
+                + "open,high,low,close,volume,volume_usd,trades_count,price_type\n";
+    
+        private final Writer writer;
+        private boolean headerWritten;
+    
+        CsvWriter(Writer writer, GZIPOutputStream gzip) {
+            super(gzip);
+            this.writer = writer;
+        }
+    
+        @Override
+        protected void write(PriceHistory price) throws IOException {
+            writeHeaderOnce();
+            writer.write(String.valueOf(price.getId()));
+            writer.write(',');
+            writer.write(price.getTimestamp().toString());
+            writer.write(',');
+            writeText(price.getCoinSymbol());
+            writeText(price.getExchangeName());
+            writeText(price.getTradingPair());
+            writeText(price.getQuoteCurrency());
+            writeDecimal(price.getOpenPrice());
+            writeDecimal(price.getHighPrice());
+            writeDecimal(price.getLowPrice());
+            writeDecimal(price.getClosePrice());
+            writeDecimal(price.getVolume());
+            writeDecimal(price.getVolumeUsd());
+            if (price.getTradesCount() != null) {
+                writer.write(String.valueOf(price.getTradesCount()));
+            }
+            writer.write(',');
+            writeEscaped(price.getPriceType());
+            writer.write('\n');
+        }
+    
+        private void writeHeaderOnce() throws IOException {
+            if (!headerWritten) {
+                writer.write(HEADER);
+                headerWritten = true;
+            }
+        }
+    
+        private void writeText(String value) throws IOException {
+            writeEscaped(value);
+            writer.write(',');
+        }
+    
+        private void writeDecimal(BigDecimal value) throws IOException {
+            if (value != null) {
+                writer.write(value.toPlainString());
+            }
+            writer.write(',');
+        }
+    
+        private void writeEscaped(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                    && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    
+        @Override
+        protected void flush() throws IOException {
+            // Пустая выгрузка все равно получает строку заголовка
+            writeHeaderOnce();
+            writer.flush();
+        }
+    }
+}
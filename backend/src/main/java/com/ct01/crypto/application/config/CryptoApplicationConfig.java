@@ -5,11 +5,14 @@ import com.ct01.crypto.application.usecase.GetCoinDataUseCase;
 import com.ct01.crypto.application.usecase.GetPriceDataUseCase;
 import com.ct01.crypto.application.usecase.ManageCoinTrackingUseCase;
 import com.ct01.crypto.domain.repository.CoinRepository;
+import com.ct01.crypto.domain.repository.LatestPriceIndex;
+import com.ct01.crypto.domain.repository.PriceCandleRepository;
 import com.ct01.crypto.domain.repository.PriceHistoryRepository;
 import com.ct01.crypto.domain.repository.TrackedCoinRepository;
 import com.ct01.crypto.domain.service.CoinDomainService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  * Конфигурация для Application Services криптовалютного модуля
@@ -43,8 +46,12 @@ public class CryptoApplicationConfig {
      */
     @Bean
     public GetPriceDataUseCase getPriceDataUseCase(
-            PriceHistoryRepository priceHistoryRepository) {
-        return new GetPriceDataUseCase(priceHistoryRepository);
+            PriceHistoryRepository priceHistoryRepository,
+            LatestPriceIndex latestPriceIndex,
+            PriceCandleRepository priceCandleRepository,
+            PlatformTransactionManager transactionManager) {
+        return new GetPriceDataUseCase(priceHistoryRepository, latestPriceIndex, priceCandleRepository,
+                transactionManager);
     }
     
     /**
@@ -103,6 +103,24 @@ public class CoinQuery {
         }
     }
     
+    /**
+     * Запрос последних цен набора монет; exchangeNames пусто - все биржи
+     */
+    public record GetCurrentPricesQuery(
+            Set<String> coinSymbols,
+            Set<String> exchangeNames
+    ) {
+        public GetCurrentPricesQuery {
+            if (coinSymbols == null || coinSymbols.isEmpty()) {
+                throw new IllegalArgumentException("Coin symbols cannot be null or empty");
+            }
+            if (coinSymbols.stream().anyMatch(symbol -> symbol == null || symbol.trim().isEmpty())) {
+                throw new IllegalArgumentException("Coin symbol cannot be null or empty");
+            }
+            exchangeNames = exchangeNames != null ? exchangeNames : Set.of();
+        }
+    }
+    
     /**
      * Запрос для получения исторических данных о цене
      */
@@ -127,6 +145,78 @@ public class CoinQuery {
         }
     }
     
+    /**
+     * Запрос истории цен порциями по токену продолжения
+     */
+    public record GetHistoricalPriceSliceQuery(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            String cursor,
+            Integer limit,
+            boolean includeTotal
+    ) {
+        public GetHistoricalPriceSliceQuery {
+            if (coinSymbol == null || coinSymbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Coin symbol cannot be null or empty");
+            }
+            if (limit != null && (limit <= 0 || limit > 1000)) {
+                throw new IllegalArgumentException("Limit must be between 1 and 1000");
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("From must not be after to");
+            }
+        }
+    }
+    
+    /**
+     * Запрос ценового ряда для графика не длиннее maxPoints точек
+     */
+    public record GetPriceSeriesQuery(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            Integer maxPoints
+    ) {
+        public GetPriceSeriesQuery {
+            if (coinSymbol == null || coinSymbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Coin symbol cannot be null or empty");
+            }
+            if (from == null || to == null || !from.isBefore(to)) {
+                throw new IllegalArgumentException("From must be before to");
+            }
+            if (maxPoints != null && (maxPoints < 3 || maxPoints > 5000)) {
+                throw new IllegalArgumentException("Max points must be between 3 and 5000");
+            }
+        }
+    }
+    
+    /**
+     * Запрос на выгрузку истории цен; resumeAfter/resumeAfterId - последняя полученная запись
+     */
+    public record ExportPriceHistoryQuery(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            LocalDateTime resumeAfter,
+            Long resumeAfterId
+    ) {
+        public ExportPriceHistoryQuery {
+            if (coinSymbol == null || coinSymbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Coin symbol cannot be null or empty");
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("From must not be after to");
+            }
+            if ((resumeAfter == null) != (resumeAfterId == null)) {
+                throw new IllegalArgumentException("Resume position requires both timestamp and id");
+            }
+        }
+    }
+    
     /**
      * Запрос для получения статистики цен
      */
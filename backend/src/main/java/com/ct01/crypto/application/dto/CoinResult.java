@@ -2,6 +2,7 @@ package com.ct01.crypto.application.dto;
 
 import com.ct01.crypto.domain.Coin;
 import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PricePoint;
 import com.ct01.crypto.domain.TrackedCoin;
 import org.springframework.data.domain.Page;
 
@@ -88,7 +89,16 @@ public class CoinResult {
     ) {}
     
     /**
-     * Результат статистики цен
+     * Последние цены набора монет: по монете - цены на биржах, notFound - монеты без цен
+     */
+    public record LatestPricesResult(
+            Map<String, List<PriceHistory>> pricesByCoin,
+            List<String> notFound,
+            LocalDateTime queryTimestamp
+    ) {}
+    
+    /**
+     * Результат статистики цен (vwap и standardDeviation - null, если по части свечей нет нужных сумм)
      */
     public record PriceStatisticsResult(
             String coinSymbol,
@@ -104,16 +114,49 @@ public class CoinResult {
             BigDecimal totalVolume,
             int dataPointsCount,
             LocalDateTime periodStart,
-            LocalDateTime periodEnd
+            LocalDateTime periodEnd,
+            BigDecimal vwap,
+            BigDecimal standardDeviation
     ) {}
     
     /**
-     * Результат исторических данных
+     * Результат исторических данных (resolution - разрешение свечей или "raw" для исходных тиков)
      */
     public record HistoricalDataResult(
             String coinSymbol,
             String exchangeName,
             Page<PriceHistory> priceHistory,
+            LocalDateTime queryTimestamp,
+            String resolution
+    ) {}
+    
+    /**
+     * Порция истории цен; nextCursor - null на последней порции,
+     * approximateTotal - оценка числа записей периода, если она запрашивалась
+     */
+    public record HistoricalDataSliceResult(
+            String coinSymbol,
+            String exchangeName,
+            List<PriceHistory> priceHistory,
+            String nextCursor,
+            Long approximateTotal,
+            LocalDateTime queryTimestamp
+    ) {
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+    
+    /**
+     * Прореженный ценовой ряд для графика; resolution - разрешение исходных свечей или "raw",
+     * sourcePoints - сколько точек прочитано до прореживания
+     */
+    public record PriceSeriesResult(
+            String coinSymbol,
+            String exchangeName,
+            String resolution,
+            List<PricePoint> points,
+            long sourcePoints,
             LocalDateTime queryTimestamp
     ) {}
     
@@ -0,0 +1,45 @@
+package com.ct01.crypto.application.dto;
+
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Токен продолжения для постраничного чтения истории цен
+ * Для клиента это непрозрачная строка: base64url от позиции (timestamp, id) последней записи.
+ */
+public final class PriceHistoryCursor {
+    
+    private static final String VERSION = "v1";
+    private static final char SEPARATOR = '|';
+    
+    private PriceHistoryCursor() {
+    }
+    
+    public static String encode(SeekKey key) {
+        String raw = VERSION + SEPARATOR + key.timestamp() + SEPARATOR + key.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Разобрать токен; null или пустая строка - начало периода
+     */
+    public static SeekKey decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new SeekKey(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Фасад для интеграции application services с существующими контроллерами
@@ -167,6 +168,13 @@ public class CryptoApplicationFacade {
         return getPriceDataUseCase.getCurrentPricesAllExchanges(coinSymbol);
     }
     
+    /**
+     * Получить последние цены набора монет одним обращением
+     */
+    public CoinResult.LatestPricesResult getCurrentPrices(Set<String> coinSymbols, Set<String> exchangeNames) {
+        return getPriceDataUseCase.getCurrentPrices(new CoinQuery.GetCurrentPricesQuery(coinSymbols, exchangeNames));
+    }
+    
     /**
      * Получить исторические данные
      */
@@ -185,6 +193,61 @@ public class CryptoApplicationFacade {
         return getPriceDataUseCase.getHistoricalData(query);
     }
     
+    /**
+     * Получить историю цен порциями по токену продолжения
+     */
+    public CoinResult.HistoricalDataSliceResult getHistoricalDataSlice(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            String cursor,
+            Integer limit,
+            boolean includeTotal) {
+        
+        CoinQuery.GetHistoricalPriceSliceQuery query = new CoinQuery.GetHistoricalPriceSliceQuery(
+            coinSymbol, exchangeName, from, to, cursor, limit, includeTotal
+        );
+        
+        return getPriceDataUseCase.getHistoricalDataSlice(query);
+    }
+    
+    /**
+     * Выгрузить историю цен потребителю, не собирая ее в память
+     */
+    public void exportHistoricalData(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            LocalDateTime resumeAfter,
+            Long resumeAfterId,
+            Consumer<PriceHistory> consumer) {
+        
+        CoinQuery.ExportPriceHistoryQuery query = new CoinQuery.ExportPriceHistoryQuery(
+            coinSymbol, exchangeName, from, to, resumeAfter, resumeAfterId
+        );
+        
+        getPriceDataUseCase.exportHistoricalData(query, consumer);
+    }
+    
+    /**
+     * Получить прореженный ценовой ряд для графика
+     */
+    public CoinResult.PriceSeriesResult getPriceSeries(
+            String coinSymbol,
+            String exchangeName,
+            LocalDateTime from,
+            LocalDateTime to,
+            Integer maxPoints) {
+        
+        CoinQuery.GetPriceSeriesQuery query = new CoinQuery.GetPriceSeriesQuery(
+            coinSymbol, exchangeName, from, to, maxPoints
+        );
+        
+        return getPriceDataUseCase.getPriceSeries(query);
+    }
+    
     /**
      * Получить статистику цен
      */
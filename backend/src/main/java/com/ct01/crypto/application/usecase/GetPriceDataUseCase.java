@@ -2,56 +2,103 @@ package com.ct01.crypto.application.usecase;
 
 import com.ct01.crypto.application.dto.CoinQuery;
 import com.ct01.crypto.application.dto.CoinResult;
+import com.ct01.crypto.application.dto.PriceHistoryCursor;
+import com.ct01.crypto.domain.CandleResolution;
+import com.ct01.crypto.domain.LttbDownsampler;
+import com.ct01.crypto.domain.PriceCandle;
 import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PricePoint;
+import com.ct01.crypto.domain.PriceStatistics;
+import com.ct01.crypto.domain.repository.LatestPriceIndex;
+import com.ct01.crypto.domain.repository.PriceCandleRepository;
 import com.ct01.crypto.domain.repository.PriceHistoryRepository;
-import lombok.RequiredArgsConstructor;
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Use Case для получения данных о ценах
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 @Transactional(readOnly = true)
 public class GetPriceDataUseCase {
     
+    private static final String RAW_RESOLUTION = "raw";
+    private static final int DEFAULT_SERIES_POINTS = 500;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    // Сколько исходных свечей допускается на одну точку ряда: больше - точнее форма, но дольше чтение
+    private static final int SERIES_OVERSAMPLING = 4;
+    
     private final PriceHistoryRepository priceHistoryRepository;
+    private final LatestPriceIndex latestPriceIndex;
+    private final PriceCandleRepository priceCandleRepository;
+    // Чтения из индекса в памяти идут без транзакции; транзакция открывается только на дочитывание из БД
+    private final TransactionTemplate readOnlyTransaction;
+    
+    public GetPriceDataUseCase(PriceHistoryRepository priceHistoryRepository,
+                               LatestPriceIndex latestPriceIndex,
+                               PriceCandleRepository priceCandleRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.priceHistoryRepository = priceHistoryRepository;
+        this.latestPriceIndex = latestPriceIndex;
+        this.priceCandleRepository = priceCandleRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
     
     /**
      * Получить текущую цену монеты на бирже
+     * Цена берется из индекса в памяти, БД - только если пара в индексе отсутствует
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Optional<CoinResult.PriceResult> getCurrentPrice(CoinQuery.GetCurrentPriceQuery query) {
         log.debug("Getting current price for: {} on exchange: {}", query.coinSymbol(), query.exchangeName());
         
-        Optional<PriceHistory> latestPrice = priceHistoryRepository.findLatestPrice(
-            query.coinSymbol(), 
-            query.exchangeName()
-        );
+        Optional<PriceHistory> latestPrice = latestPriceIndex.findLatest(query.coinSymbol(), query.exchangeName())
+            .or(() -> {
+                Optional<PriceHistory> stored = readOnlyTransaction.execute(status ->
+                    priceHistoryRepository.findLatestPrice(query.coinSymbol(), query.exchangeName()));
+                stored.ifPresent(latestPriceIndex::update);
+                return stored;
+            });
         
         return latestPrice.map(this::convertToPriceResult);
     }
     
     /**
      * Получить текущие цены монеты на всех биржах
+     * Пока индекс не знает всех бирж монеты, ее цены дочитываются из БД и сливаются с индексом
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Optional<CoinResult.MultiExchangePriceResult> getCurrentPricesAllExchanges(String coinSymbol) {
         log.debug("Getting current prices for: {} on all exchanges", coinSymbol);
         
-        List<PriceHistory> latestPrices = priceHistoryRepository.findLatestPricesForCoin(coinSymbol);
+        if (!latestPriceIndex.isComplete(coinSymbol)) {
+            loadAllExchanges(List.of(coinSymbol));
+        }
+        List<PriceHistory> latestPrices = latestPriceIndex.findLatestForCoin(coinSymbol);
         
         if (latestPrices.isEmpty()) {
             return Optional.empty();
@@ -77,8 +124,98 @@ public class GetPriceDataUseCase {
         ));
     }
     
+    /**
+     * Получить последние цены набора монет
+     * Цены берутся из индекса в памяти; пары (монета, биржа), которых в нем нет, дочитываются из БД одним запросом
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CoinResult.LatestPricesResult getCurrentPrices(CoinQuery.GetCurrentPricesQuery query) {
+        log.debug("Getting current prices for {} coins on exchanges: {}", 
+                query.coinSymbols().size(), query.exchangeNames());
+        
+        Set<String> exchangeNames = query.exchangeNames();
+        if (exchangeNames.isEmpty()) {
+            List<String> incomplete = query.coinSymbols().stream()
+                .filter(coinSymbol -> !latestPriceIndex.isComplete(coinSymbol))
+                .toList();
+            if (!incomplete.isEmpty()) {
+                loadAllExchanges(incomplete);
+            }
+        } else {
+            loadMissingPairs(query.coinSymbols(), exchangeNames);
+        }
+        
+        Map<String, List<PriceHistory>> found = new HashMap<>();
+        for (String coinSymbol : query.coinSymbols()) {
+            List<PriceHistory> prices = new ArrayList<>();
+            for (PriceHistory price : latestPriceIndex.findLatestForCoin(coinSymbol)) {
+                if (isOnExchanges(price, exchangeNames)) {
+                    prices.add(price);
+                }
+            }
+            if (!prices.isEmpty()) {
+                found.put(coinSymbol.toUpperCase(), prices);
+            }
+        }
+        
+        Map<String, List<PriceHistory>> pricesByCoin = new LinkedHashMap<>();
+        List<String> notFound = new ArrayList<>();
+        for (String coinSymbol : query.coinSymbols()) {
+            List<PriceHistory> prices = found.get(coinSymbol.toUpperCase());
+            if (prices != null) {
+                pricesByCoin.put(coinSymbol, prices);
+            } else {
+                notFound.add(coinSymbol);
+            }
+        }
+        
+        return new CoinResult.LatestPricesResult(pricesByCoin, notFound, LocalDateTime.now());
+    }
+    
+    /**
+     * Дочитать из БД цены монет на всех биржах; индекс оставляет более свежую из двух цен пары
+     */
+    private void loadAllExchanges(Collection<String> coinSymbols) {
+        List<PriceHistory> stored = readOnlyTransaction.execute(status ->
+            priceHistoryRepository.findLatestPrices(coinSymbols, Set.of()));
+        stored.forEach(latestPriceIndex::update);
+        coinSymbols.forEach(latestPriceIndex::markComplete);
+    }
+    
+    /**
+     * Дочитать из БД пары (монета, биржа), которых нет в индексе
+     * Запрос один на все пары; лишние строки перекрестного фильтра индекс примет как обычное обновление
+     */
+    private void loadMissingPairs(Collection<String> coinSymbols, Set<String> exchangeNames) {
+        Set<String> missingCoins = new LinkedHashSet<>();
+        Set<String> missingExchanges = new LinkedHashSet<>();
+        for (String coinSymbol : coinSymbols) {
+            if (latestPriceIndex.isComplete(coinSymbol)) {
+                continue;
+            }
+            for (String exchangeName : exchangeNames) {
+                if (latestPriceIndex.findLatest(coinSymbol, exchangeName).isEmpty()) {
+                    missingCoins.add(coinSymbol);
+                    missingExchanges.add(exchangeName);
+                }
+            }
+        }
+        if (!missingCoins.isEmpty()) {
+            List<PriceHistory> stored = readOnlyTransaction.execute(status ->
+                priceHistoryRepository.findLatestPrices(missingCoins, missingExchanges));
+            stored.forEach(latestPriceIndex::update);
+        }
+    }
+    
+    private static boolean isOnExchanges(PriceHistory price, Set<String> exchangeNames) {
+        return exchangeNames.isEmpty()
+            || exchangeNames.stream().anyMatch(name -> name.equalsIgnoreCase(price.getExchangeName()));
+    }
+    
     /**
      * Получить исторические данные о ценах
+     * Для ограниченного диапазона на одной бирже отдаются свечи самого крупного разрешения,
+     * которое еще заполняет страницу; исходные тики - если диапазон короче страницы минутных свечей
      */
     public CoinResult.HistoricalDataResult getHistoricalData(CoinQuery.GetHistoricalPriceQuery query) {
         log.debug("Getting historical data for: {} on exchange: {} from: {} to: {}", 
@@ -89,6 +226,30 @@ public class GetPriceDataUseCase {
         
         Pageable pageable = PageRequest.of(page, size);
         
+        if (query.exchangeName() != null && query.from() != null && query.to() != null) {
+            Optional<CandleResolution> resolution =
+                CandleResolution.coarsestWithAtLeast(query.from(), query.to(), size);
+            if (resolution.isPresent()) {
+                Page<PriceCandle> candles = priceCandleRepository.findCandles(
+                    query.coinSymbol(),
+                    query.exchangeName(),
+                    resolution.get(),
+                    query.from(),
+                    query.to(),
+                    pageable
+                );
+                if (candles.getTotalElements() > 0) {
+                    return new CoinResult.HistoricalDataResult(
+                        query.coinSymbol(),
+                        query.exchangeName(),
+                        candles.map(PriceCandle::toPriceHistory),
+                        LocalDateTime.now(),
+                        resolution.get().getLabel()
+                    );
+                }
+            }
+        }
+        
         Page<PriceHistory> historicalData = priceHistoryRepository.findHistoricalData(
             query.coinSymbol(),
             query.exchangeName(),
@@ -101,12 +262,137 @@ public class GetPriceDataUseCase {
             query.coinSymbol(),
             query.exchangeName(),
             historicalData,
+            LocalDateTime.now(),
+            RAW_RESOLUTION
+        );
+    }
+    
+    /**
+     * Получить историю цен порцией после токена продолжения
+     * Запрашивается на одну запись больше лимита, чтобы без COUNT(*) знать, есть ли продолжение
+     */
+    public CoinResult.HistoricalDataSliceResult getHistoricalDataSlice(CoinQuery.GetHistoricalPriceSliceQuery query) {
+        log.debug("Getting historical slice for: {} on exchange: {} from: {} to: {} after: {}", 
+                query.coinSymbol(), query.exchangeName(), query.from(), query.to(), query.cursor());
+        
+        int limit = query.limit() != null ? query.limit() : 100;
+        SeekKey after = PriceHistoryCursor.decode(query.cursor());
+        
+        List<PriceHistory> prices = priceHistoryRepository.findHistoricalDataAfter(
+            query.coinSymbol(),
+            query.exchangeName(),
+            query.from(),
+            query.to(),
+            after,
+            limit + 1
+        );
+        
+        String nextCursor = null;
+        if (prices.size() > limit) {
+            prices = prices.subList(0, limit);
+            nextCursor = PriceHistoryCursor.encode(SeekKey.of(prices.get(limit - 1)));
+        }
+        
+        Long approximateTotal = query.includeTotal()
+            ? priceHistoryRepository.estimateHistoricalDataCount(
+                query.coinSymbol(), query.exchangeName(), query.from(), query.to())
+            : null;
+        
+        return new CoinResult.HistoricalDataSliceResult(
+            query.coinSymbol(),
+            query.exchangeName(),
+            prices,
+            nextCursor,
+            approximateTotal,
+            LocalDateTime.now()
+        );
+    }
+    
+    /**
+     * Выгрузить историю цен потребителю по одной записи в порядке (timestamp, id)
+     * Продолжение после обрыва - с позиции последней полученной записи.
+     * Выполняется вне транзакции: порции читаются короткими запросами, и ожидание медленного
+     * клиента не держит курсор и блокировки секций price_history
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportHistoricalData(CoinQuery.ExportPriceHistoryQuery query, Consumer<PriceHistory> consumer) {
+        log.debug("Exporting history for: {} on exchange: {} from: {} to: {} after: {}/{}", 
+                query.coinSymbol(), query.exchangeName(), query.from(), query.to(),
+                query.resumeAfter(), query.resumeAfterId());
+        
+        SeekKey after = query.resumeAfter() != null
+            ? new SeekKey(query.resumeAfter(), query.resumeAfterId())
+            : null;
+        
+        priceHistoryRepository.pageHistoricalData(
+            query.coinSymbol(),
+            query.exchangeName(),
+            query.from(),
+            query.to(),
+            after,
+            EXPORT_PAGE_SIZE,
+            consumer
+        );
+    }
+    
+    /**
+     * Получить ценовой ряд для графика не длиннее maxPoints точек (прореживание LTTB)
+     * Широкий диапазон читается из свечей самого мелкого разрешения, дающего не больше нескольких
+     * свечей на точку ряда, узкий - из исходных тиков; точки идут курсором и сразу прореживаются
+     */
+    public CoinResult.PriceSeriesResult getPriceSeries(CoinQuery.GetPriceSeriesQuery query) {
+        log.debug("Getting price series for: {} on exchange: {} from: {} to: {} max points: {}", 
+                query.coinSymbol(), query.exchangeName(), query.from(), query.to(), query.maxPoints());
+        
+        int maxPoints = query.maxPoints() != null ? query.maxPoints() : DEFAULT_SERIES_POINTS;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime seriesEnd = query.to().isAfter(now) && query.from().isBefore(now) ? now : query.to();
+        
+        if (query.exchangeName() != null
+                && CandleResolution.coarsestWithAtLeast(query.from(), query.to(), maxPoints).isPresent()) {
+            CandleResolution resolution = CandleResolution.finestWithAtMost(
+                query.from(), query.to(), (long) maxPoints * SERIES_OVERSAMPLING);
+            LttbDownsampler downsampler = new LttbDownsampler(maxPoints, seriesEnd);
+            priceCandleRepository.streamCandles(
+                query.coinSymbol(),
+                query.exchangeName(),
+                resolution,
+                query.from(),
+                query.to(),
+                candle -> downsampler.accept(new PricePoint(candle.bucketStart(), candle.closePrice()))
+            );
+            if (downsampler.sourcePoints() > 0) {
+                return toSeriesResult(query, resolution.getLabel(), downsampler);
+            }
+        }
+        
+        LttbDownsampler downsampler = new LttbDownsampler(maxPoints, seriesEnd);
+        priceHistoryRepository.streamHistoricalData(
+            query.coinSymbol(),
+            query.exchangeName(),
+            query.from(),
+            query.to(),
+            null,
+            price -> downsampler.accept(new PricePoint(price.getTimestamp(), price.getClosePrice()))
+        );
+        return toSeriesResult(query, RAW_RESOLUTION, downsampler);
+    }
+    
+    private CoinResult.PriceSeriesResult toSeriesResult(CoinQuery.GetPriceSeriesQuery query, String resolution,
+                                                        LttbDownsampler downsampler) {
+        return new CoinResult.PriceSeriesResult(
+            query.coinSymbol(),
+            query.exchangeName(),
+            resolution,
+            downsampler.finish(),
+            downsampler.sourcePoints(),
             LocalDateTime.now()
         );
     }
     
     /**
      * Получить статистику цен за период
+     * Считается по свечам (несколько десятков строк на сутки), исходные тики - только если свечей нет
      */
     public Optional<CoinResult.PriceStatisticsResult> getPriceStatistics(CoinQuery.GetPriceStatisticsQuery query) {
         log.debug("Getting price statistics for: {} on exchange: {} for {} hours", 
@@ -114,6 +400,19 @@ public class GetPriceDataUseCase {
         
         int hours = query.hours() != null ? query.hours() : 24;
         
+        if (query.exchangeName() != null) {
+            LocalDateTime to = LocalDateTime.now();
+            List<PriceCandle> candles = priceCandleRepository.findCovering(
+                query.coinSymbol(),
+                query.exchangeName(),
+                to.minusHours(hours),
+                to
+            );
+            if (!candles.isEmpty()) {
+                return Optional.of(calculateCandleStatistics(query.coinSymbol(), query.exchangeName(), hours, candles));
+            }
+        }
+        
         List<PriceHistory> recentPrices = priceHistoryRepository.findRecentPricesOnExchange(
             query.coinSymbol(),
             query.exchangeName(),
@@ -213,7 +512,7 @@ public class GetPriceDataUseCase {
     }
     
     /**
-     * Рассчитать статистику цен
+     * Рассчитать статистику цен за один проход по тикам, без сортировки
      */
     private CoinResult.PriceStatisticsResult calculateStatistics(String coinSymbol, String exchangeName, 
                                                                int hours, List<PriceHistory> prices) {
@@ -221,46 +520,28 @@ public class GetPriceDataUseCase {
             throw new IllegalArgumentException("No price data available for statistics");
         }
         
-        // Сортируем по времени
-        prices = prices.stream()
-            .sorted((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
-            .toList();
-        
-        PriceHistory firstPrice = prices.get(0);
-        PriceHistory lastPrice = prices.get(prices.size() - 1);
-        
-        BigDecimal highPrice = prices.stream()
-            .map(PriceHistory::getHighPrice)
-            .filter(price -> price != null)
-            .max(BigDecimal::compareTo)
-            .orElse(BigDecimal.ZERO);
-        
-        BigDecimal lowPrice = prices.stream()
-            .map(PriceHistory::getLowPrice)
-            .filter(price -> price != null)
-            .min(BigDecimal::compareTo)
-            .orElse(BigDecimal.ZERO);
-        
-        BigDecimal averagePrice = prices.stream()
-            .map(PriceHistory::getClosePrice)
-            .filter(price -> price != null)
-            .reduce(BigDecimal.ZERO, BigDecimal::add)
-            .divide(BigDecimal.valueOf(prices.size()), 8, RoundingMode.HALF_UP);
-        
-        BigDecimal totalVolume = prices.stream()
-            .map(PriceHistory::getVolume)
-            .filter(volume -> volume != null)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal priceChange = BigDecimal.ZERO;
+        return toStatisticsResult(coinSymbol, exchangeName, hours, prices.stream().collect(PriceStatistics.collector()));
+    }
+    
+    /**
+     * Рассчитать статистику цен, сливая суммы свечей
+     */
+    private CoinResult.PriceStatisticsResult calculateCandleStatistics(String coinSymbol, String exchangeName,
+                                                                     int hours, List<PriceCandle> candles) {
+        PriceStatistics stats = new PriceStatistics();
+        for (PriceCandle candle : candles) {
+            stats.add(candle);
+        }
+        return toStatisticsResult(coinSymbol, exchangeName, hours, stats);
+    }
+    
+    private CoinResult.PriceStatisticsResult toStatisticsResult(String coinSymbol, String exchangeName,
+                                                                int hours, PriceStatistics stats) {
+        BigDecimal priceChange = stats.last().subtract(stats.first());
         BigDecimal priceChangePercent = BigDecimal.ZERO;
-        
-        if (firstPrice.getClosePrice() != null && lastPrice.getClosePrice() != null 
-            && firstPrice.getClosePrice().compareTo(BigDecimal.ZERO) > 0) {
-            
-            priceChange = lastPrice.getClosePrice().subtract(firstPrice.getClosePrice());
+        if (stats.first().signum() > 0) {
             priceChangePercent = priceChange
-                .divide(firstPrice.getClosePrice(), 8, RoundingMode.HALF_UP)
+                .divide(stats.first(), 8, RoundingMode.HALF_UP)
                 .multiply(BigDecimal.valueOf(100));
         }
         
@@ -268,17 +549,19 @@ public class GetPriceDataUseCase {
             coinSymbol,
             exchangeName,
             hours,
-            highPrice,
-            lowPrice,
-            averagePrice,
-            firstPrice.getClosePrice(),
-            lastPrice.getClosePrice(),
+            stats.high(),
+            stats.low(),
+            stats.mean(),
+            stats.first(),
+            stats.last(),
             priceChange,
             priceChangePercent,
-            totalVolume,
-            prices.size(),
-            firstPrice.getTimestamp(),
-            lastPrice.getTimestamp()
+            stats.volume(),
+            (int) Math.min(stats.count(), Integer.MAX_VALUE),
+            stats.firstAt(),
+            stats.lastAt(),
+            stats.vwap(),
+            stats.standardDeviation()
         );
     }
-} 
+}
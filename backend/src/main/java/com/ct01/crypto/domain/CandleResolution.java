@@ -0,0 +1,86 @@
+package com.ct01.crypto.domain;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Разрешение свечей OHLCV
+ * Границы свечей выровнены по эпохе, поэтому свеча старшего разрешения состоит из целых младших.
+ */
+public enum CandleResolution {
+    
+    M1("1m", Duration.ofMinutes(1)),
+    M5("5m", Duration.ofMinutes(5)),
+    H1("1h", Duration.ofHours(1)),
+    D1("1d", Duration.ofDays(1));
+    
+    private static final List<CandleResolution> COARSEST_FIRST = List.of(D1, H1, M5, M1);
+    
+    private final String label;
+    private final Duration duration;
+    
+    CandleResolution(String label, Duration duration) {
+        this.label = label;
+        this.duration = duration;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public Duration getDuration() {
+        return duration;
+    }
+    
+    /**
+     * Начало свечи, в которую попадает момент времени
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        long step = duration.getSeconds();
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(seconds, step) * step, 0, ZoneOffset.UTC);
+    }
+    
+    /**
+     * Начало первой свечи, которая начинается не раньше момента времени
+     */
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime start = truncate(time);
+        return start.equals(time) ? start : start.plus(duration);
+    }
+    
+    /**
+     * Разрешения от крупного к мелкому
+     */
+    public static List<CandleResolution> coarsestFirst() {
+        return COARSEST_FIRST;
+    }
+    
+    /**
+     * Самое крупное разрешение, дающее на диапазоне не меньше points свечей;
+     * пусто, если даже минутных свечей меньше (нужны исходные тики)
+     */
+    public static Optional<CandleResolution> coarsestWithAtLeast(LocalDateTime from, LocalDateTime to, int points) {
+        long rangeSeconds = Duration.between(from, to).getSeconds();
+        return COARSEST_FIRST.stream()
+                .filter(resolution -> rangeSeconds / resolution.duration.getSeconds() >= points)
+                .findFirst();
+    }
+    
+    /**
+     * Самое мелкое разрешение, дающее на диапазоне не больше points свечей; суточное, если таких нет
+     */
+    public static CandleResolution finestWithAtMost(LocalDateTime from, LocalDateTime to, long points) {
+        long rangeSeconds = Duration.between(from, to).getSeconds();
+        for (int i = COARSEST_FIRST.size() - 1; i > 0; i--) {
+            CandleResolution resolution = COARSEST_FIRST.get(i);
+            if (rangeSeconds / resolution.duration.getSeconds() <= points) {
+                return resolution;
+            }
+        }
+        return COARSEST_FIRST.get(0);
+    }
+}
@@ -0,0 +1,156 @@
+package com.ct01.crypto.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Десятичные числа с фиксированной точкой: long мантисса и отдельный масштаб
+ * Разбор строк биржи идет напрямую в мантиссу, без BigDecimal и промежуточных строк;
+ * дробная часть сверх масштаба округляется HALF_UP, как при записи в NUMERIC.
+ */
+public final class FixedPoint {
+    
+    /**
+     * Мантисса отсутствующего или неразборчивого значения
+     */
+    public static final long NONE = Long.MIN_VALUE;
+    
+    /**
+     * Масштаб колонок цен и объемов в БД
+     */
+    public static final int MAX_SCALE = 8;
+    
+    private static final int MAX_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+    
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    
+    private FixedPoint() {
+    }
+    
+    /**
+     * Масштаб, достаточный для числа без хвостовых нулей дробной части, не больше maxScale
+     * и не больше, чем помещается в 18 цифр мантиссы; -1 - строка не число или не помещается в long
+     */
+    public static int scaleOf(char[] chars, int offset, int length, int maxScale) {
+        int end = offset + length;
+        int i = offset;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        int integerStart = i;
+        while (i < end && chars[i] == '0') {
+            i++;
+        }
+        int integerDigits = 0;
+        boolean digits = i > integerStart;
+        while (i < end && isDigit(chars[i])) {
+            integerDigits++;
+            digits = true;
+            i++;
+        }
+        int significantFraction = 0;
+        if (i < end && chars[i] == '.') {
+            i++;
+            int fraction = 0;
+            while (i < end && isDigit(chars[i])) {
+                fraction++;
+                digits = true;
+                if (chars[i] != '0') {
+                    significantFraction = fraction;
+                }
+                i++;
+            }
+        }
+        if (i != end || !digits || integerDigits > MAX_DIGITS) {
+            return -1;
+        }
+        return Math.min(significantFraction, Math.min(maxScale, MAX_DIGITS - integerDigits));
+    }
+    
+    /**
+     * Мантисса числа в заданном масштабе; NONE - строка не число или не помещается в long
+     */
+    public static long parse(char[] chars, int offset, int length, int scale) {
+        if (scale < 0 || scale > MAX_DIGITS) {
+            return NONE;
+        }
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        while (i < end && isDigit(chars[i])) {
+            mantissa = mantissa * 10 + (chars[i] - '0');
+            if (mantissa != 0 && ++significant > MAX_DIGITS - scale) {
+                return NONE;
+            }
+            digits++;
+            i++;
+        }
+        int fraction = 0;
+        boolean roundUp = false;
+        if (i < end && chars[i] == '.') {
+            i++;
+            while (i < end && isDigit(chars[i])) {
+                if (fraction < scale) {
+                    mantissa = mantissa * 10 + (chars[i] - '0');
+                } else if (fraction == scale) {
+                    roundUp = chars[i] >= '5';
+                }
+                fraction++;
+                digits++;
+                i++;
+            }
+        }
+        if (i != end || digits == 0) {
+            return NONE;
+        }
+        if (fraction < scale) {
+            mantissa *= POWERS_OF_TEN[scale - fraction];
+        }
+        if (roundUp) {
+            mantissa++;
+        }
+        return negative ? -mantissa : mantissa;
+    }
+    
+    /**
+     * Мантисса значения в заданном масштабе; NONE для null и значений, не помещающихся в long
+     */
+    public static long of(BigDecimal value, int scale) {
+        if (value == null) {
+            return NONE;
+        }
+        BigDecimal scaled = value.setScale(scale, RoundingMode.HALF_UP);
+        return scaled.precision() <= MAX_DIGITS ? scaled.unscaledValue().longValue() : NONE;
+    }
+    
+    /**
+     * Масштаб значения без хвостовых нулей, не больше maxScale
+     */
+    public static int scaleOf(BigDecimal value, int maxScale) {
+        if (value == null) {
+            return 0;
+        }
+        return Math.max(0, Math.min(value.stripTrailingZeros().scale(), maxScale));
+    }
+    
+    public static BigDecimal toBigDecimal(long mantissa, int scale) {
+        return mantissa != NONE ? BigDecimal.valueOf(mantissa, scale) : null;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
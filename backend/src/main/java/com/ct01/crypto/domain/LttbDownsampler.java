@@ -0,0 +1,155 @@
+package com.ct01.crypto.domain;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Прореживание ценового ряда до maxPoints точек методом largest-triangle-three-buckets
+ * Точки принимаются по одной в порядке времени. Пока их не больше maxPoints, ряд отдается как есть;
+ * дальше период от первой точки до to делится на maxPoints - 2 равных по времени корзины,
+ * и из каждой берется точка, дающая наибольший треугольник с выбранной точкой предыдущей корзины
+ * и средней точкой следующей. В памяти одновременно только две корзины.
+ */
+public final class LttbDownsampler implements Consumer<PricePoint> {
+    
+    private final int maxPoints;
+    private final double toSeconds;
+    private final List<PricePoint> result = new ArrayList<>();
+    
+    private List<PricePoint> buffered = new ArrayList<>();
+    private long sourcePoints;
+    private double fromSeconds;
+    private double bucketWidth;
+    private PricePoint anchor;
+    private PricePoint pending;
+    private Bucket previous;
+    private Bucket current;
+    
+    public LttbDownsampler(int maxPoints, LocalDateTime to) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("Max points must be at least 3");
+        }
+        this.maxPoints = maxPoints;
+        this.toSeconds = seconds(to);
+    }
+    
+    @Override
+    public void accept(PricePoint point) {
+        sourcePoints++;
+        if (buffered == null) {
+            place(point);
+            return;
+        }
+        buffered.add(point);
+        if (buffered.size() > maxPoints) {
+            List<PricePoint> points = buffered;
+            buffered = null;
+            fromSeconds = seconds(points.get(0).timestamp());
+            bucketWidth = Math.max(toSeconds - fromSeconds, 1) / (maxPoints - 2);
+            points.forEach(this::place);
+        }
+    }
+    
+    /**
+     * Прореженный ряд; вызывается один раз после последней точки
+     */
+    public List<PricePoint> finish() {
+        if (buffered != null) {
+            return List.copyOf(buffered);
+        }
+        if (current != null) {
+            close();
+        }
+        if (previous != null) {
+            select(previous, seconds(pending.timestamp()), pending.price().doubleValue());
+        }
+        result.add(pending);
+        return List.copyOf(result);
+    }
+    
+    /**
+     * Сколько точек получено на вход
+     */
+    public long sourcePoints() {
+        return sourcePoints;
+    }
+    
+    private void place(PricePoint point) {
+        if (anchor == null) {
+            anchor = point;
+            result.add(point);
+            return;
+        }
+        // Последняя точка ряда сохраняется отдельно, поэтому в корзину точка попадает с отставанием на одну
+        if (pending != null) {
+            addToBucket(pending);
+        }
+        pending = point;
+    }
+    
+    private void addToBucket(PricePoint point) {
+        double x = seconds(point.timestamp());
+        int index = (int) Math.min(Math.max((x - fromSeconds) / bucketWidth, 0), maxPoints - 3);
+        if (current != null && current.index != index) {
+            close();
+        }
+        if (current == null) {
+            current = new Bucket(index);
+        }
+        current.add(point, x);
+    }
+    
+    /**
+     * Закрыть текущую корзину: ее средняя точка позволяет выбрать точку предыдущей
+     */
+    private void close() {
+        if (previous != null) {
+            select(previous, current.sumX / current.points.size(), current.sumY / current.points.size());
+        }
+        previous = current;
+        current = null;
+    }
+    
+    private void select(Bucket bucket, double nextX, double nextY) {
+        double anchorX = seconds(anchor.timestamp());
+        double anchorY = anchor.price().doubleValue();
+        PricePoint selected = bucket.points.get(0);
+        double maxArea = -1;
+        for (PricePoint point : bucket.points) {
+            double x = seconds(point.timestamp());
+            double y = point.price().doubleValue();
+            double area = Math.abs((anchorX - nextX) * (y - anchorY) - (anchorX - x) * (nextY - anchorY));
+            if (area > maxArea) {
+                maxArea = area;
+                selected = point;
+            }
+        }
+        result.add(selected);
+        anchor = selected;
+    }
+    
+    private static double seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) + time.getNano() / 1e9;
+    }
+    
+    private static final class Bucket {
+    
+        private final int index;
+        private final List<PricePoint> points = new ArrayList<>();
+        private double sumX;
+        private double sumY;
+    
+        Bucket(int index) {
+            this.index = index;
+        }
+    
+        void add(PricePoint point, double x) {
+            points.add(point);
+            sumX += x;
+            sumY += point.price().doubleValue();
+        }
+    }
+}
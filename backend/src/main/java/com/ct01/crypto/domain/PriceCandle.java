@@ -0,0 +1,55 @@
+package com.ct01.crypto.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Свеча OHLCV пары (монета, биржа) за один интервал разрешения
+ * closeSum и tickCount хранятся вместе со свечой, чтобы средняя цена по нескольким свечам
+ * считалась точно, а не как среднее средних; суммы квадратов и цена*объем так же дают
+ * отклонение и VWAP (null у свечей, накопленных до их появления).
+ */
+public record PriceCandle(
+        String coinSymbol,
+        String exchangeName,
+        CandleResolution resolution,
+        LocalDateTime bucketStart,
+        String tradingPair,
+        String quoteCurrency,
+        BigDecimal openPrice,
+        BigDecimal highPrice,
+        BigDecimal lowPrice,
+        BigDecimal closePrice,
+        BigDecimal volume,
+        BigDecimal closeSum,
+        Double closeSquareSum,
+        Double priceVolumeSum,
+        long tickCount,
+        LocalDateTime firstTickAt,
+        LocalDateTime lastTickAt
+) {
+    
+    public static final String PRICE_TYPE = "CANDLE";
+    
+    /**
+     * Свеча в виде записи истории цен (время записи - начало свечи)
+     */
+    public PriceHistory toPriceHistory() {
+        return new PriceHistory(
+                null,
+                coinSymbol,
+                exchangeName,
+                tradingPair != null ? tradingPair : coinSymbol,
+                quoteCurrency,
+                bucketStart,
+                openPrice,
+                highPrice,
+                lowPrice,
+                closePrice,
+                volume,
+                null,
+                null,
+                PRICE_TYPE
+        );
+    }
+}
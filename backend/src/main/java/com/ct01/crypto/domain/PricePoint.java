@@ -0,0 +1,10 @@
+package com.ct01.crypto.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Точка ценового ряда для графика
+ */
+public record PricePoint(LocalDateTime timestamp, BigDecimal price) {
+}
@@ -0,0 +1,182 @@
+package com.ct01.crypto.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.stream.Collector;
+
+/**
+ * Накопитель статистики цен за один проход: high/low, средняя, VWAP, объем, стандартное отклонение,
+ * первая/последняя цена и количество тиков
+ * Накопители сливаются в любом порядке (свечи, секции, части параллельного потока), поэтому вход
+ * не нужно сортировать: первая и последняя цена выбираются по времени. Суммы квадратов и цена*объем
+ * ведутся в double; если часть входа их не несет (свечи до их появления), VWAP и отклонение неизвестны.
+ */
+public final class PriceStatistics {
+    
+    private static final int SCALE = 8;
+    
+    private long count;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal first;
+    private BigDecimal last;
+    private LocalDateTime firstAt;
+    private LocalDateTime lastAt;
+    private BigDecimal closeSum = BigDecimal.ZERO;
+    private BigDecimal volume = BigDecimal.ZERO;
+    private double closeSquareSum;
+    private double priceVolumeSum;
+    private boolean momentsKnown = true;
+    
+    /**
+     * Сборщик для потоков, в том числе параллельных
+     */
+    public static Collector<PriceHistory, PriceStatistics, PriceStatistics> collector() {
+        return Collector.of(PriceStatistics::new, PriceStatistics::add, PriceStatistics::merge,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+    
+    /**
+     * Учесть тик; у тикера high/low - экстремумы биржи за 24 часа, поэтому берется сама цена
+     */
+    public PriceStatistics add(PriceHistory price) {
+        BigDecimal close = price.getClosePrice();
+        boolean ticker = "TICKER".equals(price.getPriceType());
+        BigDecimal tickHigh = ticker || price.getHighPrice() == null ? close : price.getHighPrice();
+        BigDecimal tickLow = ticker || price.getLowPrice() == null ? close : price.getLowPrice();
+        BigDecimal tickVolume = price.getVolume() != null ? price.getVolume() : BigDecimal.ZERO;
+    
+        double closeValue = close.doubleValue();
+        accumulate(1, tickHigh, tickLow, close, price.getTimestamp(), close, price.getTimestamp(),
+                close, tickVolume, closeValue * closeValue, closeValue * tickVolume.doubleValue(), true);
+        return this;
+    }
+    
+    /**
+     * Учесть свечу целиком: ее суммы складываются, open/close становятся кандидатами в первую/последнюю цену
+     */
+    public PriceStatistics add(PriceCandle candle) {
+        boolean known = candle.closeSquareSum() != null && candle.priceVolumeSum() != null;
+        accumulate(candle.tickCount(), candle.highPrice(), candle.lowPrice(),
+                candle.openPrice(), candle.firstTickAt(), candle.closePrice(), candle.lastTickAt(),
+                candle.closeSum(), candle.volume(),
+                known ? candle.closeSquareSum() : 0, known ? candle.priceVolumeSum() : 0, known);
+        return this;
+    }
+    
+    /**
+     * Слить другой накопитель в этот
+     */
+    public PriceStatistics merge(PriceStatistics other) {
+        if (!other.isEmpty()) {
+            accumulate(other.count, other.high, other.low, other.first, other.firstAt, other.last, other.lastAt,
+                    other.closeSum, other.volume, other.closeSquareSum, other.priceVolumeSum, other.momentsKnown);
+        }
+        return this;
+    }
+    
+    private void accumulate(long addedCount, BigDecimal addedHigh, BigDecimal addedLow,
+                            BigDecimal addedFirst, LocalDateTime addedFirstAt,
+                            BigDecimal addedLast, LocalDateTime addedLastAt,
+                            BigDecimal addedCloseSum, BigDecimal addedVolume,
+                            double addedCloseSquareSum, double addedPriceVolumeSum, boolean addedMomentsKnown) {
+        high = high == null ? addedHigh : high.max(addedHigh);
+        low = low == null ? addedLow : low.min(addedLow);
+        if (firstAt == null || addedFirstAt.isBefore(firstAt)) {
+            firstAt = addedFirstAt;
+            first = addedFirst;
+        }
+        if (lastAt == null || !addedLastAt.isBefore(lastAt)) {
+            lastAt = addedLastAt;
+            last = addedLast;
+        }
+        count += addedCount;
+        closeSum = closeSum.add(addedCloseSum);
+        volume = volume.add(addedVolume);
+        closeSquareSum += addedCloseSquareSum;
+        priceVolumeSum += addedPriceVolumeSum;
+        momentsKnown &= addedMomentsKnown;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    public long count() {
+        return count;
+    }
+    
+    public BigDecimal high() {
+        return high;
+    }
+    
+    public BigDecimal low() {
+        return low;
+    }
+    
+    public BigDecimal first() {
+        return first;
+    }
+    
+    public BigDecimal last() {
+        return last;
+    }
+    
+    public LocalDateTime firstAt() {
+        return firstAt;
+    }
+    
+    public LocalDateTime lastAt() {
+        return lastAt;
+    }
+    
+    public BigDecimal closeSum() {
+        return closeSum;
+    }
+    
+    public BigDecimal volume() {
+        return volume;
+    }
+    
+    /**
+     * Сумма квадратов цен закрытия; null, если неизвестна
+     */
+    public Double closeSquareSum() {
+        return momentsKnown ? closeSquareSum : null;
+    }
+    
+    /**
+     * Сумма цена*объем; null, если неизвестна
+     */
+    public Double priceVolumeSum() {
+        return momentsKnown ? priceVolumeSum : null;
+    }
+    
+    public BigDecimal mean() {
+        return count > 0 ? closeSum.divide(BigDecimal.valueOf(count), SCALE, RoundingMode.HALF_UP) : null;
+    }
+    
+    /**
+     * Средняя цена, взвешенная по объему; null без объема или сумм
+     */
+    public BigDecimal vwap() {
+        double totalVolume = volume.doubleValue();
+        if (!momentsKnown || count == 0 || totalVolume <= 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(priceVolumeSum / totalVolume).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * Стандартное отклонение цены закрытия по генеральной совокупности
+     */
+    public BigDecimal standardDeviation() {
+        if (!momentsKnown || count == 0) {
+            return null;
+        }
+        double mean = closeSum.doubleValue() / count;
+        double variance = Math.max(0, closeSquareSum / count - mean * mean);
+        return BigDecimal.valueOf(Math.sqrt(variance)).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ct01.crypto.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Компактный тик цены для внутренних потоков: мантиссы с фиксированной точкой и время в epoch nanos
+ * Масштаб задает биржа точностью котировки символа; в PriceHistory тик переводится только
+ * на границе записи в БД и ответа API.
+ */
+public record PriceTick(
+        String coinSymbol,
+        String exchangeName,
+        String quoteCurrency,
+        long epochNanos,
+        long price,
+        int priceScale,
+        long volume,
+        int volumeScale,
+        long change24h,
+        int change24hScale
+) {
+    
+    public static final String PRICE_TYPE = "TICKER";
+    
+    public PriceTick {
+        Objects.requireNonNull(coinSymbol, "Coin symbol cannot be null");
+        Objects.requireNonNull(exchangeName, "Exchange name cannot be null");
+        if (price == FixedPoint.NONE || price <= 0) {
+            throw new IllegalArgumentException("Close price must be positive");
+        }
+        if (volume != FixedPoint.NONE && volume < 0) {
+            throw new IllegalArgumentException("Volume cannot be negative");
+        }
+    }
+    
+    /**
+     * Тик из записи истории цен; используется источниками, у которых нет сырых строк биржи
+     */
+    public static PriceTick of(PriceHistory price) {
+        int priceScale = FixedPoint.scaleOf(price.getClosePrice(), FixedPoint.MAX_SCALE);
+        int volumeScale = FixedPoint.scaleOf(price.getVolume(), FixedPoint.MAX_SCALE);
+        Instant instant = price.getTimestamp().atZone(ZoneId.systemDefault()).toInstant();
+        return new PriceTick(
+                price.getCoinSymbol(),
+                price.getExchangeName(),
+                price.getQuoteCurrency(),
+                instant.getEpochSecond() * 1_000_000_000L + instant.getNano(),
+                FixedPoint.of(price.getClosePrice(), priceScale),
+                priceScale,
+                FixedPoint.of(price.getVolume(), volumeScale),
+                volumeScale,
+                FixedPoint.NONE,
+                0
+        );
+    }
+    
+    public BigDecimal closePrice() {
+        return FixedPoint.toBigDecimal(price, priceScale);
+    }
+    
+    public LocalDateTime timestamp() {
+        return LocalDateTime.ofInstant(
+                Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L)),
+                ZoneId.systemDefault());
+    }
+    
+    /**
+     * Запись истории цен для сохранения: тикер - одна цена, она же open/high/low/close
+     */
+    public PriceHistory toPriceHistory() {
+        BigDecimal close = closePrice();
+        BigDecimal volumeValue = FixedPoint.toBigDecimal(volume, volumeScale);
+        return new PriceHistory(
+                null,
+                coinSymbol,
+                exchangeName,
+                quoteCurrency != null ? coinSymbol + "/" + quoteCurrency : coinSymbol,
+                quoteCurrency,
+                timestamp(),
+                close,
+                close,
+                close,
+                close,
+                volumeValue != null ? volumeValue : BigDecimal.ZERO,
+                null,
+                null,
+                PRICE_TYPE
+        );
+    }
+}
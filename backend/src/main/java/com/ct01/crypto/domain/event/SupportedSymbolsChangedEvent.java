@@ -0,0 +1,39 @@
+package com.ct01.crypto.domain.event;
+
+import com.ct01.core.domain.DomainEvent;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Domain event - Изменился список торговых пар биржи (листинг или делистинг)
+ */
+public record SupportedSymbolsChangedEvent(
+    String exchange,
+    Set<String> added,
+    Set<String> removed,
+    LocalDateTime occurredAt
+) implements DomainEvent {
+    
+    public SupportedSymbolsChangedEvent(String exchange, Set<String> added, Set<String> removed) {
+        this(exchange, Set.copyOf(added), Set.copyOf(removed), LocalDateTime.now());
+    }
+    
+    @Override
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+    
+    @Override
+    public Object getAggregateId() {
+        return exchange;
+    }
+    
+    /**
+     * Получить информацию об изменении для логирования
+     */
+    public String getChangeInfo() {
+        return String.format("Exchange %s: %d pairs listed, %d delisted",
+                           exchange, added.size(), removed.size());
+    }
+}
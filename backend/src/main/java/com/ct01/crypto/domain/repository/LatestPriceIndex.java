@@ -0,0 +1,39 @@
+package com.ct01.crypto.domain.repository;
+
+import com.ct01.crypto.domain.PriceHistory;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Индекс последних цен по паре (монета, биржа)
+ * Обновляется из потока приема цен и отвечает без обращения к БД
+ */
+public interface LatestPriceIndex {
+    
+    /**
+     * Последняя цена монеты на бирже
+     */
+    Optional<PriceHistory> findLatest(String coinSymbol, String exchangeName);
+    
+    /**
+     * Последние цены монеты на всех биржах
+     */
+    List<PriceHistory> findLatestForCoin(String coinSymbol);
+    
+    /**
+     * Учесть новую цену; более старая по времени цена не замещает уже известную
+     */
+    void update(PriceHistory priceHistory);
+    
+    /**
+     * Известны ли индексу цены монеты на всех биржах (после прогрева или загрузки монеты из БД)
+     * Для такой монеты отсутствие биржи в индексе означает, что цен на этой бирже нет
+     */
+    boolean isComplete(String coinSymbol);
+    
+    /**
+     * Отметить, что последние цены монеты на всех биржах загружены в индекс
+     */
+    void markComplete(String coinSymbol);
+}
@@ -0,0 +1,35 @@
+package com.ct01.crypto.domain.repository;
+
+import com.ct01.crypto.domain.CandleResolution;
+import com.ct01.crypto.domain.PriceCandle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Репозиторий свечей OHLCV, предварительно агрегированных из потока цен
+ */
+public interface PriceCandleRepository {
+    
+    /**
+     * Свечи одного разрешения, начинающиеся в [from, to), по возрастанию времени
+     */
+    Page<PriceCandle> findCandles(String coinSymbol, String exchangeName, CandleResolution resolution,
+                                  LocalDateTime from, LocalDateTime to, Pageable pageable);
+    
+    /**
+     * Непересекающиеся свечи разных разрешений, покрывающие [from, to): внутренняя часть диапазона
+     * берется самыми крупными свечами, края - мелкими; начало выравнивается до минуты
+     */
+    List<PriceCandle> findCovering(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to);
+    
+    /**
+     * Передать свечи одного разрешения, начинающиеся в [from, to), потребителю по возрастанию времени
+     * Свечи читаются курсором и не накапливаются в памяти
+     */
+    void streamCandles(String coinSymbol, String exchangeName, CandleResolution resolution,
+                       LocalDateTime from, LocalDateTime to, Consumer<PriceCandle> consumer);
+}
@@ -5,8 +5,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Доменный репозиторий для работы с историей цен
@@ -23,6 +25,12 @@ public interface PriceHistoryRepository {
      */
     List<PriceHistory> findLatestPricesForCoin(String coinSymbol);
     
+    /**
+     * Найти последние цены набора монет одним запросом; пустой набор бирж - все биржи
+     * По одной записи на каждую пару (монета, биржа), для которой есть цены
+     */
+    List<PriceHistory> findLatestPrices(Collection<String> coinSymbols, Collection<String> exchangeNames);
+    
     /**
      * Найти недавние цены для монеты (за последние N часов)
      */
@@ -41,19 +49,41 @@ public interface PriceHistoryRepository {
                                          Pageable pageable);
     
     /**
-     * Найти историю цен для торговой пары
+     * Найти историю цен за период порциями по ключу (timestamp, id)
+     * Следующая порция начинается строго после after (null - с начала периода), поэтому стоимость
+     * не зависит от глубины прокрутки. Границы периода необязательны и включаются в выборку.
      */
-    List<PriceHistory> findByTradingPair(String tradingPair, LocalDateTime from, LocalDateTime to);
+    List<PriceHistory> findHistoricalDataAfter(String coinSymbol, String exchangeName,
+                                               LocalDateTime from, LocalDateTime to,
+                                               SeekKey after, int limit);
     
     /**
-     * Найти свежие данные (не старше указанного времени)
+     * Передать историю цен за период потребителю в порядке (timestamp, id), начиная строго после after
+     * Записи читаются курсором и не накапливаются в памяти
      */
-    List<PriceHistory> findFreshData(int maxAgeMinutes);
+    void streamHistoricalData(String coinSymbol, String exchangeName,
+                              LocalDateTime from, LocalDateTime to,
+                              SeekKey after, Consumer<PriceHistory> consumer);
+    
+    /**
+     * Передать историю цен за период потребителю порциями по pageSize записей по ключу (timestamp, id)
+     * Между порциями не остается открытых курсоров и транзакций, поэтому медленный потребитель
+     * не удерживает блокировки секций таблицы
+     */
+    void pageHistoricalData(String coinSymbol, String exchangeName,
+                            LocalDateTime from, LocalDateTime to,
+                            SeekKey after, int pageSize, Consumer<PriceHistory> consumer);
     
     /**
-     * Найти данные по типу (TICKER, CANDLE)
+     * Приблизительное количество записей за период (оценка планировщика, без COUNT(*))
      */
-    List<PriceHistory> findByPriceType(String priceType);
+    long estimateHistoricalDataCount(String coinSymbol, String exchangeName,
+                                     LocalDateTime from, LocalDateTime to);
+    
+    /**
+     * Найти свежие данные (не старше указанного времени)
+     */
+    List<PriceHistory> findFreshData(int maxAgeMinutes);
     
     /**
      * Найти торговые пары для биржи
@@ -72,6 +102,7 @@ public interface PriceHistoryRepository {
     
     /**
      * Сохранить список истории цен
+     * Записи с неизвестной монетой или биржей пропускаются; идентификаторы у результата не заполняются
      */
     List<PriceHistory> saveAll(List<PriceHistory> priceHistories);
     
@@ -91,7 +122,18 @@ public interface PriceHistoryRepository {
     long countByTimestampBetween(LocalDateTime from, LocalDateTime to);
     
     /**
-     * Проверить существование данных для торговой пары
+     * Проверить, записывались ли цены торговой пары на какой-либо бирже
+     * Пара остается известной и после удаления ее истории
      */
     boolean existsByTradingPair(String tradingPair);
-} 
+    
+    /**
+     * Позиция в истории цен для постраничного чтения по ключу
+     */
+    record SeekKey(LocalDateTime timestamp, long id) {
+        
+        public static SeekKey of(PriceHistory priceHistory) {
+            return new SeekKey(priceHistory.getTimestamp(), priceHistory.getId());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ct01.crypto.infrastructure.archive;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Холодный уровень истории цен: сегменты закрытых секций price_history на локальном диске
+ * Сегменты упорядочены по началу диапазона и не пересекаются; все архивные строки лежат раньше
+ * границы boundary(), поэтому чтение периода - это архив до границы, затем строки из БД.
+ */
+@Component
+@Slf4j
+public class PriceArchiveStore {
+    
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String PENDING_SUFFIX = ".seg.tmp";
+    
+    private final Path directory;
+    private final NavigableMap<LocalDateTime, PriceSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded;
+    
+    public PriceArchiveStore(@Value("${app.archive.directory:./data/price-archive}") String directory) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+    }
+    
+    /**
+     * Конец последнего сегмента: все архивные строки раньше него; null - архив пуст
+     */
+    public LocalDateTime boundary() {
+        ensureLoaded();
+        Map.Entry<LocalDateTime, PriceSegment> last = segments.lastEntry();
+        return last != null ? last.getValue().to() : null;
+    }
+    
+    /**
+     * Передать архивные строки периода после after в порядке (timestamp, id)
+     * @return false, если sink остановил чтение
+     */
+    public boolean scan(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to,
+                        SeekKey after, Predicate<PriceHistory> sink) {
+        for (PriceSegment segment : overlapping(from, to)) {
+            if (after != null && !segment.to().isAfter(after.timestamp())) {
+                continue;
+            }
+            if (!segment.scan(coinSymbol, exchangeName, from, to, after, sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Передать архивные строки периода в порядке (timestamp, id), пропустив первые skip строк
+     * Сегменты, целиком попадающие в пропуск, отбрасываются по счетчикам каталога без декодирования блоков
+     * @return false, если sink остановил чтение
+     */
+    public boolean scan(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to,
+                        long skip, Predicate<PriceHistory> sink) {
+        long remaining = skip;
+        for (PriceSegment segment : overlapping(from, to)) {
+            if (remaining > 0) {
+                long rows = segment.count(coinSymbol, exchangeName, from, to);
+                if (rows <= remaining) {
+                    remaining -= rows;
+                    continue;
+                }
+            }
+            long[] toSkip = {remaining};
+            remaining = 0;
+            boolean completed = segment.scan(coinSymbol, exchangeName, from, to, null, price -> {
+                if (toSkip[0] > 0) {
+                    toSkip[0]--;
+                    return true;
+                }
+                return sink.test(price);
+            });
+            if (!completed) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Точное количество архивных строк периода
+     */
+    public long count(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to) {
+        long count = 0;
+        for (PriceSegment segment : overlapping(from, to)) {
+            count += segment.count(coinSymbol, exchangeName, from, to);
+        }
+        return count;
+    }
+    
+    /**
+     * Удалить сегменты, целиком лежащие до cutoff
+     * @return количество удаленных сегментов
+     */
+    public synchronized int deleteBefore(LocalDateTime cutoff) {
+        ensureLoaded();
+        int removed = 0;
+        Iterator<PriceSegment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            PriceSegment segment = iterator.next();
+            if (segment.to().isAfter(cutoff)) {
+                break;
+            }
+            iterator.remove();
+            try {
+                // Отображение остается валидным для уже начатых чтений до сборки мусора
+                Files.deleteIfExists(segment.path());
+                removed++;
+            } catch (IOException e) {
+                log.warn("Failed to delete price segment {}: {}", segment.path(), e.getMessage());
+            }
+        }
+        if (removed > 0) {
+            log.info("Deleted {} archived price segments before {}", removed, cutoff);
+        }
+        return removed;
+    }
+    
+    Path pendingPath(String partitionName) throws IOException {
+        Files.createDirectories(directory);
+        return directory.resolve(partitionName + PENDING_SUFFIX);
+    }
+    
+    /**
+     * Недописанные или неподтвержденные сегменты, оставшиеся после сбоя
+     */
+    List<Path> pendingFiles() throws IOException {
+        List<Path> pending = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return pending;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + PENDING_SUFFIX)) {
+            stream.forEach(pending::add);
+        }
+        return pending;
+    }
+    
+    /**
+     * Опубликовать подтвержденный сегмент: переименовать в постоянное имя и подключить к чтению
+     */
+    synchronized PriceSegment promote(Path pending) throws IOException {
+        String fileName = pending.getFileName().toString();
+        Path target = pending.resolveSibling(
+                fileName.substring(0, fileName.length() - PENDING_SUFFIX.length()) + SEGMENT_SUFFIX);
+        Files.move(pending, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        PriceSegment segment = PriceSegment.open(target);
+        ensureLoaded();
+        segments.put(segment.from(), segment);
+        return segment;
+    }
+    
+    private List<PriceSegment> overlapping(LocalDateTime from, LocalDateTime to) {
+        ensureLoaded();
+        NavigableMap<LocalDateTime, PriceSegment> candidates = to != null ? segments.headMap(to, true) : segments;
+        List<PriceSegment> result = new ArrayList<>();
+        for (PriceSegment segment : candidates.values()) {
+            if (from == null || segment.to().isAfter(from)) {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+    
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+                    for (Path path : stream) {
+                        openSegment(path);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to list price archive " + directory, e);
+                }
+                log.info("Price archive {}: {} segments, boundary {}", directory, segments.size(),
+                        segments.isEmpty() ? null : segments.lastEntry().getValue().to());
+            }
+            loaded = true;
+        }
+    }
+    
+    private void openSegment(Path path) {
+        try {
+            PriceSegment segment = PriceSegment.open(path);
+            segments.put(segment.from(), segment);
+        } catch (IOException | RuntimeException e) {
+            log.error("Skipping unreadable price segment {}: {}", path, e.getMessage());
+        }
+    }
+}
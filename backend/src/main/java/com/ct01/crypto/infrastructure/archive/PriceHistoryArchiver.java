@@ -0,0 +1,176 @@
+package com.ct01.crypto.infrastructure.archive;
+
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryPartitionManager;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryPartitionManager.Partition;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryRowMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Перенос закрытых секций price_history в сегменты архива
+ * Секция блокируется от записи, ее строки кодируются во временный файл, число строк сверяется
+ * с БД, и только затем секция удаляется в той же транзакции. Файл публикуется после фиксации;
+ * временный файл, переживший сбой, публикуется, только если его секции уже нет.
+ * В архив попадают колонки доменной модели; bid/ask/spread/change24h при записи цен не заполняются.
+ */
+@Component
+@Slf4j
+public class PriceHistoryArchiver {
+    
+    private static final String PARTITION_ROWS_SQL = """
+            SELECT ph.id, c.symbol, e.name AS exchange_name, ph.trading_pair, ph.quote_currency,
+                   ph.timestamp, ph.open_price, ph.high_price, ph.low_price, ph.close_price,
+                   ph.volume, ph.volume_usd, ph.trade_count, ph.price_type
+            FROM %s ph
+            JOIN coins c ON c.id = ph.coin_id
+            JOIN exchanges e ON e.id = ph.exchange_id
+            ORDER BY ph.coin_id, ph.exchange_id, ph.timestamp, ph.id
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PriceHistoryPartitionManager partitionManager;
+    private final PriceArchiveStore archiveStore;
+    private final int hotDays;
+    
+    public PriceHistoryArchiver(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                PriceHistoryPartitionManager partitionManager,
+                                PriceArchiveStore archiveStore,
+                                @Value("${app.archive.hot-days:30}") int hotDays,
+                                @Value("${app.archive.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(Math.max(1, fetchSize));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionManager = partitionManager;
+        this.archiveStore = archiveStore;
+        this.hotDays = Math.max(1, hotDays);
+    }
+    
+    /**
+     * Архивировать секции, закончившиеся раньше hot-days назад, от самой старой;
+     * первая же ошибка останавливает проход, чтобы архив оставался непрерывным до границы
+     * @return количество архивированных секций
+     */
+    public synchronized int archiveClosedPartitions() {
+        if (!partitionManager.isPartitioned()) {
+            return 0;
+        }
+        recoverPending();
+    
+        LocalDateTime cutoff = LocalDate.now().minusDays(hotDays).atStartOfDay();
+        int archived = 0;
+        for (Partition partition : partitionManager.listPartitions()) {
+            if (partition.to().isAfter(cutoff)) {
+                break;
+            }
+            try {
+                archivePartition(partition);
+                archived++;
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to archive price history partition {}", partition.name(), e);
+                break;
+            }
+        }
+        return archived;
+    }
+    
+    private void archivePartition(Partition partition) throws IOException {
+        Path pending = archiveStore.pendingPath(partition.name());
+        Files.deleteIfExists(pending);
+        long startedAt = System.currentTimeMillis();
+    
+        long[] stats;
+        try {
+            stats = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("LOCK TABLE " + partition.name() + " IN SHARE MODE");
+                Long expected = jdbcTemplate.queryForObject("SELECT count(*) FROM " + partition.name(), Long.class);
+                Long tableBytes = jdbcTemplate.queryForObject(
+                        "SELECT pg_total_relation_size(?::regclass)", Long.class, partition.name());
+    
+                long written = writeSegment(partition, pending);
+                long verified = openRowCount(pending);
+                if (expected == null || written != expected || verified != expected) {
+                    throw new IllegalStateException(String.format(
+                            "Row count mismatch for %s: table %s, written %d, read back %d",
+                            partition.name(), expected, written, verified));
+                }
+                partitionManager.dropPartition(partition.name());
+                return new long[] {written, tableBytes != null ? tableBytes : 0};
+            });
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(pending);
+            throw e;
+        }
+    
+        PriceSegment segment = archiveStore.promote(pending);
+        long segmentBytes = Files.size(segment.path());
+        log.info("Archived partition {} [{} - {}): {} rows, {} KB in PostgreSQL -> {} KB segment in {}ms",
+                partition.name(), partition.from(), partition.to(), stats[0],
+                stats[1] / 1024, segmentBytes / 1024, System.currentTimeMillis() - startedAt);
+    }
+    
+    private long writeSegment(Partition partition, Path pending) {
+        try (PriceSegmentWriter writer = new PriceSegmentWriter(pending, partition.from(), partition.to())) {
+            int[] rowNum = {0};
+            cursorTemplate.query(String.format(PARTITION_ROWS_SQL, partition.name()), rs -> {
+                try {
+                    writer.append(PriceHistoryRowMapper.INSTANCE.mapRow(rs, rowNum[0]++));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return writer.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static long openRowCount(Path pending) {
+        try {
+            return PriceSegment.open(pending).rowCount();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Временный файл, чья секция уже удалена, - зафиксированный, но не опубликованный сегмент;
+     * если секция на месте, транзакция не завершилась и файл просто удаляется
+     */
+    private void recoverPending() {
+        try {
+            Set<String> partitions = partitionManager.listPartitions().stream()
+                    .map(Partition::name)
+                    .collect(Collectors.toSet());
+            for (Path pending : archiveStore.pendingFiles()) {
+                String fileName = pending.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - PriceArchiveStore.PENDING_SUFFIX.length());
+                if (partitions.contains(name)) {
+                    Files.deleteIfExists(pending);
+                    log.info("Discarded unfinished price segment for partition {}", name);
+                } else {
+                    archiveStore.promote(pending);
+                    log.warn("Recovered committed price segment for partition {}", name);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to recover pending price segments", e);
+        }
+    }
+}
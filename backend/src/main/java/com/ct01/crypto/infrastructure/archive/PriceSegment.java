@@ -0,0 +1,270 @@
+package com.ct01.crypto.infrastructure.archive;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.DecimalDecoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.LongDecoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.StringDecoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.TimestampDecoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentWriter.SeriesEntry;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.fromMicros;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.readSignedVarLong;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.readString;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.readVarLong;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.toMicros;
+
+/**
+ * Сегмент архива, отображенный в память только для чтения
+ * Каталог серий читается при открытии, блоки декодируются по запросу прямо из отображения,
+ * так что в куче остаются только декодированные строки результата.
+ */
+final class PriceSegment {
+    
+    private static final Comparator<PriceHistory> SEEK_ORDER = Comparator
+            .comparing(PriceHistory::getTimestamp)
+            .thenComparing(PriceHistory::getId);
+    
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final List<SeriesEntry> series;
+    private final long rowCount;
+    
+    private PriceSegment(Path path, MappedByteBuffer buffer, LocalDateTime from, LocalDateTime to,
+                         List<SeriesEntry> series) {
+        this.path = path;
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+        this.series = series;
+        this.rowCount = series.stream().mapToLong(SeriesEntry::rowCount).sum();
+    }
+    
+    static PriceSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < PriceSegmentWriter.HEADER_SIZE + PriceSegmentWriter.TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected price segment size " + size + ": " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    
+            if (buffer.getInt(0) != PriceSegmentWriter.MAGIC
+                    || buffer.getInt((int) size - 4) != PriceSegmentWriter.MAGIC) {
+                throw new IOException("Not a price segment or truncated: " + path);
+            }
+            if (buffer.get(4) != PriceSegmentWriter.VERSION) {
+                throw new IOException("Unsupported price segment version " + buffer.get(4) + ": " + path);
+            }
+            LocalDateTime from = fromMicros(buffer.getLong(5));
+            LocalDateTime to = fromMicros(buffer.getLong(13));
+    
+            int catalogOffset = (int) buffer.getLong((int) size - PriceSegmentWriter.TRAILER_SIZE);
+            ByteBuffer catalog = buffer.slice(catalogOffset, (int) size - PriceSegmentWriter.TRAILER_SIZE - catalogOffset);
+            int count = (int) readVarLong(catalog);
+            List<SeriesEntry> series = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                series.add(new SeriesEntry(readString(catalog), readString(catalog),
+                        readSignedVarLong(catalog), readSignedVarLong(catalog),
+                        readVarLong(catalog), readVarLong(catalog), readVarLong(catalog)));
+            }
+            return new PriceSegment(path, buffer, from, to, List.copyOf(series));
+        }
+    }
+    
+    Path path() {
+        return path;
+    }
+    
+    LocalDateTime from() {
+        return from;
+    }
+    
+    LocalDateTime to() {
+        return to;
+    }
+    
+    long rowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Передать строки монеты (и биржи, если задана) из [rangeFrom, rangeTo] после after в порядке
+     * (timestamp, id); серии разных бирж сливаются. Возвращает false, если sink остановил чтение
+     */
+    boolean scan(String coinSymbol, String exchangeName, LocalDateTime rangeFrom, LocalDateTime rangeTo,
+                 SeekKey after, Predicate<PriceHistory> sink) {
+        long lowerMicros = rangeFrom != null ? toMicros(rangeFrom) : Long.MIN_VALUE;
+        long upperMicros = rangeTo != null ? toMicros(rangeTo) : Long.MAX_VALUE;
+        if (after != null) {
+            lowerMicros = Math.max(lowerMicros, toMicros(after.timestamp()));
+        }
+    
+        PriorityQueue<SeriesCursor> heads = new PriorityQueue<>(Comparator.comparing(
+                SeriesCursor::head, SEEK_ORDER));
+        for (SeriesEntry entry : matching(coinSymbol, exchangeName, lowerMicros, upperMicros)) {
+            SeriesCursor cursor = new SeriesCursor(entry, lowerMicros, upperMicros, after);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+    
+        while (!heads.isEmpty()) {
+            SeriesCursor cursor = heads.poll();
+            if (!sink.test(cursor.head())) {
+                return false;
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Количество строк в [rangeFrom, rangeTo]; серии, целиком попавшие в диапазон, считаются по каталогу
+     */
+    long count(String coinSymbol, String exchangeName, LocalDateTime rangeFrom, LocalDateTime rangeTo) {
+        long lowerMicros = rangeFrom != null ? toMicros(rangeFrom) : Long.MIN_VALUE;
+        long upperMicros = rangeTo != null ? toMicros(rangeTo) : Long.MAX_VALUE;
+    
+        long count = 0;
+        for (SeriesEntry entry : matching(coinSymbol, exchangeName, lowerMicros, upperMicros)) {
+            if (entry.firstMicros() >= lowerMicros && entry.lastMicros() <= upperMicros) {
+                count += entry.rowCount();
+                continue;
+            }
+            ByteBuffer block = block(entry);
+            long rows = readVarLong(block);
+            TimestampDecoder timestamps = new TimestampDecoder(block);
+            for (long i = 0; i < rows; i++) {
+                long micros = timestamps.nextMicros();
+                if (micros > upperMicros) {
+                    break;
+                }
+                if (micros >= lowerMicros) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private List<SeriesEntry> matching(String coinSymbol, String exchangeName, long lowerMicros, long upperMicros) {
+        List<SeriesEntry> result = new ArrayList<>();
+        for (SeriesEntry entry : series) {
+            if (entry.coinSymbol().equalsIgnoreCase(coinSymbol)
+                    && (exchangeName == null || entry.exchangeName().equalsIgnoreCase(exchangeName))
+                    && entry.lastMicros() >= lowerMicros && entry.firstMicros() <= upperMicros) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+    
+    private ByteBuffer block(SeriesEntry entry) {
+        return buffer.slice((int) entry.offset(), (int) entry.length());
+    }
+    
+    /**
+     * Построчное чтение блока серии; колонки декодируются параллельно, строка собирается из их значений
+     */
+    private final class SeriesCursor {
+    
+        private final SeriesEntry entry;
+        private final long lowerMicros;
+        private final long upperMicros;
+        private final long afterMicros;
+        private final long afterId;
+        private final long rows;
+        private final TimestampDecoder timestamps;
+        private final LongDecoder ids;
+        private final DecimalDecoder openPrices;
+        private final DecimalDecoder highPrices;
+        private final DecimalDecoder lowPrices;
+        private final DecimalDecoder closePrices;
+        private final DecimalDecoder volumes;
+        private final DecimalDecoder volumesUsd;
+        private final LongDecoder tradeCounts;
+        private final StringDecoder tradingPairs;
+        private final StringDecoder quoteCurrencies;
+        private final StringDecoder priceTypes;
+        private long position;
+        private PriceHistory head;
+    
+        private SeriesCursor(SeriesEntry entry, long lowerMicros, long upperMicros, SeekKey after) {
+            this.entry = entry;
+            this.lowerMicros = lowerMicros;
+            this.upperMicros = upperMicros;
+            this.afterMicros = after != null ? toMicros(after.timestamp()) : Long.MIN_VALUE;
+            this.afterId = after != null ? after.id() : Long.MIN_VALUE;
+            ByteBuffer block = block(entry);
+            this.rows = readVarLong(block);
+            this.timestamps = new TimestampDecoder(block);
+            this.ids = new LongDecoder(block);
+            this.openPrices = new DecimalDecoder(block, PriceSegmentWriter.PRICE_SCALE);
+            this.highPrices = new DecimalDecoder(block, PriceSegmentWriter.PRICE_SCALE);
+            this.lowPrices = new DecimalDecoder(block, PriceSegmentWriter.PRICE_SCALE);
+            this.closePrices = new DecimalDecoder(block, PriceSegmentWriter.PRICE_SCALE);
+            this.volumes = new DecimalDecoder(block, PriceSegmentWriter.VOLUME_SCALE);
+            this.volumesUsd = new DecimalDecoder(block, PriceSegmentWriter.VOLUME_USD_SCALE);
+            this.tradeCounts = new LongDecoder(block);
+            this.tradingPairs = new StringDecoder(block);
+            this.quoteCurrencies = new StringDecoder(block);
+            this.priceTypes = new StringDecoder(block);
+        }
+    
+        private PriceHistory head() {
+            return head;
+        }
+    
+        /**
+         * Перейти к следующей строке диапазона; false - строк больше нет
+         */
+        private boolean advance() {
+            while (position < rows) {
+                position++;
+                long micros = timestamps.nextMicros();
+                Long id = ids.next();
+                BigDecimal open = openPrices.next();
+                BigDecimal high = highPrices.next();
+                BigDecimal low = lowPrices.next();
+                BigDecimal close = closePrices.next();
+                BigDecimal volume = volumes.next();
+                BigDecimal volumeUsd = volumesUsd.next();
+                Long trades = tradeCounts.next();
+                String tradingPair = tradingPairs.next();
+                String quoteCurrency = quoteCurrencies.next();
+                String priceType = priceTypes.next();
+    
+                if (micros > upperMicros) {
+                    break;
+                }
+                if (micros < lowerMicros || (micros == afterMicros && id <= afterId)) {
+                    continue;
+                }
+                head = new PriceHistory(id, entry.coinSymbol(), entry.exchangeName(), tradingPair, quoteCurrency,
+                        fromMicros(micros), open, high, low, close, volume, volumeUsd, trades, priceType);
+                return true;
+            }
+            position = rows;
+            head = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.ct01.crypto.infrastructure.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Колонки сегмента архива и примитивы кодирования
+ * Целые пишутся varint (LEB128), знаковые - через zigzag. Каждая колонка состоит из одного или
+ * нескольких потоков байт с префиксом длины, поэтому при чтении колонки декодируются независимо.
+ */
+final class PriceSegmentColumns {
+    
+    private PriceSegmentColumns() {
+    }
+    
+    // ===== Примитивы =====
+    
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    static void writeSignedVarLong(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+    
+    static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint in price segment");
+            }
+        }
+    }
+    
+    static long readSignedVarLong(ByteBuffer in) {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+    
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+    
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Микросекунды эпохи; TIMESTAMP в PostgreSQL хранит именно микросекунды
+     */
+    static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+    
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+    
+    private static void writeStream(ByteArrayOutputStream block, ByteArrayOutputStream stream) {
+        writeVarLong(block, stream.size());
+        block.writeBytes(stream.toByteArray());
+    }
+    
+    /**
+     * Следующий поток колонки как отдельный буфер; позиция блока сдвигается за него
+     */
+    static ByteBuffer nextStream(ByteBuffer block) {
+        int length = (int) readVarLong(block);
+        ByteBuffer stream = block.slice(block.position(), length);
+        block.position(block.position() + length);
+        return stream;
+    }
+    
+    // ===== Кодировщики =====
+    
+    interface Encoder {
+        void writeTo(ByteArrayOutputStream block);
+    }
+    
+    /**
+     * Серии одинаковых небольших значений (признак null, номер в словаре): пары (значение, длина)
+     */
+    static final class RunEncoder implements Encoder {
+    
+        private final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        private long current = -1;
+        private long length;
+    
+        void add(long value) {
+            if (value == current) {
+                length++;
+                return;
+            }
+            flushRun();
+            current = value;
+            length = 1;
+        }
+    
+        private void flushRun() {
+            if (length > 0) {
+                writeVarLong(runs, current);
+                writeVarLong(runs, length);
+            }
+        }
+    
+        @Override
+        public void writeTo(ByteArrayOutputStream block) {
+            flushRun();
+            length = 0;
+            writeStream(block, runs);
+        }
+    }
+    
+    /**
+     * Время как delta-of-delta: при равномерном опросе бирж почти каждое значение - один байт
+     */
+    static final class TimestampEncoder implements Encoder {
+    
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private int count;
+        private long previous;
+        private long previousDelta;
+    
+        void add(LocalDateTime timestamp) {
+            long micros = toMicros(timestamp);
+            if (count == 0) {
+                writeSignedVarLong(values, micros);
+            } else {
+                long delta = micros - previous;
+                writeSignedVarLong(values, count == 1 ? delta : delta - previousDelta);
+                previousDelta = delta;
+            }
+            previous = micros;
+            count++;
+        }
+    
+        @Override
+        public void writeTo(ByteArrayOutputStream block) {
+            writeStream(block, values);
+        }
+    }
+    
+    /**
+     * Целые с null: признак присутствия сериями и zigzag-разности присутствующих значений
+     */
+    static final class LongEncoder implements Encoder {
+    
+        private final RunEncoder presence = new RunEncoder();
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private long previous;
+    
+        void add(Long value) {
+            presence.add(value != null ? 1 : 0);
+            if (value != null) {
+                writeSignedVarLong(values, value - previous);
+                previous = value;
+            }
+        }
+    
+        @Override
+        public void writeTo(ByteArrayOutputStream block) {
+            presence.writeTo(block);
+            writeStream(block, values);
+        }
+    }
+    
+    /**
+     * Десятичные значения как целые при фиксированном масштабе колонки (DECIMAL(20,8) - 8 знаков)
+     * с zigzag-разностью от предыдущего; значения, не влезающие в long, пишутся как есть
+     */
+    static final class DecimalEncoder implements Encoder {
+    
+        static final int NULL = 0;
+        static final int SCALED = 1;
+        static final int RAW = 2;
+    
+        private final int scale;
+        private final RunEncoder states = new RunEncoder();
+        private final ByteArrayOutputStream scaled = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        private long previous;
+    
+        DecimalEncoder(int scale) {
+            this.scale = scale;
+        }
+    
+        void add(BigDecimal value) {
+            if (value == null) {
+                states.add(NULL);
+                return;
+            }
+            Long unscaled = toScaledLong(value);
+            if (unscaled != null) {
+                states.add(SCALED);
+                writeSignedVarLong(scaled, unscaled - previous);
+                previous = unscaled;
+            } else {
+                states.add(RAW);
+                writeSignedVarLong(raw, value.scale());
+                byte[] bytes = value.unscaledValue().toByteArray();
+                writeVarLong(raw, bytes.length);
+                raw.writeBytes(bytes);
+            }
+        }
+    
+        private Long toScaledLong(BigDecimal value) {
+            try {
+                BigInteger unscaled = value.setScale(scale).unscaledValue();
+                return unscaled.bitLength() < 63 ? unscaled.longValue() : null;
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+    
+        @Override
+        public void writeTo(ByteArrayOutputStream block) {
+            states.writeTo(block);
+            writeStream(block, scaled);
+            writeStream(block, raw);
+        }
+    }
+    
+    /**
+     * Строки словарем блока; номера (0 - null) пишутся сериями, так что постоянное значение
+     * занимает несколько байт на весь блок
+     */
+    static final class StringEncoder implements Encoder {
+    
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+        private final RunEncoder indexes = new RunEncoder();
+    
+        void add(String value) {
+            if (value == null) {
+                indexes.add(0);
+                return;
+            }
+            indexes.add(dictionary.computeIfAbsent(value, key -> {
+                entries.add(key);
+                return entries.size();
+            }));
+        }
+    
+        @Override
+        public void writeTo(ByteArrayOutputStream block) {
+            ByteArrayOutputStream dictionaryStream = new ByteArrayOutputStream();
+            writeVarLong(dictionaryStream, entries.size());
+            for (String entry : entries) {
+                writeString(dictionaryStream, entry);
+            }
+            writeStream(block, dictionaryStream);
+            indexes.writeTo(block);
+        }
+    }
+    
+    // ===== Декодировщики =====
+    
+    static final class RunDecoder {
+    
+        private final ByteBuffer runs;
+        private long current;
+        private long remaining;
+    
+        RunDecoder(ByteBuffer block) {
+            this.runs = nextStream(block);
+        }
+    
+        long next() {
+            if (remaining == 0) {
+                current = readVarLong(runs);
+                remaining = readVarLong(runs);
+            }
+            remaining--;
+            return current;
+        }
+    }
+    
+    static final class TimestampDecoder {
+    
+        private final ByteBuffer values;
+        private int count;
+        private long previous;
+        private long previousDelta;
+    
+        TimestampDecoder(ByteBuffer block) {
+            this.values = nextStream(block);
+        }
+    
+        long nextMicros() {
+            long value = readSignedVarLong(values);
+            if (count == 0) {
+                previous = value;
+            } else {
+                long delta = count == 1 ? value : previousDelta + value;
+                previous += delta;
+                previousDelta = delta;
+            }
+            count++;
+            return previous;
+        }
+    }
+    
+    static final class LongDecoder {
+    
+        private final RunDecoder presence;
+        private final ByteBuffer values;
+        private long previous;
+    
+        LongDecoder(ByteBuffer block) {
+            this.presence = new RunDecoder(block);
+            this.values = nextStream(block);
+        }
+    
+        Long next() {
+            if (presence.next() == 0) {
+                return null;
+            }
+            previous += readSignedVarLong(values);
+            return previous;
+        }
+    }
+    
+    static final class DecimalDecoder {
+    
+        private final int scale;
+        private final RunDecoder states;
+        private final ByteBuffer scaled;
+        private final ByteBuffer raw;
+        private long previous;
+    
+        DecimalDecoder(ByteBuffer block, int scale) {
+            this.scale = scale;
+            this.states = new RunDecoder(block);
+            this.scaled = nextStream(block);
+            this.raw = nextStream(block);
+        }
+    
+        BigDecimal next() {
+            int state = (int) states.next();
+            if (state == DecimalEncoder.NULL) {
+                return null;
+            }
+            if (state == DecimalEncoder.SCALED) {
+                previous += readSignedVarLong(scaled);
+                return BigDecimal.valueOf(previous, scale);
+            }
+            int valueScale = (int) readSignedVarLong(raw);
+            byte[] bytes = new byte[(int) readVarLong(raw)];
+            raw.get(bytes);
+            return new BigDecimal(new BigInteger(bytes), valueScale);
+        }
+    }
+    
+    static final class StringDecoder {
+    
+        private final String[] dictionary;
+        private final RunDecoder indexes;
+    
+        StringDecoder(ByteBuffer block) {
+            ByteBuffer dictionaryStream = nextStream(block);
+            this.dictionary = new String[(int) readVarLong(dictionaryStream) + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                dictionary[i] = readString(dictionaryStream);
+            }
+            this.indexes = new RunDecoder(block);
+        }
+    
+        String next() {
+            return dictionary[(int) indexes.next()];
+        }
+    }
+}
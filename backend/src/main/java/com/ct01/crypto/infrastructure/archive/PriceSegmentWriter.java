@@ -0,0 +1,205 @@
+package com.ct01.crypto.infrastructure.archive;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.DecimalEncoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.LongEncoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.StringEncoder;
+import com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.TimestampEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.toMicros;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.writeSignedVarLong;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.writeString;
+import static com.ct01.crypto.infrastructure.archive.PriceSegmentColumns.writeVarLong;
+
+/**
+ * Запись сегмента архива: заголовок, блоки серий (монета + биржа) и каталог серий в конце файла
+ * Строки должны приходить сгруппированными по серии и упорядоченными по (timestamp, id) внутри нее;
+ * в памяти держится только сжатый текущий блок.
+ */
+final class PriceSegmentWriter implements AutoCloseable {
+    
+    static final int MAGIC = 0x43545053;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 1 + 8 + 8;
+    static final int TRAILER_SIZE = 8 + 4;
+    
+    static final int PRICE_SCALE = 8;
+    static final int VOLUME_SCALE = 8;
+    static final int VOLUME_USD_SCALE = 2;
+    
+    private final FileChannel channel;
+    private final List<SeriesEntry> entries = new ArrayList<>();
+    private final Set<String> writtenSeries = new HashSet<>();
+    private SeriesEncoder current;
+    private long position;
+    private long rowCount;
+    
+    PriceSegmentWriter(Path path, LocalDateTime from, LocalDateTime to) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .put((byte) VERSION)
+                .putLong(toMicros(from))
+                .putLong(toMicros(to))
+                .flip();
+        write(header);
+    }
+    
+    void append(PriceHistory row) throws IOException {
+        if (current == null || !current.matches(row)) {
+            flushSeries();
+            if (!writtenSeries.add(seriesKey(row.getCoinSymbol(), row.getExchangeName()))) {
+                throw new IllegalStateException("Rows of series " + row.getCoinSymbol() + "/"
+                        + row.getExchangeName() + " are not contiguous");
+            }
+            current = new SeriesEncoder(row.getCoinSymbol(), row.getExchangeName());
+        }
+        current.add(row);
+        rowCount++;
+    }
+    
+    /**
+     * Дописать последний блок и каталог серий, сбросить файл на диск
+     * @return количество записанных строк
+     */
+    long finish() throws IOException {
+        flushSeries();
+        long catalogOffset = position;
+        ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+        writeVarLong(catalog, entries.size());
+        for (SeriesEntry entry : entries) {
+            writeString(catalog, entry.coinSymbol());
+            writeString(catalog, entry.exchangeName());
+            writeSignedVarLong(catalog, entry.firstMicros());
+            writeSignedVarLong(catalog, entry.lastMicros());
+            writeVarLong(catalog, entry.rowCount());
+            writeVarLong(catalog, entry.offset());
+            writeVarLong(catalog, entry.length());
+        }
+        write(ByteBuffer.wrap(catalog.toByteArray()));
+        write(ByteBuffer.allocate(TRAILER_SIZE).putLong(catalogOffset).putInt(MAGIC).flip());
+        channel.force(true);
+        return rowCount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private void flushSeries() throws IOException {
+        if (current == null) {
+            return;
+        }
+        byte[] block = current.encode();
+        entries.add(new SeriesEntry(current.coinSymbol, current.exchangeName,
+                current.firstMicros, current.lastMicros, current.rows, position, block.length));
+        write(ByteBuffer.wrap(block));
+        current = null;
+    }
+    
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+    
+    static String seriesKey(String coinSymbol, String exchangeName) {
+        return coinSymbol.toUpperCase() + ":" + exchangeName.toLowerCase();
+    }
+    
+    record SeriesEntry(String coinSymbol, String exchangeName, long firstMicros, long lastMicros,
+                       long rowCount, long offset, long length) {
+    }
+    
+    /**
+     * Колонки одной серии; порядок колонок в блоке повторяет порядок чтения в PriceSegment
+     */
+    private static final class SeriesEncoder {
+    
+        private final String coinSymbol;
+        private final String exchangeName;
+        private final TimestampEncoder timestamps = new TimestampEncoder();
+        private final LongEncoder ids = new LongEncoder();
+        private final DecimalEncoder openPrices = new DecimalEncoder(PRICE_SCALE);
+        private final DecimalEncoder highPrices = new DecimalEncoder(PRICE_SCALE);
+        private final DecimalEncoder lowPrices = new DecimalEncoder(PRICE_SCALE);
+        private final DecimalEncoder closePrices = new DecimalEncoder(PRICE_SCALE);
+        private final DecimalEncoder volumes = new DecimalEncoder(VOLUME_SCALE);
+        private final DecimalEncoder volumesUsd = new DecimalEncoder(VOLUME_USD_SCALE);
+        private final LongEncoder tradeCounts = new LongEncoder();
+        private final StringEncoder tradingPairs = new StringEncoder();
+        private final StringEncoder quoteCurrencies = new StringEncoder();
+        private final StringEncoder priceTypes = new StringEncoder();
+        private long firstMicros;
+        private long lastMicros;
+        private long lastId;
+        private long rows;
+    
+        private SeriesEncoder(String coinSymbol, String exchangeName) {
+            this.coinSymbol = coinSymbol;
+            this.exchangeName = exchangeName;
+        }
+    
+        private boolean matches(PriceHistory row) {
+            return coinSymbol.equals(row.getCoinSymbol()) && exchangeName.equals(row.getExchangeName());
+        }
+    
+        private void add(PriceHistory row) {
+            long micros = toMicros(row.getTimestamp());
+            if (rows > 0 && (micros < lastMicros || (micros == lastMicros && row.getId() <= lastId))) {
+                throw new IllegalStateException("Rows of series " + coinSymbol + "/" + exchangeName
+                        + " are not ordered by (timestamp, id)");
+            }
+            if (rows == 0) {
+                firstMicros = micros;
+            }
+            lastMicros = micros;
+            lastId = row.getId();
+            rows++;
+    
+            timestamps.add(row.getTimestamp());
+            ids.add(row.getId());
+            openPrices.add(row.getOpenPrice());
+            highPrices.add(row.getHighPrice());
+            lowPrices.add(row.getLowPrice());
+            closePrices.add(row.getClosePrice());
+            volumes.add(row.getVolume());
+            volumesUsd.add(row.getVolumeUsd());
+            tradeCounts.add(row.getTradesCount());
+            tradingPairs.add(row.getTradingPair());
+            quoteCurrencies.add(row.getQuoteCurrency());
+            priceTypes.add(row.getPriceType());
+        }
+    
+        private byte[] encode() {
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            writeVarLong(block, rows);
+            timestamps.writeTo(block);
+            ids.writeTo(block);
+            openPrices.writeTo(block);
+            highPrices.writeTo(block);
+            lowPrices.writeTo(block);
+            closePrices.writeTo(block);
+            volumes.writeTo(block);
+            volumesUsd.writeTo(block);
+            tradeCounts.writeTo(block);
+            tradingPairs.writeTo(block);
+            quoteCurrencies.writeTo(block);
+            priceTypes.writeTo(block);
+            return block.toByteArray();
+        }
+    }
+}
@@ -4,15 +4,17 @@ import com.ct01.crypto.domain.repository.CoinRepository;
 import com.ct01.crypto.domain.repository.PriceHistoryRepository;
 import com.ct01.crypto.domain.repository.TrackedCoinRepository;
 import com.ct01.crypto.domain.service.CoinDomainService;
+import com.ct01.crypto.infrastructure.archive.PriceArchiveStore;
 import com.ct01.crypto.infrastructure.mapper.CoinMapper;
 import com.ct01.crypto.infrastructure.mapper.PriceHistoryMapper;
 import com.ct01.crypto.infrastructure.mapper.TrackedCoinMapper;
 import com.ct01.crypto.infrastructure.persistence.CoinRepositoryImpl;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryBatchWriter;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryJdbcReader;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryPartitionManager;
 import com.ct01.crypto.infrastructure.persistence.PriceHistoryRepositoryImpl;
 import com.ct01.crypto.infrastructure.persistence.TrackedCoinRepositoryImpl;
-import com.ct01.crypto.infrastructure.external.BinanceExchangeAdapter;
-import com.ct01.crypto.infrastructure.external.OkxExchangeAdapter;
-import com.ct01.crypto.infrastructure.service.ExchangeAdapterService;
+import com.ct01.crypto.infrastructure.persistence.TradingPairCatalog;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -82,8 +84,15 @@ public class CryptoDomainConfig {
     public PriceHistoryRepository priceHistoryRepository(alg.coyote001.repository.PriceHistoryRepository jpaPriceHistoryRepository,
                                                         alg.coyote001.repository.CoinRepository jpaCoinRepository,
                                                         alg.coyote001.repository.ExchangeRepository jpaExchangeRepository,
-                                                        PriceHistoryMapper priceHistoryMapper) {
-        return new PriceHistoryRepositoryImpl(jpaPriceHistoryRepository, jpaCoinRepository, jpaExchangeRepository, priceHistoryMapper);
+                                                        PriceHistoryMapper priceHistoryMapper,
+                                                        PriceHistoryBatchWriter priceHistoryBatchWriter,
+                                                        PriceHistoryPartitionManager priceHistoryPartitionManager,
+                                                        PriceHistoryJdbcReader priceHistoryJdbcReader,
+                                                        PriceArchiveStore priceArchiveStore,
+                                                        TradingPairCatalog tradingPairCatalog) {
+        return new PriceHistoryRepositoryImpl(jpaPriceHistoryRepository, jpaCoinRepository, jpaExchangeRepository,
+                priceHistoryMapper, priceHistoryBatchWriter, priceHistoryPartitionManager, priceHistoryJdbcReader,
+                priceArchiveStore, tradingPairCatalog);
     }
     
     /**
@@ -93,29 +102,4 @@ public class CryptoDomainConfig {
     public ObjectMapper cryptoObjectMapper() {
         return new ObjectMapper().findAndRegisterModules();
     }
-    
-    /**
-     * Binance Exchange Adapter
-     */
-    @Bean
-    public BinanceExchangeAdapter binanceExchangeAdapter(ObjectMapper cryptoObjectMapper) {
-        return new BinanceExchangeAdapter(cryptoObjectMapper);
-    }
-    
-    /**
-     * OKX Exchange Adapter
-     */
-    @Bean
-    public OkxExchangeAdapter okxExchangeAdapter(ObjectMapper cryptoObjectMapper) {
-        return new OkxExchangeAdapter(cryptoObjectMapper);
-    }
-    
-    /**
-     * Exchange Adapter Service
-     */
-    @Bean
-    public ExchangeAdapterService exchangeAdapterService(BinanceExchangeAdapter binanceAdapter,
-                                                        OkxExchangeAdapter okxAdapter) {
-        return new ExchangeAdapterService(binanceAdapter, okxAdapter);
-    }
 } 
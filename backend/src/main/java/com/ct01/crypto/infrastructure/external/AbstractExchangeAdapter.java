@@ -1,15 +1,31 @@
 package com.ct01.crypto.infrastructure.external;
 
+import com.ct01.crypto.domain.FixedPoint;
 import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Базовый класс для Exchange Adapters
@@ -22,65 +38,148 @@ public abstract class AbstractExchangeAdapter implements IExchangeAdapter {
     protected final ObjectMapper objectMapper;
     protected final String baseUrl;
     protected final int rateLimitPerMinute;
+    protected final ExchangeRateLimiter rateLimiter;
     
-    // Rate limiting
-    private final AtomicInteger requestCounter = new AtomicInteger(0);
-    private final ConcurrentHashMap<String, Long> lastRequestTime = new ConcurrentHashMap<>();
-    private volatile long lastResetTime = System.currentTimeMillis();
-    
-    protected AbstractExchangeAdapter(String baseUrl, int rateLimitPerMinute, ObjectMapper objectMapper) {
+    protected AbstractExchangeAdapter(String baseUrl, int rateLimitPerMinute, ObjectMapper objectMapper,
+                                      ExchangeHttpClientFactory httpClientFactory) {
         this.baseUrl = baseUrl;
         this.rateLimitPerMinute = rateLimitPerMinute;
         this.objectMapper = objectMapper;
-        this.webClient = WebClient.builder()
-                .baseUrl(baseUrl)
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
-                .build();
+        this.rateLimiter = new ExchangeRateLimiter(getExchangeName(), rateLimitPerMinute);
+        this.webClient = httpClientFactory.createWebClient(getExchangeName(), baseUrl, 1024 * 1024);
         
         log.info("Initialized {} with base URL: {}, rate limit: {} req/min", 
                 getExchangeName(), baseUrl, rateLimitPerMinute);
     }
     
     /**
-     * Проверить и применить rate limiting
+     * Выполнить HTTP запрос с rate limiting
      */
-    protected void checkRateLimit() {
-        long currentTime = System.currentTimeMillis();
-        
-        // Reset counter every minute
-        if (currentTime - lastResetTime > 60_000) {
-            requestCounter.set(0);
-            lastResetTime = currentTime;
-        }
-        
-        if (requestCounter.get() >= rateLimitPerMinute) {
-            long waitTime = 60_000 - (currentTime - lastResetTime);
-            if (waitTime > 0) {
-                log.warn("Rate limit reached for {}, waiting {} ms", getExchangeName(), waitTime);
-                try {
-                    Thread.sleep(waitTime);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-                requestCounter.set(0);
-                lastResetTime = System.currentTimeMillis();
-            }
-        }
-        
-        requestCounter.incrementAndGet();
+    protected <T> Mono<T> executeRequest(Mono<T> request, Class<T> responseType) {
+        return executeRequest(null, request);
     }
     
     /**
-     * Выполнить HTTP запрос с rate limiting
+     * Выполнить HTTP запрос к endpoint с учетом его веса и собственного лимита
+     * Ожидание токенов не блокирует поток: запрос откладывается до пополнения bucket
      */
-    protected <T> Mono<T> executeRequest(Mono<T> request, Class<T> responseType) {
-        return Mono.fromRunnable(this::checkRateLimit)
-                .then(request)
-                .doOnError(error -> log.error("Request to {} failed: {}", getExchangeName(), error.getMessage()))
-                .onErrorResume(error -> {
-                    log.error("Exchange {} request failed", getExchangeName(), error);
+    protected <T> Mono<T> executeRequest(String endpoint, Mono<T> request) {
+        return withErrorHandling(rateLimiter.acquire(endpoint).then(request));
+    }
+    
+    /**
+     * Выполнить потоковый HTTP запрос с явным весом
+     */
+    protected <T> Flux<T> executeWeightedStream(String endpoint, int weight, Flux<T> request) {
+        return rateLimiter.acquire(endpoint, weight)
+                .thenMany(request)
+                .onErrorResume(AbstractExchangeAdapter::isRejectedRequest, error -> {
+                    log.debug("Exchange {} rejected request: {}", getExchangeName(), error.getMessage());
+                    return Flux.empty();
+                })
+                .doOnError(error -> log.error("Exchange {} request failed: {}", getExchangeName(), error.getMessage()));
+    }
+    
+    /**
+     * Отклоненный запрос (неизвестный символ и т.п.) дает пустой результат;
+     * сетевые ошибки, 5xx и превышение лимитов передаются вызывающему, чтобы их учел circuit breaker
+     */
+    private <T> Mono<T> withErrorHandling(Mono<T> request) {
+        return request
+                .onErrorResume(AbstractExchangeAdapter::isRejectedRequest, error -> {
+                    log.debug("Exchange {} rejected request: {}", getExchangeName(), error.getMessage());
                     return Mono.empty();
+                })
+                .doOnError(error -> log.error("Exchange {} request failed: {}", getExchangeName(), error.getMessage()));
+    }
+    
+    /**
+     * Ответ 4xx на сам запрос; 429 и 418 (бан по IP у Binance) - признак перегрузки биржи, а не ошибка запроса
+     */
+    protected static boolean isRejectedRequest(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return response.getStatusCode().is4xxClientError()
+                    && status != HttpStatus.TOO_MANY_REQUESTS.value()
+                    && status != HttpStatus.I_AM_A_TEAPOT.value();
+        }
+        return false;
+    }
+    
+    /**
+     * Потоковое декодирование JSON ответа в элементы без построения дерева
+     * Элементы отдаются по мере прихода данных, размер ответа не ограничен лимитом кодеков
+     */
+    protected <T> Flux<T> decodeJson(WebClient.ResponseSpec response, String arrayField,
+                                     Supplier<? extends StreamingJsonDecoder.ElementReader<T>> readerFactory) {
+        return decodeJson(response, arrayField, readerFactory, null);
+    }
+    
+    protected <T> Flux<T> decodeJson(WebClient.ResponseSpec response, String arrayField,
+                                     Supplier<? extends StreamingJsonDecoder.ElementReader<T>> readerFactory,
+                                     Consumer<Map<String, String>> rootValidator) {
+        return StreamingJsonDecoder.decode(
+                objectMapper.getFactory(),
+                response.bodyToFlux(DataBuffer.class),
+                arrayField,
+                readerFactory,
+                rootValidator
+        );
+    }
+    
+    /**
+     * Условный запрос списка торговых пар
+     * Валидаторы предыдущего ответа отправляются в If-None-Match / If-Modified-Since;
+     * на 304 тело не читается и возвращается прежний список с пометкой notModified
+     */
+    protected Mono<SymbolListing> fetchSymbolListing(String endpoint, int weight,
+                                                     Function<UriBuilder, URI> uri, String arrayField,
+                                                     Supplier<? extends StreamingJsonDecoder.ElementReader<String>> readerFactory,
+                                                     Consumer<Map<String, String>> rootValidator,
+                                                     SymbolListing previous) {
+        Mono<SymbolListing> request = webClient.get()
+                .uri(uri)
+                .headers(headers -> {
+                    if (previous != null && previous.etag() != null) {
+                        headers.setIfNoneMatch(previous.etag());
+                    }
+                    if (previous != null && previous.lastModified() != null) {
+                        headers.set(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+                    }
+                })
+                .exchangeToMono(response -> {
+                    if (previous != null && response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                        return response.releaseBody().thenReturn(previous.unchanged());
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.createError();
+                    }
+                    HttpHeaders headers = response.headers().asHttpHeaders();
+                    String etag = headers.getETag();
+                    String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                    return StreamingJsonDecoder.decode(
+                                    objectMapper.getFactory(),
+                                    response.bodyToFlux(DataBuffer.class),
+                                    arrayField,
+                                    readerFactory,
+                                    rootValidator)
+                            .sort()
+                            .collectList()
+                            .map(symbols -> new SymbolListing(List.copyOf(symbols), etag, lastModified, false));
                 });
+        
+        return executeWeightedStream(endpoint, weight, request.flux()).next();
+    }
+    
+    /**
+     * Разбить список на части фиксированного размера
+     */
+    protected static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + size)));
+        }
+        return chunks;
     }
     
     /**
@@ -119,6 +218,70 @@ public abstract class AbstractExchangeAdapter implements IExchangeAdapter {
         );
     }
     
+    /**
+     * Создать компактный тик из сообщения потока; время биржи 0 заменяется текущим
+     */
+    protected PriceTick createPriceTick(String symbol, ExchangeStreamClient.StreamTick tick) {
+        long epochMillis = tick.epochMillis() > 0 ? tick.epochMillis() : System.currentTimeMillis();
+        return new PriceTick(
+                symbol,
+                getExchangeName(),
+                "USDT",
+                epochMillis * 1_000_000L,
+                tick.price(),
+                tick.priceScale(),
+                tick.volume(),
+                tick.volumeScale(),
+                tick.change24h(),
+                tick.change24hScale()
+        );
+    }
+    
+    /**
+     * Масштаб числа текущего токена: знаки дробной части без хвостовых нулей, не больше 8
+     */
+    protected static int readScale(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return Math.max(0, FixedPoint.scaleOf(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength(), FixedPoint.MAX_SCALE));
+        }
+        if (token != null && token.isNumeric()) {
+            return FixedPoint.scaleOf(parser.getDecimalValue(), FixedPoint.MAX_SCALE);
+        }
+        return 0;
+    }
+    
+    /**
+     * Мантисса числа текущего токена в масштабе scale; FixedPoint.NONE, если значения нет
+     */
+    protected static long readMantissa(JsonParser parser, int scale) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return FixedPoint.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), scale);
+        }
+        if (token != null && token.isNumeric()) {
+            return FixedPoint.of(parser.getDecimalValue(), scale);
+        }
+        return FixedPoint.NONE;
+    }
+    
+    /**
+     * Прочитать числовое значение текущего токена без промежуточной строки
+     * Биржи передают цены строками ("123.45"), поэтому читаем символы токена напрямую
+     */
+    protected static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getTextLength() == 0 ? null
+                    : new BigDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        if (token != null && token.isNumeric()) {
+            return parser.getDecimalValue();
+        }
+        return null;
+    }
+    
     /**
      * Создать объект ошибки в случае неудачного запроса
      */
@@ -145,28 +308,18 @@ public abstract class AbstractExchangeAdapter implements IExchangeAdapter {
     @Override
     public Mono<Boolean> isHealthy() {
         return executeRequest(
+                getHealthCheckEndpoint(),
                 webClient.get()
                         .uri(getHealthCheckEndpoint())
                         .retrieve()
                         .bodyToMono(String.class)
-                        .map(response -> true),
-                Boolean.class
+                        .map(response -> true)
         ).onErrorReturn(false);
     }
     
     @Override
     public Mono<ExchangeRateLimitInfo> getRateLimitInfo() {
-        long currentTime = System.currentTimeMillis();
-        int remaining = Math.max(0, rateLimitPerMinute - requestCounter.get());
-        long resetTime = lastResetTime + 60_000;
-        boolean isLimited = requestCounter.get() >= rateLimitPerMinute;
-        
-        return Mono.just(new ExchangeRateLimitInfo(
-                rateLimitPerMinute,
-                remaining,
-                resetTime,
-                isLimited
-        ));
+        return Mono.fromSupplier(rateLimiter::getRateLimitInfo);
     }
     
     /**
@@ -1,16 +1,30 @@
 package com.ct01.crypto.infrastructure.external;
 
+import com.ct01.crypto.domain.FixedPoint;
 import com.ct01.crypto.domain.PriceHistory;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.ct01.crypto.domain.PriceTick;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -25,10 +39,37 @@ public class BinanceExchangeAdapter extends AbstractExchangeAdapter {
     private static final String TICKER_ENDPOINT = "/api/v3/ticker/24hr";
     private static final String PING_ENDPOINT = "/api/v3/ping";
     private static final String EXCHANGE_INFO_ENDPOINT = "/api/v3/exchangeInfo";
-    private static final int MAX_REQUESTS_PER_MINUTE = 1200;
+    private static final String TICKER_STREAM_SUFFIX = "@ticker";
+    // Сервер Binance сам шлет ping-фреймы, тикер публикуется раз в секунду
+    private static final Duration STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
     
-    public BinanceExchangeAdapter(ObjectMapper objectMapper) {
-        super(BASE_URL, MAX_REQUESTS_PER_MINUTE, objectMapper);
+    // Веса запросов Binance (request weight) в общем минутном бюджете
+    private static final int TICKER_WEIGHT = 2;
+    private static final int EXCHANGE_INFO_WEIGHT = 20;
+    private static final int ALL_TICKERS_WEIGHT = 80;
+    
+    // Пакетный запрос ?symbols=[...] стоит 2 при 1-20 символах, 40 при 21-100 и 80 свыше;
+    // при большом наборе выгоднее один запрос всех тикеров с фильтрацией
+    private static final int SYMBOLS_PER_BATCH = 20;
+    private static final int ALL_TICKERS_THRESHOLD = 100;
+    
+    private final ExchangeStreamClient streamClient;
+    
+    public BinanceExchangeAdapter(ObjectMapper objectMapper,
+                                  @Value("${app.exchange.binance.rate-limit:1200}") int rateLimitPerMinute,
+                                  @Value("${app.exchange.binance.stream-url:wss://stream.binance.com:9443/ws}") String streamUrl,
+                                  ExchangeHttpClientFactory httpClientFactory) {
+        super(BASE_URL, rateLimitPerMinute, objectMapper, httpClientFactory);
+        rateLimiter
+                .withEndpointWeight(TICKER_ENDPOINT, TICKER_WEIGHT)
+                .withEndpointWeight(EXCHANGE_INFO_ENDPOINT, EXCHANGE_INFO_WEIGHT);
+        this.streamClient = new ExchangeStreamClient(
+                getExchangeName(),
+                URI.create(streamUrl),
+                new BinanceStreamProtocol(),
+                this::createPriceTick,
+                STREAM_HEARTBEAT_INTERVAL
+        );
         log.info("Initialized DDD BinanceExchangeAdapter");
     }
     
@@ -61,57 +102,120 @@ public class BinanceExchangeAdapter extends AbstractExchangeAdapter {
         String normalizedSymbol = normalizeSymbol(symbol);
         log.debug("Fetching ticker for normalized symbol: {}", normalizedSymbol);
         
-        return executeRequest(
-                webClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path(TICKER_ENDPOINT)
-                                .queryParam("symbol", normalizedSymbol)
-                                .build())
-                        .retrieve()
-                        .bodyToMono(JsonNode.class),
-                JsonNode.class
-        ).map(response -> parseTickerResponse(response, symbol))
-         .onErrorReturn(createErrorPriceHistory(symbol, "Failed to fetch ticker from Binance"));
+        WebClient.ResponseSpec response = webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(TICKER_ENDPOINT)
+                        .queryParam("symbol", normalizedSymbol)
+                        .build())
+                .retrieve();
+        Map<String, String> tracked = Map.of(normalizedSymbol, symbol);
+        
+        return executeWeightedStream(
+                TICKER_ENDPOINT,
+                TICKER_WEIGHT,
+                decodeJson(response, null, () -> new TickerReader(tracked))
+        ).next();
     }
     
     @Override
     public Flux<PriceHistory> fetchTickers(List<String> symbols) {
-        return Flux.fromIterable(symbols)
-                .flatMap(this::fetchTicker)
-                .doOnComplete(() -> log.debug("Fetched {} tickers from Binance", symbols.size()));
+        return fetchTickers(symbols, 1);
     }
     
     @Override
-    public Mono<Void> subscribeToTicker(String symbol, Consumer<PriceHistory> callback) {
-        // WebSocket subscription implementation would go here
-        log.warn("WebSocket subscription not implemented yet for Binance symbol: {}", symbol);
-        return Mono.empty();
+    public Flux<PriceHistory> fetchTickers(List<String> symbols, int maxConcurrency) {
+        if (symbols.isEmpty()) {
+            return Flux.empty();
+        }
+        
+        // Нормализованный символ -> символ в формате запроса
+        Map<String, String> tracked = new LinkedHashMap<>();
+        symbols.forEach(symbol -> tracked.putIfAbsent(normalizeSymbol(symbol), symbol));
+        
+        Flux<PriceHistory> tickers;
+        if (tracked.size() > ALL_TICKERS_THRESHOLD) {
+            tickers = fetchTickerBatch(null, ALL_TICKERS_WEIGHT, tracked);
+        } else {
+            tickers = Flux.fromIterable(partition(List.copyOf(tracked.keySet()), SYMBOLS_PER_BATCH))
+                    .flatMap(chunk -> fetchTickerBatch(chunk, TICKER_WEIGHT, tracked)
+                            // Binance отклоняет весь пакет из-за одного неизвестного символа
+                            .switchIfEmpty(Flux.fromIterable(chunk)
+                                    .flatMap(normalized -> fetchTicker(tracked.get(normalized)), maxConcurrency)),
+                            maxConcurrency);
+        }
+        
+        return tickers.doOnComplete(() -> log.debug("Fetched {} tickers from Binance", tracked.size()));
+    }
+    
+    /**
+     * Пакетный запрос тикеров; без списка символов возвращаются все тикеры биржи
+     */
+    private Flux<PriceHistory> fetchTickerBatch(List<String> normalizedSymbols, int weight,
+                                                Map<String, String> tracked) {
+        WebClient.ResponseSpec response = webClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path(TICKER_ENDPOINT);
+                    if (normalizedSymbols == null) {
+                        return uriBuilder.build();
+                    }
+                    return uriBuilder.queryParam("symbols", "{symbols}")
+                            .build(toJsonArray(normalizedSymbols));
+                })
+                .retrieve();
+        
+        return executeWeightedStream(
+                TICKER_ENDPOINT,
+                weight,
+                decodeJson(response, null, () -> new TickerReader(tracked))
+        );
+    }
+    
+    private String toJsonArray(List<String> values) {
+        ArrayNode array = objectMapper.createArrayNode();
+        values.forEach(array::add);
+        return array.toString();
+    }
+    
+    @Override
+    public Mono<Void> subscribeToTicker(String symbol, Consumer<PriceTick> callback) {
+        return streamClient.subscribe(tickerStreamKey(symbol), symbol, callback);
     }
     
     @Override
     public Mono<Void> unsubscribeFromTicker(String symbol) {
-        // WebSocket unsubscription implementation would go here
-        log.warn("WebSocket unsubscription not implemented yet for Binance symbol: {}", symbol);
-        return Mono.empty();
+        return streamClient.unsubscribe(tickerStreamKey(symbol));
+    }
+    
+    @Override
+    public boolean isStreamConnected() {
+        return streamClient.isConnected();
     }
     
     @Override
     public Mono<Void> disconnect() {
         log.info("Disconnecting from Binance");
-        return Mono.empty();
+        return streamClient.close();
     }
     
     @Override
     public Mono<List<String>> getSupportedSymbols() {
-        return executeRequest(
-                webClient.get()
-                        .uri(EXCHANGE_INFO_ENDPOINT)
-                        .retrieve()
-                        .bodyToMono(JsonNode.class),
-                JsonNode.class
-        ).map(this::parseSymbolsResponse)
-         .doOnError(error -> log.error("Failed to fetch symbols from Binance", error))
-         .onErrorReturn(List.of());
+        return getSupportedSymbols(null)
+                .map(SymbolListing::symbols)
+                .defaultIfEmpty(List.of());
+    }
+    
+    @Override
+    public Mono<SymbolListing> getSupportedSymbols(SymbolListing previous) {
+        // exchangeInfo занимает несколько мегабайт: разбираем поток, не загружая ответ целиком
+        return fetchSymbolListing(
+                EXCHANGE_INFO_ENDPOINT,
+                EXCHANGE_INFO_WEIGHT,
+                uriBuilder -> uriBuilder.path(EXCHANGE_INFO_ENDPOINT).build(),
+                "symbols",
+                SymbolReader::new,
+                null,
+                previous
+        );
     }
     
     @Override
@@ -137,59 +241,163 @@ public class BinanceExchangeAdapter extends AbstractExchangeAdapter {
     }
     
     /**
-     * Парсинг ответа тикера от Binance
+     * Имя потока тикера Binance: btcusdt@ticker
      */
-    private PriceHistory parseTickerResponse(JsonNode response, String originalSymbol) {
-        try {
-            if (!response.has("symbol") || !response.has("lastPrice")) {
-                log.error("Invalid Binance ticker response format: missing required fields");
-                throw new RuntimeException("Invalid response format");
+    private String tickerStreamKey(String symbol) {
+        return normalizeSymbol(symbol).toLowerCase() + TICKER_STREAM_SUFFIX;
+    }
+    
+    /**
+     * Сборка тикера Binance из полей элемента с фильтрацией по отслеживаемым символам
+     */
+    private class TickerReader implements StreamingJsonDecoder.ElementReader<PriceHistory> {
+        
+        private final Map<String, String> tracked;
+        private String originalSymbol;
+        private BigDecimal price;
+        private BigDecimal volume;
+        private BigDecimal change24h;
+        
+        TickerReader(Map<String, String> tracked) {
+            this.tracked = tracked;
+        }
+        
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            switch (name) {
+                case "symbol" -> {
+                    // Binance отдает symbol первым полем: для неотслеживаемых пар числа не разбираем
+                    originalSymbol = tracked.get(parser.getText());
+                    return originalSymbol != null;
+                }
+                case "lastPrice" -> price = readDecimal(parser);
+                case "volume" -> volume = readDecimal(parser);
+                case "priceChangePercent" -> change24h = readDecimal(parser);
+                default -> { }
+            }
+            return true;
+        }
+        
+        @Override
+        public PriceHistory complete() {
+            if (originalSymbol == null || price == null || price.signum() <= 0) {
+                return null;
+            }
+            return createPriceHistory(originalSymbol, getExchangeName(), price, volume, change24h, LocalDateTime.now());
+        }
+    }
+    
+    /**
+     * Отбор торгуемых USDT пар из exchangeInfo
+     */
+    private static class SymbolReader implements StreamingJsonDecoder.ElementReader<String> {
+        
+        private String symbol;
+        private boolean trading;
+        
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            switch (name) {
+                case "symbol" -> {
+                    symbol = parser.getText();
+                    return symbol.endsWith("USDT");
+                }
+                case "status" -> {
+                    trading = "TRADING".equals(parser.getText());
+                    return trading;
+                }
+                default -> {
+                    return true;
+                }
             }
-            
-            String symbol = response.get("symbol").asText();
-            BigDecimal price = new BigDecimal(response.get("lastPrice").asText());
-            BigDecimal volume24h = response.has("volume") ? 
-                    new BigDecimal(response.get("volume").asText()) : BigDecimal.ZERO;
-            BigDecimal change24h = response.has("priceChangePercent") ? 
-                    new BigDecimal(response.get("priceChangePercent").asText()) : BigDecimal.ZERO;
-            
-            return createPriceHistory(
-                    originalSymbol,
-                    getExchangeName(),
-                    price,
-                    volume24h,
-                    change24h,
-                    LocalDateTime.now()
-            );
-            
-        } catch (Exception e) {
-            log.error("Error parsing Binance ticker response for {}: {}", originalSymbol, e.getMessage());
-            throw new RuntimeException("Failed to parse ticker response", e);
+        }
+        
+        @Override
+        public String complete() {
+            return trading && symbol != null ? symbol.replace("USDT", "/USDT") : null;
         }
     }
     
     /**
-     * Парсинг списка символов от Binance
+     * Протокол Binance WebSocket Streams: подписка через SUBSCRIBE, события 24hrTicker
      */
-    private List<String> parseSymbolsResponse(JsonNode response) {
-        try {
-            if (!response.has("symbols")) {
-                log.error("Invalid Binance exchange info response: missing symbols");
-                return List.of();
+    private class BinanceStreamProtocol implements ExchangeStreamClient.Protocol {
+        
+        private final AtomicLong requestId = new AtomicLong();
+        
+        @Override
+        public String subscribeMessage(Collection<String> streamKeys) {
+            return command("SUBSCRIBE", streamKeys);
+        }
+        
+        @Override
+        public String unsubscribeMessage(Collection<String> streamKeys) {
+            return command("UNSUBSCRIBE", streamKeys);
+        }
+        
+        @Override
+        public List<ExchangeStreamClient.StreamTick> parse(String payload) throws IOException {
+            try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return List.of();
+                }
+                
+                String symbol = null;
+                long price = FixedPoint.NONE;
+                int priceScale = 0;
+                long volume = FixedPoint.NONE;
+                int volumeScale = 0;
+                long change24h = FixedPoint.NONE;
+                int change24hScale = 0;
+                long eventTime = 0;
+                
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "s" -> symbol = parser.getText();
+                        case "c" -> {
+                            priceScale = readScale(parser);
+                            price = readMantissa(parser, priceScale);
+                        }
+                        case "v" -> {
+                            volumeScale = readScale(parser);
+                            volume = readMantissa(parser, volumeScale);
+                        }
+                        case "P" -> {
+                            change24hScale = readScale(parser);
+                            change24h = readMantissa(parser, change24hScale);
+                        }
+                        case "E" -> eventTime = parser.getValueAsLong();
+                        default -> parser.skipChildren();
+                    }
+                }
+                
+                // Ответы на SUBSCRIBE ({"result":null,"id":1}) не содержат тикера
+                if (symbol == null || price == FixedPoint.NONE) {
+                    return List.of();
+                }
+                
+                return List.of(new ExchangeStreamClient.StreamTick(
+                        symbol.toLowerCase() + TICKER_STREAM_SUFFIX,
+                        price,
+                        priceScale,
+                        volume,
+                        volumeScale,
+                        change24h,
+                        change24hScale,
+                        eventTime
+                ));
             }
-            
-            JsonNode symbolsArray = response.get("symbols");
-            return java.util.stream.StreamSupport.stream(symbolsArray.spliterator(), false)
-                    .filter(symbolNode -> "TRADING".equals(symbolNode.get("status").asText()))
-                    .map(symbolNode -> symbolNode.get("symbol").asText())
-                    .filter(symbol -> symbol.endsWith("USDT")) // Only USDT pairs
-                    .map(symbol -> symbol.replace("USDT", "/USDT")) // Convert to standard format
-                    .sorted()
-                    .toList();
-                    
-        } catch (Exception e) {
-            log.error("Error parsing Binance symbols response: {}", e.getMessage());
-            return List.of();
+        }
+        
+        private String command(String method, Collection<String> streamKeys) {
+            ObjectNode message = objectMapper.createObjectNode();
+            message.put("method", method);
+            ArrayNode params = message.putArray("params");
+            streamKeys.forEach(params::add);
+            message.put("id", requestId.incrementAndGet());
+            return message.toString();
         }
     }
-} 
+}
@@ -0,0 +1,119 @@
+package com.ct01.crypto.infrastructure.external;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Фабрика HTTP клиентов для Exchange Adapters
+ * Для каждой биржи создается собственный пул соединений (keep-alive, вытеснение по простою и времени жизни),
+ * gzip, HTTP/2 через ALPN и кэш DNS. Метрики пула (active/idle/pending) публикуются в Micrometer.
+ * Настройки: app.exchange.{exchange}.http.*
+ */
+@Component
+@Slf4j
+public class ExchangeHttpClientFactory implements DisposableBean {
+    
+    private static final String PROPERTY_PREFIX = "app.exchange.";
+    
+    private final Environment environment;
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+    
+    public ExchangeHttpClientFactory(Environment environment) {
+        this.environment = environment;
+    }
+    
+    /**
+     * Создать WebClient биржи поверх настроенного пула соединений
+     */
+    public WebClient createWebClient(String exchangeName, String baseUrl, int maxInMemorySize) {
+        Settings settings = settingsFor(exchangeName);
+        ConnectionProvider provider = providers.computeIfAbsent(exchangeName, name -> createProvider(name, settings));
+    
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.connectTimeout().toMillis())
+                .keepAlive(true)
+                .compress(settings.compression())
+                .resolver(spec -> spec
+                        .cacheMinTimeToLive(settings.dnsCacheTtl())
+                        .cacheMaxTimeToLive(settings.dnsCacheTtl()));
+    
+        if (settings.http2() && baseUrl.startsWith("https")) {
+            // HTTP/2 согласуется через ALPN, при отказе сервера используется HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+    
+        log.info("Created HTTP client for {}: pool {} connections, idle {}s, lifetime {}s, gzip={}, http2={}",
+                exchangeName, settings.maxConnections(), settings.maxIdleTime().toSeconds(),
+                settings.maxLifeTime().toSeconds(), settings.compression(), settings.http2());
+    
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxInMemorySize))
+                .build();
+    }
+    
+    @Override
+    public void destroy() {
+        providers.values().forEach(ConnectionProvider::dispose);
+        providers.clear();
+    }
+    
+    private ConnectionProvider createProvider(String exchangeName, Settings settings) {
+        return ConnectionProvider.builder("exchange-" + exchangeName.toLowerCase())
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireMaxCount(settings.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.pendingAcquireTimeout())
+                .maxIdleTime(settings.maxIdleTime())
+                .maxLifeTime(settings.maxLifeTime())
+                .evictInBackground(settings.evictionInterval())
+                .lifo()
+                .metrics(true)
+                .build();
+    }
+    
+    private Settings settingsFor(String exchangeName) {
+        String prefix = PROPERTY_PREFIX + exchangeName.toLowerCase() + ".http.";
+        return new Settings(
+                environment.getProperty(prefix + "max-connections", Integer.class, 50),
+                environment.getProperty(prefix + "pending-acquire-max-count", Integer.class, 500),
+                duration(prefix + "pending-acquire-timeout-ms", 5_000),
+                duration(prefix + "max-idle-time-ms", 30_000),
+                duration(prefix + "max-life-time-ms", 300_000),
+                duration(prefix + "eviction-interval-ms", 15_000),
+                duration(prefix + "connect-timeout-ms", 5_000),
+                duration(prefix + "dns-cache-ttl-ms", 60_000),
+                environment.getProperty(prefix + "compression", Boolean.class, true),
+                environment.getProperty(prefix + "http2", Boolean.class, true)
+        );
+    }
+    
+    private Duration duration(String key, long defaultMillis) {
+        return Duration.ofMillis(environment.getProperty(key, Long.class, defaultMillis));
+    }
+    
+    private record Settings(
+            int maxConnections,
+            int pendingAcquireMaxCount,
+            Duration pendingAcquireTimeout,
+            Duration maxIdleTime,
+            Duration maxLifeTime,
+            Duration evictionInterval,
+            Duration connectTimeout,
+            Duration dnsCacheTtl,
+            boolean compression,
+            boolean http2
+    ) {}
+}
@@ -0,0 +1,125 @@
+package com.ct01.crypto.infrastructure.external;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Неблокирующий rate limiter для Exchange Adapters
+ * Сглаженный token bucket с весами запросов (Binance) и отдельными лимитами на путь (OKX).
+ * При исчерпании токенов запрос откладывается через планировщик, поток event loop не блокируется.
+ */
+@Slf4j
+public class ExchangeRateLimiter {
+    
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "exchange-rate-limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final String exchangeName;
+    private final int permitsPerMinute;
+    private final Bucket globalBucket;
+    private final Map<String, Integer> endpointWeights = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> endpointBuckets = new ConcurrentHashMap<>();
+    
+    public ExchangeRateLimiter(String exchangeName, int permitsPerMinute) {
+        if (permitsPerMinute <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive");
+        }
+        this.exchangeName = exchangeName;
+        this.permitsPerMinute = permitsPerMinute;
+        this.globalBucket = createBucket(permitsPerMinute, Duration.ofMinutes(1));
+    }
+    
+    /**
+     * Задать вес запроса к endpoint в общем бюджете биржи
+     */
+    public ExchangeRateLimiter withEndpointWeight(String endpoint, int weight) {
+        if (weight <= 0 || weight > permitsPerMinute) {
+            throw new IllegalArgumentException("Endpoint weight must be between 1 and " + permitsPerMinute);
+        }
+        endpointWeights.put(endpoint, weight);
+        return this;
+    }
+    
+    /**
+     * Задать собственный лимит для endpoint (в дополнение к общему бюджету)
+     */
+    public ExchangeRateLimiter withEndpointLimit(String endpoint, int permits, Duration period) {
+        endpointBuckets.put(endpoint, createBucket(permits, period));
+        return this;
+    }
+    
+    /**
+     * Получить разрешение на запрос к endpoint с его зарегистрированным весом
+     */
+    public Mono<Void> acquire(String endpoint) {
+        int weight = endpoint != null ? endpointWeights.getOrDefault(endpoint, 1) : 1;
+        return acquire(endpoint, weight);
+    }
+    
+    /**
+     * Получить разрешение на запрос с явным весом
+     * Mono завершается, когда токены зарезервированы; ожидание планируется без блокировки потока
+     */
+    public Mono<Void> acquire(String endpoint, int weight) {
+        Bucket endpointBucket = endpoint != null ? endpointBuckets.get(endpoint) : null;
+        Mono<Void> endpointPermit = endpointBucket != null
+                ? Mono.defer(() -> consume(endpointBucket, 1, endpoint))
+                : Mono.empty();
+        return endpointPermit.then(Mono.defer(() -> consume(globalBucket, weight, endpoint)));
+    }
+    
+    /**
+     * Текущее состояние общего бюджета
+     */
+    public IExchangeAdapter.ExchangeRateLimitInfo getRateLimitInfo() {
+        long available = Math.max(0, globalBucket.getAvailableTokens());
+        long missing = permitsPerMinute - available;
+        long msToFull = missing * 60_000L / permitsPerMinute;
+    
+        return new IExchangeAdapter.ExchangeRateLimitInfo(
+                permitsPerMinute,
+                (int) available,
+                System.currentTimeMillis() + msToFull,
+                available == 0
+        );
+    }
+    
+    public int getPermitsPerMinute() {
+        return permitsPerMinute;
+    }
+    
+    private Mono<Void> consume(Bucket bucket, int weight, String endpoint) {
+        if (bucket.tryConsume(weight)) {
+            return Mono.empty();
+        }
+    
+        if (log.isDebugEnabled()) {
+            long waitMs = Duration.ofNanos(bucket.estimateAbilityToConsume(weight).getNanosToWaitForRefill()).toMillis();
+            log.debug("Rate limit reached for {} ({}), delaying request by ~{} ms", exchangeName, endpoint, waitMs);
+        }
+        return Mono.fromFuture(() -> bucket.asScheduler().consume(weight, SCHEDULER));
+    }
+    
+    /**
+     * Сглаженный bucket: токены пополняются равномерно, а не пачкой раз в период
+     */
+    private static Bucket createBucket(int permits, Duration period) {
+        return Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(permits)
+                        .refillGreedy(permits, period)
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,271 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.ct01.crypto.domain.PriceTick;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * WebSocket клиент потоковых данных биржи
+ * Одно соединение на биржу, мультиплексирование подписок, переподключение с повторной подпиской
+ * и контроль heartbeat. Формат сообщений биржи инкапсулирован в {@link Protocol}.
+ */
+@Slf4j
+public class ExchangeStreamClient {
+    
+    private static final Duration RECONNECT_MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration RECONNECT_MAX_BACKOFF = Duration.ofSeconds(30);
+    private static final int MISSED_HEARTBEATS_BEFORE_RECONNECT = 3;
+    
+    private final String exchangeName;
+    private final URI uri;
+    private final Protocol protocol;
+    private final BiFunction<String, StreamTick, PriceTick> tickMapper;
+    private final WebSocketClient webSocketClient;
+    private final Duration heartbeatInterval;
+    
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicReference<Sinks.Many<String>> outbound = new AtomicReference<>();
+    private final AtomicLong lastMessageAt = new AtomicLong();
+    private volatile Disposable connection;
+    
+    public ExchangeStreamClient(String exchangeName, URI uri, Protocol protocol,
+                                BiFunction<String, StreamTick, PriceTick> tickMapper,
+                                Duration heartbeatInterval) {
+        this(exchangeName, uri, protocol, tickMapper, heartbeatInterval, new ReactorNettyWebSocketClient());
+    }
+    
+    public ExchangeStreamClient(String exchangeName, URI uri, Protocol protocol,
+                                BiFunction<String, StreamTick, PriceTick> tickMapper,
+                                Duration heartbeatInterval, WebSocketClient webSocketClient) {
+        this.exchangeName = exchangeName;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.tickMapper = tickMapper;
+        this.heartbeatInterval = heartbeatInterval;
+        this.webSocketClient = webSocketClient;
+    }
+    
+    /**
+     * Подписаться на поток; соединение открывается при первой подписке
+     */
+    public Mono<Void> subscribe(String streamKey, String symbol, Consumer<PriceTick> callback) {
+        return Mono.fromRunnable(() -> {
+            Subscription previous = subscriptions.put(streamKey, new Subscription(symbol, callback));
+            if (previous == null) {
+                send(protocol.subscribeMessage(List.of(streamKey)));
+            }
+            ensureConnected();
+            log.debug("Subscribed to {} stream {}", exchangeName, streamKey);
+        });
+    }
+    
+    /**
+     * Отписаться от потока; соединение закрывается, когда подписок не осталось
+     */
+    public Mono<Void> unsubscribe(String streamKey) {
+        return Mono.fromRunnable(() -> {
+            if (subscriptions.remove(streamKey) == null) {
+                return;
+            }
+            send(protocol.unsubscribeMessage(List.of(streamKey)));
+            if (subscriptions.isEmpty()) {
+                finishConnection();
+            }
+            log.debug("Unsubscribed from {} stream {}", exchangeName, streamKey);
+        });
+    }
+    
+    /**
+     * Закрыть соединение и сбросить все подписки
+     */
+    public Mono<Void> close() {
+        return Mono.fromRunnable(() -> {
+            subscriptions.clear();
+            closeConnection();
+        });
+    }
+    
+    public boolean isConnected() {
+        return outbound.get() != null;
+    }
+    
+    public Set<String> getSubscribedStreams() {
+        return Set.copyOf(subscriptions.keySet());
+    }
+    
+    private synchronized void ensureConnected() {
+        if (connection != null && !connection.isDisposed()) {
+            return;
+        }
+    
+        log.info("Opening {} stream connection to {}", exchangeName, uri);
+        connection = Mono.defer(() -> webSocketClient.execute(uri, this::handleSession))
+                .then(Mono.defer(() -> subscriptions.isEmpty()
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(new IllegalStateException("Stream closed by server"))))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, RECONNECT_MIN_BACKOFF)
+                        .maxBackoff(RECONNECT_MAX_BACKOFF)
+                        .filter(error -> !subscriptions.isEmpty())
+                        .doBeforeRetry(signal -> log.warn("Reconnecting to {} stream (attempt {}): {}",
+                                exchangeName, signal.totalRetries() + 1, signal.failure().getMessage())))
+                .subscribe(
+                        v -> { },
+                        error -> log.error("{} stream connection terminated: {}", exchangeName, error.getMessage()),
+                        () -> log.info("{} stream connection closed", exchangeName)
+                );
+    }
+    
+    /**
+     * Закрыть соединение после отправки уже поставленных сообщений: исходящий поток завершается,
+     * и сессия закрывается кадром close вслед за ним. Без открытой сессии попытки подключения отменяются
+     */
+    private synchronized void finishConnection() {
+        Sinks.Many<String> sink = outbound.getAndSet(null);
+        if (sink == null) {
+            closeConnection();
+            return;
+        }
+        synchronized (sink) {
+            sink.tryEmitComplete();
+        }
+    }
+    
+    private synchronized void closeConnection() {
+        if (connection != null) {
+            connection.dispose();
+            connection = null;
+        }
+        outbound.set(null);
+    }
+    
+    private Mono<Void> handleSession(WebSocketSession session) {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        outbound.set(sink);
+        lastMessageAt.set(System.currentTimeMillis());
+    
+        // Повторная подписка на все потоки после (пере)подключения
+        List<String> streamKeys = List.copyOf(subscriptions.keySet());
+        if (!streamKeys.isEmpty()) {
+            send(protocol.subscribeMessage(streamKeys));
+        }
+        log.info("Connected to {} stream, subscribed to {} streams", exchangeName, streamKeys.size());
+    
+        // Исходящий поток завершается только при последней отписке: тогда после отписки уходит кадр close
+        Mono<Void> output = session.send(sink.asFlux().map(session::textMessage))
+                .then(Mono.defer(session::close));
+        Mono<Void> input = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .doOnNext(this::handlePayload)
+                .then();
+        Mono<Void> heartbeat = Flux.interval(heartbeatInterval)
+                .concatMap(tick -> checkHeartbeat())
+                .then();
+    
+        return Mono.firstWithSignal(input, output, heartbeat)
+                .doFinally(signal -> outbound.compareAndSet(sink, null));
+    }
+    
+    private Mono<Void> checkHeartbeat() {
+        long idleMs = System.currentTimeMillis() - lastMessageAt.get();
+        if (idleMs > heartbeatInterval.toMillis() * MISSED_HEARTBEATS_BEFORE_RECONNECT) {
+            return Mono.error(new IllegalStateException("No messages for " + idleMs + " ms"));
+        }
+    
+        String ping = protocol.heartbeatMessage();
+        if (ping != null && idleMs >= heartbeatInterval.toMillis()) {
+            send(ping);
+        }
+        return Mono.empty();
+    }
+    
+    private void handlePayload(String payload) {
+        lastMessageAt.set(System.currentTimeMillis());
+        if (protocol.isHeartbeatReply(payload)) {
+            return;
+        }
+    
+        try {
+            for (StreamTick tick : protocol.parse(payload)) {
+                Subscription subscription = subscriptions.get(tick.streamKey());
+                if (subscription != null) {
+                    subscription.callback().accept(tickMapper.apply(subscription.symbol(), tick));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to handle {} stream message: {}", exchangeName, e.getMessage());
+        }
+    }
+    
+    private void send(String message) {
+        Sinks.Many<String> sink = outbound.get();
+        if (sink == null || message == null) {
+            return;
+        }
+        synchronized (sink) {
+            sink.tryEmitNext(message);
+        }
+    }
+    
+    /**
+     * Формат сообщений конкретной биржи
+     */
+    public interface Protocol {
+    
+        String subscribeMessage(Collection<String> streamKeys);
+    
+        String unsubscribeMessage(Collection<String> streamKeys);
+    
+        /**
+         * Сообщение keep-alive от клиента; null если heartbeat инициирует сервер
+         */
+        default String heartbeatMessage() {
+            return null;
+        }
+    
+        default boolean isHeartbeatReply(String payload) {
+            return false;
+        }
+    
+        /**
+         * Разобрать сообщение; служебные сообщения (подтверждения подписки и т.п.) дают пустой список
+         */
+        List<StreamTick> parse(String payload) throws IOException;
+    }
+    
+    /**
+     * Обновление тикера из потока: мантиссы с масштабом (см. FixedPoint) и время биржи в epoch millis
+     */
+    public record StreamTick(
+            String streamKey,
+            long price,
+            int priceScale,
+            long volume,
+            int volumeScale,
+            long change24h,
+            int change24hScale,
+            long epochMillis
+    ) {}
+    
+    private record Subscription(String symbol, Consumer<PriceTick> callback) {}
+}
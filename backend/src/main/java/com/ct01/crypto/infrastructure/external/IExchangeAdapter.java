@@ -1,6 +1,7 @@
 package com.ct01.crypto.infrastructure.external;
 
 import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -37,13 +38,23 @@ public interface IExchangeAdapter {
      */
     Flux<PriceHistory> fetchTickers(List<String> symbols);
     
+    /**
+     * Получить тикеры для нескольких торговых пар с ограничением параллельных запросов к бирже
+     * @param symbols список торговых пар
+     * @param maxConcurrency максимум одновременных запросов
+     * @return поток данных тикеров в порядке поступления
+     */
+    default Flux<PriceHistory> fetchTickers(List<String> symbols, int maxConcurrency) {
+        return fetchTickers(symbols);
+    }
+    
     /**
      * Подписаться на обновления тикера в реальном времени
      * @param symbol торговая пара
      * @param callback функция обратного вызова для получения данных
      * @return управление подпиской
      */
-    Mono<Void> subscribeToTicker(String symbol, Consumer<PriceHistory> callback);
+    Mono<Void> subscribeToTicker(String symbol, Consumer<PriceTick> callback);
     
     /**
      * Отписаться от обновлений тикера
@@ -51,6 +62,13 @@ public interface IExchangeAdapter {
      */
     Mono<Void> unsubscribeFromTicker(String symbol);
     
+    /**
+     * Активно ли потоковое (WebSocket) соединение с биржей
+     */
+    default boolean isStreamConnected() {
+        return false;
+    }
+    
     /**
      * Проверить доступность биржи
      * @return true если биржа доступна
@@ -74,6 +92,28 @@ public interface IExchangeAdapter {
      */
     Mono<List<String>> getSupportedSymbols();
     
+    /**
+     * Условное получение списка торговых пар (If-None-Match / If-Modified-Since)
+     * @param previous предыдущий результат или null; при неизмененном списке возвращается с notModified = true
+     */
+    default Mono<SymbolListing> getSupportedSymbols(SymbolListing previous) {
+        return getSupportedSymbols().map(symbols -> new SymbolListing(symbols, null, null, false));
+    }
+    
+    /**
+     * Список торговых пар вместе с валидаторами HTTP кэша
+     */
+    record SymbolListing(
+            List<String> symbols,
+            String etag,
+            String lastModified,
+            boolean notModified
+    ) {
+        public SymbolListing unchanged() {
+            return new SymbolListing(symbols, etag, lastModified, true);
+        }
+    }
+    
     /**
      * Информация о лимитах API биржи
      */
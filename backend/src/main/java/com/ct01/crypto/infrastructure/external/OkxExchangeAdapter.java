@@ -1,16 +1,30 @@
 package com.ct01.crypto.infrastructure.external;
 
+import com.ct01.crypto.domain.FixedPoint;
 import com.ct01.crypto.domain.PriceHistory;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.ct01.crypto.domain.PriceTick;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -26,10 +40,41 @@ public class OkxExchangeAdapter extends AbstractExchangeAdapter {
     private static final String TICKERS_ENDPOINT = "/api/v5/market/tickers";
     private static final String STATUS_ENDPOINT = "/api/v5/system/status";
     private static final String INSTRUMENTS_ENDPOINT = "/api/v5/public/instruments";
-    private static final int MAX_REQUESTS_PER_MINUTE = 600; // 20 requests per 2 seconds = ~600 per minute
+    private static final String INSTRUMENT_NOT_FOUND_CODE = "51001";
     
-    public OkxExchangeAdapter(ObjectMapper objectMapper) {
-        super(BASE_URL, MAX_REQUESTS_PER_MINUTE, objectMapper);
+    // OKX ограничивает каждый путь отдельно: 20 запросов за 2 секунды для market/public, 1 за 5 секунд для status
+    private static final int MARKET_REQUESTS_PER_WINDOW = 20;
+    private static final Duration MARKET_WINDOW = Duration.ofSeconds(2);
+    private static final Duration STATUS_WINDOW = Duration.ofSeconds(5);
+    
+    // У OKX нет запроса по списку instId: при большом наборе один запрос всех SPOT тикеров
+    private static final int ALL_TICKERS_THRESHOLD = 10;
+    
+    private static final String TICKERS_CHANNEL = "tickers";
+    // OKX закрывает соединение без сообщений 30 секунд, клиент должен слать "ping"
+    private static final Duration STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(25);
+    private static final String STREAM_PING = "ping";
+    private static final String STREAM_PONG = "pong";
+    
+    private final ExchangeStreamClient streamClient;
+    
+    public OkxExchangeAdapter(ObjectMapper objectMapper,
+                              @Value("${app.exchange.okx.rate-limit:600}") int rateLimitPerMinute,
+                              @Value("${app.exchange.okx.stream-url:wss://ws.okx.com:8443/ws/v5/public}") String streamUrl,
+                              ExchangeHttpClientFactory httpClientFactory) {
+        super(BASE_URL, rateLimitPerMinute, objectMapper, httpClientFactory);
+        rateLimiter
+                .withEndpointLimit(TICKER_ENDPOINT, MARKET_REQUESTS_PER_WINDOW, MARKET_WINDOW)
+                .withEndpointLimit(TICKERS_ENDPOINT, MARKET_REQUESTS_PER_WINDOW, MARKET_WINDOW)
+                .withEndpointLimit(INSTRUMENTS_ENDPOINT, MARKET_REQUESTS_PER_WINDOW, MARKET_WINDOW)
+                .withEndpointLimit(STATUS_ENDPOINT, 1, STATUS_WINDOW);
+        this.streamClient = new ExchangeStreamClient(
+                getExchangeName(),
+                URI.create(streamUrl),
+                new OkxStreamProtocol(),
+                this::createPriceTick,
+                STREAM_HEARTBEAT_INTERVAL
+        );
         log.info("Initialized DDD OkxExchangeAdapter");
     }
     
@@ -62,60 +107,94 @@ public class OkxExchangeAdapter extends AbstractExchangeAdapter {
         String normalizedSymbol = normalizeSymbol(symbol);
         log.debug("Fetching ticker for normalized symbol: {}", normalizedSymbol);
         
-        return executeRequest(
-                webClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path(TICKER_ENDPOINT)
-                                .queryParam("instId", normalizedSymbol)
-                                .build())
-                        .retrieve()
-                        .bodyToMono(JsonNode.class),
-                JsonNode.class
-        ).map(response -> parseTickerResponse(response, symbol))
-         .onErrorReturn(createErrorPriceHistory(symbol, "Failed to fetch ticker from OKX"));
+        WebClient.ResponseSpec response = webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(TICKER_ENDPOINT)
+                        .queryParam("instId", normalizedSymbol)
+                        .build())
+                .retrieve();
+        Map<String, String> tracked = Map.of(normalizedSymbol, symbol);
+        
+        return executeWeightedStream(
+                TICKER_ENDPOINT,
+                1,
+                decodeJson(response, "data", () -> new TickerReader(tracked), this::checkResponseCode)
+        ).next();
     }
     
     @Override
     public Flux<PriceHistory> fetchTickers(List<String> symbols) {
-        return Flux.fromIterable(symbols)
-                .flatMap(this::fetchTicker)
-                .doOnComplete(() -> log.debug("Fetched {} tickers from OKX", symbols.size()));
+        return fetchTickers(symbols, ALL_TICKERS_THRESHOLD);
+    }
+    
+    @Override
+    public Flux<PriceHistory> fetchTickers(List<String> symbols, int maxConcurrency) {
+        if (symbols.size() <= ALL_TICKERS_THRESHOLD) {
+            return Flux.fromIterable(symbols)
+                    .flatMap(this::fetchTicker, maxConcurrency)
+                    .doOnComplete(() -> log.debug("Fetched {} tickers from OKX", symbols.size()));
+        }
+        
+        // instId -> символ в формате запроса
+        Map<String, String> tracked = new HashMap<>();
+        symbols.forEach(symbol -> tracked.putIfAbsent(normalizeSymbol(symbol), symbol));
+        
+        WebClient.ResponseSpec response = webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(TICKERS_ENDPOINT)
+                        .queryParam("instType", "SPOT")
+                        .build())
+                .retrieve();
+        
+        return executeWeightedStream(
+                TICKERS_ENDPOINT,
+                1,
+                decodeJson(response, "data", () -> new TickerReader(tracked), this::checkResponseCode)
+        ).doOnComplete(() -> log.debug("Fetched {} tickers from OKX", tracked.size()));
     }
     
     @Override
-    public Mono<Void> subscribeToTicker(String symbol, Consumer<PriceHistory> callback) {
-        // WebSocket subscription implementation would go here
-        log.warn("WebSocket subscription not implemented yet for OKX symbol: {}", symbol);
-        return Mono.empty();
+    public Mono<Void> subscribeToTicker(String symbol, Consumer<PriceTick> callback) {
+        return streamClient.subscribe(normalizeSymbol(symbol), symbol, callback);
     }
     
     @Override
     public Mono<Void> unsubscribeFromTicker(String symbol) {
-        // WebSocket unsubscription implementation would go here
-        log.warn("WebSocket unsubscription not implemented yet for OKX symbol: {}", symbol);
-        return Mono.empty();
+        return streamClient.unsubscribe(normalizeSymbol(symbol));
+    }
+    
+    @Override
+    public boolean isStreamConnected() {
+        return streamClient.isConnected();
     }
     
     @Override
     public Mono<Void> disconnect() {
         log.info("Disconnecting from OKX");
-        return Mono.empty();
+        return streamClient.close();
     }
     
     @Override
     public Mono<List<String>> getSupportedSymbols() {
-        return executeRequest(
-                webClient.get()
-                        .uri(uriBuilder -> uriBuilder
-                                .path(INSTRUMENTS_ENDPOINT)
-                                .queryParam("instType", "SPOT")
-                                .build())
-                        .retrieve()
-                        .bodyToMono(JsonNode.class),
-                JsonNode.class
-        ).map(this::parseSymbolsResponse)
-         .doOnError(error -> log.error("Failed to fetch symbols from OKX", error))
-         .onErrorReturn(List.of());
+        return getSupportedSymbols(null)
+                .map(SymbolListing::symbols)
+                .defaultIfEmpty(List.of());
+    }
+    
+    @Override
+    public Mono<SymbolListing> getSupportedSymbols(SymbolListing previous) {
+        return fetchSymbolListing(
+                INSTRUMENTS_ENDPOINT,
+                1,
+                uriBuilder -> uriBuilder
+                        .path(INSTRUMENTS_ENDPOINT)
+                        .queryParam("instType", "SPOT")
+                        .build(),
+                "data",
+                InstrumentReader::new,
+                this::checkResponseCode,
+                previous
+        );
     }
     
     @Override
@@ -148,80 +227,190 @@ public class OkxExchangeAdapter extends AbstractExchangeAdapter {
     }
     
     /**
-     * Парсинг ответа тикера от OKX
+     * Проверка кода ответа OKX: {"code":"0","msg":"","data":[...]}
+     */
+    private void checkResponseCode(Map<String, String> rootFields) {
+        String code = rootFields.get("code");
+        if (INSTRUMENT_NOT_FOUND_CODE.equals(code)) {
+            // Неизвестный instId - пустой ответ, а не сбой биржи
+            return;
+        }
+        if (!"0".equals(code)) {
+            String errorMsg = rootFields.getOrDefault("msg", "Unknown error");
+            throw new IllegalStateException("OKX API error: " + (errorMsg.isEmpty() ? "Unknown error" : errorMsg));
+        }
+    }
+    
+    /**
+     * Сборка тикера OKX из полей элемента data с фильтрацией по отслеживаемым instId
      */
-    private PriceHistory parseTickerResponse(JsonNode response, String originalSymbol) {
-        try {
-            // OKX API returns response in format: {"code":"0","msg":"","data":[{...}]}
-            if (!response.has("code") || !"0".equals(response.get("code").asText())) {
-                String errorMsg = response.has("msg") ? response.get("msg").asText() : "Unknown error";
-                log.error("OKX API error: {}", errorMsg);
-                throw new RuntimeException("OKX API error: " + errorMsg);
+    private class TickerReader implements StreamingJsonDecoder.ElementReader<PriceHistory> {
+        
+        private final Map<String, String> tracked;
+        private String originalSymbol;
+        private BigDecimal price;
+        private BigDecimal volume;
+        private BigDecimal change24h;
+        
+        TickerReader(Map<String, String> tracked) {
+            this.tracked = tracked;
+        }
+        
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            switch (name) {
+                case "instId" -> {
+                    originalSymbol = tracked.get(parser.getText());
+                    return originalSymbol != null;
+                }
+                case "last" -> price = readDecimal(parser);
+                case "vol24h" -> volume = readDecimal(parser);
+                case "sodUtc0" -> change24h = readDecimal(parser);
+                default -> { }
             }
-            
-            JsonNode dataArray = response.get("data");
-            if (dataArray == null || !dataArray.isArray() || dataArray.size() == 0) {
-                log.error("Invalid OKX ticker response format: missing or empty data array");
-                throw new RuntimeException("Invalid response format");
+            return true;
+        }
+        
+        @Override
+        public PriceHistory complete() {
+            if (originalSymbol == null || price == null || price.signum() <= 0) {
+                return null;
             }
-            
-            JsonNode tickerData = dataArray.get(0);
-            
-            // Validate required fields
-            if (!tickerData.has("instId") || !tickerData.has("last")) {
-                log.error("Invalid OKX ticker response format: missing required fields");
-                throw new RuntimeException("Invalid response format");
+            return createPriceHistory(originalSymbol, getExchangeName(), price, volume, change24h, LocalDateTime.now());
+        }
+    }
+    
+    /**
+     * Отбор торгуемых USDT инструментов
+     */
+    private static class InstrumentReader implements StreamingJsonDecoder.ElementReader<String> {
+        
+        private String instId;
+        private boolean live;
+        
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            switch (name) {
+                case "instId" -> {
+                    instId = parser.getText();
+                    return instId.endsWith("-USDT");
+                }
+                case "state" -> {
+                    live = "live".equals(parser.getText());
+                    return live;
+                }
+                default -> {
+                    return true;
+                }
             }
-            
-            BigDecimal price = new BigDecimal(tickerData.get("last").asText());
-            BigDecimal volume24h = tickerData.has("vol24h") ? 
-                    new BigDecimal(tickerData.get("vol24h").asText()) : BigDecimal.ZERO;
-            BigDecimal change24h = tickerData.has("sodUtc0") ? 
-                    new BigDecimal(tickerData.get("sodUtc0").asText()) : BigDecimal.ZERO;
-            
-            return createPriceHistory(
-                    originalSymbol,
-                    getExchangeName(),
-                    price,
-                    volume24h,
-                    change24h,
-                    LocalDateTime.now()
-            );
-            
-        } catch (Exception e) {
-            log.error("Error parsing OKX ticker response for {}: {}", originalSymbol, e.getMessage());
-            throw new RuntimeException("Failed to parse ticker response", e);
+        }
+        
+        @Override
+        public String complete() {
+            return live && instId != null ? instId.replace("-", "/") : null;
         }
     }
     
     /**
-     * Парсинг списка символов от OKX
+     * Протокол OKX WebSocket API v5: канал tickers, ключ потока - instId (BTC-USDT)
      */
-    private List<String> parseSymbolsResponse(JsonNode response) {
-        try {
-            if (!response.has("code") || !"0".equals(response.get("code").asText())) {
-                String errorMsg = response.has("msg") ? response.get("msg").asText() : "Unknown error";
-                log.error("OKX API error: {}", errorMsg);
-                return List.of();
+    private class OkxStreamProtocol implements ExchangeStreamClient.Protocol {
+        
+        @Override
+        public String subscribeMessage(Collection<String> streamKeys) {
+            return operation("subscribe", streamKeys);
+        }
+        
+        @Override
+        public String unsubscribeMessage(Collection<String> streamKeys) {
+            return operation("unsubscribe", streamKeys);
+        }
+        
+        @Override
+        public String heartbeatMessage() {
+            return STREAM_PING;
+        }
+        
+        @Override
+        public boolean isHeartbeatReply(String payload) {
+            return STREAM_PONG.equals(payload);
+        }
+        
+        @Override
+        public List<ExchangeStreamClient.StreamTick> parse(String payload) throws IOException {
+            try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return List.of();
+                }
+                
+                List<ExchangeStreamClient.StreamTick> ticks = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            ExchangeStreamClient.StreamTick tick = parseTicker(parser);
+                            if (tick != null) {
+                                ticks.add(tick);
+                            }
+                        }
+                    } else if ("event".equals(field) && "error".equals(parser.getText())) {
+                        log.warn("OKX stream error: {}", payload);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                return ticks;
             }
+        }
+        
+        private ExchangeStreamClient.StreamTick parseTicker(JsonParser parser) throws IOException {
+            String instId = null;
+            long price = FixedPoint.NONE;
+            int priceScale = 0;
+            long volume = FixedPoint.NONE;
+            int volumeScale = 0;
+            long change24h = FixedPoint.NONE;
+            int change24hScale = 0;
+            long ts = 0;
             
-            JsonNode dataArray = response.get("data");
-            if (dataArray == null || !dataArray.isArray()) {
-                log.error("Invalid OKX instruments response format");
-                return List.of();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "instId" -> instId = parser.getText();
+                    case "last" -> {
+                        priceScale = readScale(parser);
+                        price = readMantissa(parser, priceScale);
+                    }
+                    case "vol24h" -> {
+                        volumeScale = readScale(parser);
+                        volume = readMantissa(parser, volumeScale);
+                    }
+                    case "sodUtc0" -> {
+                        change24hScale = readScale(parser);
+                        change24h = readMantissa(parser, change24hScale);
+                    }
+                    case "ts" -> ts = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
             }
             
-            return java.util.stream.StreamSupport.stream(dataArray.spliterator(), false)
-                    .filter(instrument -> "live".equals(instrument.get("state").asText()))
-                    .map(instrument -> instrument.get("instId").asText())
-                    .filter(symbol -> symbol.endsWith("-USDT")) // Only USDT pairs
-                    .map(symbol -> symbol.replace("-", "/")) // Convert to standard format
-                    .sorted()
-                    .toList();
-                    
-        } catch (Exception e) {
-            log.error("Error parsing OKX symbols response: {}", e.getMessage());
-            return List.of();
+            if (instId == null || price == FixedPoint.NONE) {
+                return null;
+            }
+            return new ExchangeStreamClient.StreamTick(instId, price, priceScale, volume, volumeScale,
+                    change24h, change24hScale, ts);
+        }
+        
+        private String operation(String op, Collection<String> streamKeys) {
+            ObjectNode message = objectMapper.createObjectNode();
+            message.put("op", op);
+            ArrayNode args = message.putArray("args");
+            streamKeys.forEach(instId -> args.addObject()
+                    .put("channel", TICKERS_CHANNEL)
+                    .put("instId", instId));
+            return message.toString();
         }
     }
 }
@@ -0,0 +1,199 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Потоковый декодер JSON ответов бирж
+ * Неблокирующий Jackson парсер получает байты прямо из DataBuffer (без копирования и без дерева JsonNode),
+ * элементы массива собираются из скалярных полей и отдаются по мере разбора.
+ * Память ограничена одним токеном и одним элементом независимо от размера ответа.
+ */
+public final class StreamingJsonDecoder {
+    
+    private StreamingJsonDecoder() {
+    }
+    
+    /**
+     * Декодировать элементы массива
+     * @param arrayField поле корневого объекта с массивом; null - корневой массив или корневой объект как единственный элемент
+     * @param readerFactory создает reader на каждый элемент
+     * @param rootValidator проверка скалярных полей корневого объекта после разбора (например, код ошибки OKX)
+     */
+    public static <T> Flux<T> decode(JsonFactory jsonFactory,
+                                     Flux<DataBuffer> body,
+                                     String arrayField,
+                                     Supplier<? extends ElementReader<T>> readerFactory,
+                                     Consumer<Map<String, String>> rootValidator) {
+        return Flux.defer(() -> {
+            DecoderState<T> state;
+            try {
+                state = new DecoderState<>(jsonFactory, arrayField, readerFactory);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+    
+            return body
+                    .concatMapIterable(state::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(state.finish(rootValidator))))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doFinally(signal -> state.close());
+        });
+    }
+    
+    /**
+     * Сборщик одного элемента из его скалярных полей верхнего уровня
+     * Вложенные объекты и массивы элемента пропускаются.
+     */
+    public interface ElementReader<T> {
+    
+        /**
+         * Обработать поле; парсер стоит на значении поля
+         * @return false, если элемент не нужен и остальные поля можно не разбирать
+         */
+        boolean field(String name, JsonParser parser) throws IOException;
+    
+        /**
+         * Завершить элемент; null - элемент отбрасывается
+         */
+        T complete();
+    }
+    
+    private static final class DecoderState<T> {
+    
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final String arrayField;
+        private final Supplier<? extends ElementReader<T>> readerFactory;
+        private final Map<String, String> rootFields = new HashMap<>();
+    
+        private int depth;
+        private boolean arrayOpen;
+        private int arrayDepth;
+        private String rootField;
+    
+        private ElementReader<T> element;
+        private int elementDepth;
+        private boolean elementSkipped;
+    
+        DecoderState(JsonFactory jsonFactory, String arrayField,
+                     Supplier<? extends ElementReader<T>> readerFactory) throws IOException {
+            this.parser = jsonFactory.createNonBlockingByteBufferParser();
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.arrayField = arrayField;
+            this.readerFactory = readerFactory;
+        }
+    
+        List<T> feed(DataBuffer buffer) {
+            List<T> decoded = new ArrayList<>();
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer chunk = iterator.next();
+                    feeder.feedInput(chunk);
+                    drain(decoded);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+            return decoded;
+        }
+    
+        List<T> finish(Consumer<Map<String, String>> rootValidator) {
+            List<T> decoded = new ArrayList<>();
+            try {
+                feeder.endOfInput();
+                drain(decoded);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (depth != 0) {
+                throw new UncheckedIOException(new IOException("Unexpected end of JSON input"));
+            }
+            if (rootValidator != null) {
+                rootValidator.accept(rootFields);
+            }
+            return decoded;
+        }
+    
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // парсер не держит внешних ресурсов
+            }
+        }
+    
+        private void drain(List<T> decoded) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT -> {
+                        depth++;
+                        boolean rootElement = depth == 1 && arrayField == null;
+                        boolean arrayElement = arrayOpen && depth == arrayDepth + 1;
+                        if (rootElement || arrayElement) {
+                            element = readerFactory.get();
+                            elementDepth = depth;
+                            elementSkipped = false;
+                        }
+                    }
+                    case START_ARRAY -> {
+                        depth++;
+                        if ((depth == 1 && arrayField == null)
+                                || (depth == 2 && arrayField != null && arrayField.equals(rootField))) {
+                            arrayOpen = true;
+                            arrayDepth = depth;
+                        }
+                    }
+                    case END_OBJECT -> {
+                        if (element != null && depth == elementDepth) {
+                            T value = elementSkipped ? null : element.complete();
+                            if (value != null) {
+                                decoded.add(value);
+                            }
+                            element = null;
+                        }
+                        depth--;
+                    }
+                    case END_ARRAY -> {
+                        if (arrayOpen && depth == arrayDepth) {
+                            arrayOpen = false;
+                        }
+                        depth--;
+                    }
+                    case FIELD_NAME -> {
+                        if (depth == 1) {
+                            rootField = parser.currentName();
+                        }
+                    }
+                    default -> {
+                        if (element != null && depth == elementDepth) {
+                            if (!elementSkipped && !element.field(parser.currentName(), parser)) {
+                                elementSkipped = true;
+                            }
+                        } else if (depth == 1 && rootField != null) {
+                            rootFields.put(rootField, parser.getText());
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
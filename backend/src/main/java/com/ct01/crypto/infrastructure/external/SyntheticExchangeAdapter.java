@@ -0,0 +1,339 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.ct01.crypto.domain.FixedPoint;
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Синтетическая биржа для нагрузочного тестирования без сети
+ * Цены - геометрическое случайное блуждание с фиксированным seed, поэтому прогоны воспроизводимы.
+ * Поток тикеров генерируется с заданной суммарной частотой по всем подпискам,
+ * REST вызовы получают настраиваемую задержку и долю ошибок.
+ * Настройки: app.exchange.synthetic.*
+ */
+@Component("dddSyntheticAdapter")
+@ConditionalOnProperty(name = "app.exchange.synthetic.enabled", havingValue = "true")
+@Slf4j
+public class SyntheticExchangeAdapter implements IExchangeAdapter, DisposableBean {
+    
+    private static final String QUOTE_CURRENCY = "USDT";
+    private static final long GENERATOR_PERIOD_MS = 1;
+    private static final MathContext PRICE_CONTEXT = new MathContext(10);
+    
+    private final String exchangeName;
+    private final List<String> universe;
+    private final long seed;
+    private final double volatility;
+    private final long updatesPerSecond;
+    private final Duration latency;
+    private final long latencyJitterMs;
+    private final double errorRate;
+    
+    private final Map<String, RandomWalk> walks = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<PriceTick>> subscriptions = new ConcurrentHashMap<>();
+    private final SplittableRandom faultRandom;
+    private final Scheduler generatorScheduler = Schedulers.newSingle("synthetic-exchange", true);
+    
+    private volatile String[] streamedSymbols = new String[0];
+    private volatile Disposable generator;
+    private long lastEmitNanos;
+    private double pendingUpdates;
+    private int cursor;
+    
+    public SyntheticExchangeAdapter(
+            @Value("${app.exchange.synthetic.name:SYNTHETIC}") String exchangeName,
+            @Value("${app.exchange.synthetic.symbols:BTC,ETH,BNB,SOL,XRP,ADA,DOGE,TRX,DOT,LTC}") List<String> symbols,
+            @Value("${app.exchange.synthetic.generated-symbols:0}") int generatedSymbols,
+            @Value("${app.exchange.synthetic.seed:42}") long seed,
+            @Value("${app.exchange.synthetic.volatility:0.0005}") double volatility,
+            @Value("${app.exchange.synthetic.updates-per-second:1000}") long updatesPerSecond,
+            @Value("${app.exchange.synthetic.latency-ms:20}") long latencyMs,
+            @Value("${app.exchange.synthetic.latency-jitter-ms:10}") long latencyJitterMs,
+            @Value("${app.exchange.synthetic.error-rate:0.0}") double errorRate) {
+        if (errorRate < 0 || errorRate > 1 || updatesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid synthetic exchange settings");
+        }
+        this.exchangeName = exchangeName.toUpperCase();
+        this.seed = seed;
+        this.volatility = volatility;
+        this.updatesPerSecond = updatesPerSecond;
+        this.latency = Duration.ofMillis(latencyMs);
+        this.latencyJitterMs = latencyJitterMs;
+        this.errorRate = errorRate;
+        this.faultRandom = new SplittableRandom(seed);
+    
+        List<String> allSymbols = new ArrayList<>();
+        symbols.stream().map(this::normalizeSymbol).filter(symbol -> !symbol.isEmpty()).forEach(allSymbols::add);
+        for (int i = 1; i <= generatedSymbols; i++) {
+            allSymbols.add(String.format("SYN%05d", i));
+        }
+        this.universe = allSymbols.stream().distinct().sorted().toList();
+    
+        log.info("Initialized synthetic exchange {}: {} symbols, {} updates/s, latency {}±{}ms, error rate {}",
+                this.exchangeName, universe.size(), updatesPerSecond, latencyMs, latencyJitterMs, errorRate);
+    }
+    
+    @Override
+    public String getExchangeName() {
+        return exchangeName;
+    }
+    
+    @Override
+    public Mono<Void> initialize() {
+        return Mono.fromRunnable(() -> universe.forEach(this::walkFor));
+    }
+    
+    @Override
+    public Mono<PriceHistory> fetchTicker(String symbol) {
+        return simulateCall().then(Mono.fromSupplier(() -> walkFor(normalizeSymbol(symbol)).next()));
+    }
+    
+    @Override
+    public Flux<PriceHistory> fetchTickers(List<String> symbols) {
+        return simulateCall().thenMany(Flux.fromIterable(symbols)
+                .map(symbol -> walkFor(normalizeSymbol(symbol)).next()));
+    }
+    
+    @Override
+    public Mono<Void> subscribeToTicker(String symbol, Consumer<PriceTick> callback) {
+        return Mono.fromRunnable(() -> {
+            subscriptions.put(normalizeSymbol(symbol), callback);
+            streamedSymbols = subscriptions.keySet().toArray(String[]::new);
+            startGenerator();
+        });
+    }
+    
+    @Override
+    public Mono<Void> unsubscribeFromTicker(String symbol) {
+        return Mono.fromRunnable(() -> {
+            subscriptions.remove(normalizeSymbol(symbol));
+            streamedSymbols = subscriptions.keySet().toArray(String[]::new);
+        });
+    }
+    
+    @Override
+    public boolean isStreamConnected() {
+        Disposable current = generator;
+        return current != null && !current.isDisposed();
+    }
+    
+    @Override
+    public Mono<Boolean> isHealthy() {
+        return Mono.just(true);
+    }
+    
+    @Override
+    public Mono<Void> disconnect() {
+        return Mono.fromRunnable(() -> {
+            stopGenerator();
+            subscriptions.clear();
+            streamedSymbols = new String[0];
+        });
+    }
+    
+    @Override
+    public void destroy() {
+        stopGenerator();
+        generatorScheduler.dispose();
+    }
+    
+    @Override
+    public Mono<ExchangeRateLimitInfo> getRateLimitInfo() {
+        return Mono.just(new ExchangeRateLimitInfo(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, false));
+    }
+    
+    @Override
+    public Mono<List<String>> getSupportedSymbols() {
+        return simulateCall().then(Mono.fromSupplier(() -> universe.stream()
+                .map(symbol -> symbol + "/" + QUOTE_CURRENCY)
+                .toList()));
+    }
+    
+    /**
+     * Задержка и отказ REST вызова; решение об ошибке принимается при подписке
+     */
+    private Mono<Void> simulateCall() {
+        return Mono.defer(() -> {
+            boolean fail;
+            long jitter;
+            synchronized (faultRandom) {
+                fail = errorRate > 0 && faultRandom.nextDouble() < errorRate;
+                jitter = latencyJitterMs > 0 ? faultRandom.nextLong(latencyJitterMs + 1) : 0;
+            }
+            Duration delay = latency.plusMillis(jitter);
+            Mono<Void> result = fail
+                    ? Mono.error(new IllegalStateException("Synthetic error injected by " + exchangeName))
+                    : Mono.empty();
+            return delay.isZero() ? result : Mono.delay(delay).then(result);
+        });
+    }
+    
+    private synchronized void startGenerator() {
+        if (updatesPerSecond == 0 || isStreamConnected()) {
+            return;
+        }
+        lastEmitNanos = System.nanoTime();
+        pendingUpdates = 0;
+        generator = generatorScheduler.schedulePeriodically(this::emitUpdates,
+                GENERATOR_PERIOD_MS, GENERATOR_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private synchronized void stopGenerator() {
+        if (generator != null) {
+            generator.dispose();
+            generator = null;
+        }
+    }
+    
+    /**
+     * Выпустить обновления, накопившиеся с прошлого запуска
+     * Количество считается по фактически прошедшему времени, поэтому дрожание таймера не меняет частоту;
+     * после паузы всплеск ограничен десятой долей секундного объема
+     */
+    private void emitUpdates() {
+        String[] symbols = streamedSymbols;
+        long now = System.nanoTime();
+        pendingUpdates += (now - lastEmitNanos) * updatesPerSecond / 1_000_000_000.0;
+        pendingUpdates = Math.min(pendingUpdates, Math.max(1, updatesPerSecond / 10.0));
+        lastEmitNanos = now;
+        if (symbols.length == 0) {
+            pendingUpdates = 0;
+            return;
+        }
+    
+        int count = (int) pendingUpdates;
+        pendingUpdates -= count;
+        for (int i = 0; i < count; i++) {
+            cursor = (cursor + 1) % symbols.length;
+            String symbol = symbols[cursor];
+            Consumer<PriceTick> callback = subscriptions.get(symbol);
+            if (callback == null) {
+                continue;
+            }
+            try {
+                callback.accept(walkFor(symbol).nextTick());
+            } catch (Exception e) {
+                log.warn("Synthetic stream callback failed for {}: {}", symbol, e.getMessage());
+            }
+        }
+    }
+    
+    private RandomWalk walkFor(String symbol) {
+        return walks.computeIfAbsent(symbol, key -> new RandomWalk(key, seed ^ key.hashCode()));
+    }
+    
+    private String normalizeSymbol(String symbol) {
+        String upper = symbol.trim().toUpperCase();
+        int separator = Math.max(upper.indexOf('/'), upper.indexOf('-'));
+        return separator > 0 ? upper.substring(0, separator) : upper;
+    }
+    
+    /**
+     * Геометрическое случайное блуждание цены одного символа
+     * Начальная цена распределена лог-равномерно от 0.01 до 50000, объем колеблется вокруг базового
+     */
+    private final class RandomWalk {
+    
+        private final String symbol;
+        private final SplittableRandom random;
+        private final double openPrice;
+        private final double baseVolume;
+        private final int priceScale;
+        private final int volumeScale;
+        private double price;
+        private double highPrice;
+        private double lowPrice;
+    
+        private RandomWalk(String symbol, long walkSeed) {
+            this.symbol = symbol;
+            this.random = new SplittableRandom(walkSeed);
+            this.openPrice = Math.exp(Math.log(0.01) + random.nextDouble() * (Math.log(50_000) - Math.log(0.01)));
+            this.baseVolume = 1_000_000 / openPrice * (0.5 + random.nextDouble());
+            this.price = openPrice;
+            this.highPrice = openPrice;
+            this.lowPrice = openPrice;
+            this.priceScale = scaleFor(openPrice);
+            this.volumeScale = scaleFor(baseVolume);
+        }
+    
+        synchronized PriceHistory next() {
+            double volume = step();
+            return new PriceHistory(
+                    null,
+                    symbol,
+                    exchangeName,
+                    symbol + "/" + QUOTE_CURRENCY,
+                    QUOTE_CURRENCY,
+                    LocalDateTime.now(),
+                    decimal(openPrice),
+                    decimal(highPrice),
+                    decimal(lowPrice),
+                    decimal(price),
+                    decimal(volume),
+                    decimal(volume * price),
+                    null,
+                    "TICKER"
+            );
+        }
+    
+        /**
+         * Тик потока: та же точность, что у PriceHistory, но без BigDecimal
+         */
+        synchronized PriceTick nextTick() {
+            double volume = step();
+            return new PriceTick(
+                    symbol,
+                    exchangeName,
+                    QUOTE_CURRENCY,
+                    System.currentTimeMillis() * 1_000_000L,
+                    Math.max(1, Math.round(price * Math.pow(10, priceScale))),
+                    priceScale,
+                    Math.round(volume * Math.pow(10, volumeScale)),
+                    volumeScale,
+                    FixedPoint.NONE,
+                    0
+            );
+        }
+    
+        private double step() {
+            price *= Math.exp(volatility * random.nextGaussian() - volatility * volatility / 2);
+            highPrice = Math.max(highPrice, price);
+            lowPrice = Math.min(lowPrice, price);
+            return baseVolume * Math.exp(0.1 * random.nextGaussian());
+        }
+    
+        private BigDecimal decimal(double value) {
+            return new BigDecimal(value, PRICE_CONTEXT);
+        }
+    
+        /**
+         * Масштаб символа на 10 значащих цифр от начального значения, как PRICE_CONTEXT
+         */
+        private int scaleFor(double value) {
+            int integerDigits = (int) Math.floor(Math.log10(value)) + 1;
+            return Math.max(0, Math.min(FixedPoint.MAX_SCALE, PRICE_CONTEXT.getPrecision() - integerDigits));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.CandleResolution;
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceStatistics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Инкрементальная свертка записанных тиков в свечи 1m/5m/1h/1d
+ * Тики накапливаются в памяти как приращения свечей и периодически сливаются в таблицы
+ * price_candles_* через UPSERT, поэтому поздние тики и несколько экземпляров приложения
+ * дописывают одну и ту же свечу, а не перезаписывают ее.
+ */
+@Component
+@Slf4j
+public class CandleRollupEngine {
+    
+    private static final String UPSERT_SQL = """
+            INSERT INTO %s AS c (coin_id, exchange_id, bucket_start, trading_pair, quote_currency,
+                                 open_price, high_price, low_price, close_price, volume, close_sum,
+                                 close_square_sum, price_volume_sum, tick_count, first_tick_at, last_tick_at,
+                                 updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (coin_id, exchange_id, bucket_start) DO UPDATE SET
+                open_price = CASE WHEN EXCLUDED.first_tick_at < c.first_tick_at
+                                  THEN EXCLUDED.open_price ELSE c.open_price END,
+                close_price = CASE WHEN EXCLUDED.last_tick_at >= c.last_tick_at
+                                   THEN EXCLUDED.close_price ELSE c.close_price END,
+                trading_pair = CASE WHEN EXCLUDED.last_tick_at >= c.last_tick_at
+                                    THEN EXCLUDED.trading_pair ELSE c.trading_pair END,
+                quote_currency = CASE WHEN EXCLUDED.last_tick_at >= c.last_tick_at
+                                      THEN EXCLUDED.quote_currency ELSE c.quote_currency END,
+                high_price = GREATEST(c.high_price, EXCLUDED.high_price),
+                low_price = LEAST(c.low_price, EXCLUDED.low_price),
+                volume = c.volume + EXCLUDED.volume,
+                close_sum = c.close_sum + EXCLUDED.close_sum,
+                close_square_sum = c.close_square_sum + EXCLUDED.close_square_sum,
+                price_volume_sum = c.price_volume_sum + EXCLUDED.price_volume_sum,
+                tick_count = c.tick_count + EXCLUDED.tick_count,
+                first_tick_at = LEAST(c.first_tick_at, EXCLUDED.first_tick_at),
+                last_tick_at = GREATEST(c.last_tick_at, EXCLUDED.last_tick_at),
+                updated_at = EXCLUDED.updated_at
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    
+    private final Map<CandleResolution, Map<CandleKey, Accumulator>> pending = new EnumMap<>(CandleResolution.class);
+    
+    public CandleRollupEngine(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.rollup.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        for (CandleResolution resolution : CandleResolution.values()) {
+            pending.put(resolution, new ConcurrentHashMap<>());
+        }
+    }
+    
+    /**
+     * Имя таблицы свечей разрешения
+     */
+    static String tableName(CandleResolution resolution) {
+        return "price_candles_" + resolution.getLabel();
+    }
+    
+    /**
+     * Учесть записанный тик во всех разрешениях
+     */
+    public void accept(long coinId, long exchangeId, PriceHistory price) {
+        if (!enabled) {
+            return;
+        }
+        for (CandleResolution resolution : CandleResolution.values()) {
+            CandleKey key = new CandleKey(coinId, exchangeId, resolution.truncate(price.getTimestamp()));
+            pending.get(resolution).compute(key, (k, accumulator) -> {
+                Accumulator target = accumulator != null ? accumulator : new Accumulator();
+                target.add(price);
+                return target;
+            });
+        }
+    }
+    
+    /**
+     * Слить накопленные приращения в БД; при ошибке они возвращаются в очередь на следующий проход
+     */
+    @Scheduled(initialDelayString = "${app.rollup.flush-ms:5000}", fixedDelayString = "${app.rollup.flush-ms:5000}")
+    public synchronized void flush() {
+        for (CandleResolution resolution : CandleResolution.values()) {
+            Map<CandleKey, Accumulator> candles = pending.get(resolution);
+            if (candles.isEmpty()) {
+                continue;
+            }
+    
+            // remove под блокировкой сегмента: тик попадает либо в снятое приращение, либо в новое
+            List<Map.Entry<CandleKey, Accumulator>> drained = new ArrayList<>(candles.size());
+            for (CandleKey key : candles.keySet()) {
+                Accumulator accumulator = candles.remove(key);
+                if (accumulator != null) {
+                    drained.add(Map.entry(key, accumulator));
+                }
+            }
+    
+            LocalDateTime updatedAt = LocalDateTime.now();
+            String sql = String.format(UPSERT_SQL, tableName(resolution));
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, drained,
+                        drained.size(), (ps, entry) -> bind(ps, entry.getKey(), entry.getValue(), updatedAt)));
+            } catch (Exception e) {
+                log.warn("Failed to flush {} {} candles, will retry: {}", drained.size(), resolution.getLabel(),
+                        e.getMessage());
+                drained.forEach(entry -> candles.merge(entry.getKey(), entry.getValue(), Accumulator::merge));
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+    
+    private static void bind(PreparedStatement ps, CandleKey key, Accumulator candle,
+                             LocalDateTime updatedAt) throws SQLException {
+        PriceStatistics stats = candle.stats;
+        ps.setLong(1, key.coinId());
+        ps.setLong(2, key.exchangeId());
+        ps.setObject(3, key.bucketStart());
+        ps.setString(4, candle.tradingPair);
+        ps.setString(5, candle.quoteCurrency);
+        ps.setBigDecimal(6, stats.first());
+        ps.setBigDecimal(7, stats.high());
+        ps.setBigDecimal(8, stats.low());
+        ps.setBigDecimal(9, stats.last());
+        ps.setBigDecimal(10, stats.volume());
+        ps.setBigDecimal(11, stats.closeSum());
+        ps.setObject(12, stats.closeSquareSum(), Types.DOUBLE);
+        ps.setObject(13, stats.priceVolumeSum(), Types.DOUBLE);
+        ps.setLong(14, stats.count());
+        ps.setObject(15, stats.firstAt());
+        ps.setObject(16, stats.lastAt());
+        ps.setObject(17, updatedAt);
+    }
+    
+    private record CandleKey(long coinId, long exchangeId, LocalDateTime bucketStart) {}
+    
+    /**
+     * Приращение свечи с прошлого слива; изменяется только внутри compute/merge карты
+     */
+    private static final class Accumulator {
+    
+        private final PriceStatistics stats = new PriceStatistics();
+        private String tradingPair;
+        private String quoteCurrency;
+    
+        void add(PriceHistory price) {
+            stats.add(price);
+            if (price.getTimestamp().equals(stats.lastAt())) {
+                tradingPair = price.getTradingPair();
+                quoteCurrency = price.getQuoteCurrency();
+            }
+        }
+    
+        Accumulator merge(Accumulator other) {
+            if (!other.stats.lastAt().isBefore(stats.lastAt())) {
+                tradingPair = other.tradingPair;
+                quoteCurrency = other.quoteCurrency;
+            }
+            stats.merge(other.stats);
+            return this;
+        }
+    }
+}
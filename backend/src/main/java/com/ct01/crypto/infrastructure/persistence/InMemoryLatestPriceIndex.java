@@ -0,0 +1,297 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.repository.LatestPriceIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Индекс последних цен в памяти процесса
+ * Ячейки адресуются идентификаторами: coinId - индекс внешнего массива, exchangeId - индекс
+ * внутреннего, поэтому чтение - два обращения к массиву без блокировок и упаковки ключей.
+ * Символы и имена бирж переводятся в int собственными таблицами индекса, заполняемыми прогревом
+ * и записью; ReferenceIdResolver (и запрос к БД) нужен только для ключа, встреченного впервые.
+ * Запись - CAS с проверкой времени, более старая цена не затирает более новую.
+ */
+@Component
+@Slf4j
+public class InMemoryLatestPriceIndex implements LatestPriceIndex {
+    
+    private static final int EXCHANGE_SLOTS = 64;
+    private static final int INITIAL_COIN_SLOTS = 1024;
+    private static final long MAX_DENSE_COIN_ID = 1 << 22;
+    
+    // Последняя цена каждой пары (монета, биржа): LATERAL с LIMIT 1 читает по одной строке
+    // из индекса (coin_id, exchange_id, timestamp) вместо сканирования таблицы
+    private static final String WARM_UP_SQL = """
+            SELECT c.id AS coin_id, c.symbol, e.id AS exchange_id, e.name AS exchange_name,
+                   p.id, p.trading_pair, p.quote_currency, p.timestamp, p.open_price, p.high_price,
+                   p.low_price, p.close_price, p.volume, p.volume_usd, p.trade_count, p.price_type
+            FROM coins c
+            CROSS JOIN exchanges e
+            JOIN LATERAL (
+                SELECT ph.*
+                FROM price_history ph
+                WHERE ph.coin_id = c.id AND ph.exchange_id = e.id
+                ORDER BY ph.timestamp DESC
+                LIMIT 1
+            ) p ON true
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceIdResolver idResolver;
+    
+    private volatile AtomicReferenceArray<AtomicReferenceArray<PriceHistory>> byCoin =
+            new AtomicReferenceArray<>(INITIAL_COIN_SLOTS);
+    private final Object growLock = new Object();
+    // Идентификаторы за пределами плотных массивов (не ожидаются, но не должны теряться)
+    private final Map<Long, PriceHistory> overflow = new ConcurrentHashMap<>();
+    // Символ монеты и имя биржи -> идентификатор; объект на ключ создается один раз
+    private final Map<String, CoinSlot> coinSlots = new ConcurrentHashMap<>();
+    private final Map<String, ExchangeSlot> exchangeSlots = new ConcurrentHashMap<>();
+    // После прогрева полон весь индекс; до него - только монеты с флагом complete
+    private volatile boolean warmedUp;
+    
+    public InMemoryLatestPriceIndex(JdbcTemplate jdbcTemplate, ReferenceIdResolver idResolver) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idResolver = idResolver;
+    }
+    
+    /**
+     * Прогрев индекса последними ценами из БД
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            int[] loaded = {0};
+            jdbcTemplate.query(WARM_UP_SQL, rs -> {
+                long coinId = rs.getLong("coin_id");
+                long exchangeId = rs.getLong("exchange_id");
+                String symbol = rs.getString("symbol");
+                String exchangeName = rs.getString("exchange_name");
+                idResolver.remember(symbol, coinId, exchangeName, exchangeId);
+                remember(symbol, coinId, exchangeName, exchangeId);
+                try {
+                    update(coinId, exchangeId, PriceHistoryRowMapper.INSTANCE.mapRow(rs, loaded[0]));
+                    loaded[0]++;
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    log.debug("Skipping invalid price of {} on {}: {}", symbol, exchangeName, e.getMessage());
+                }
+            });
+            warmedUp = true;
+            log.info("Latest price index warmed up with {} prices in {}ms",
+                    loaded[0], System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Failed to warm up latest price index: {}", e.getMessage());
+        }
+    }
+    
+    @Override
+    public Optional<PriceHistory> findLatest(String coinSymbol, String exchangeName) {
+        CoinSlot coin = coinSlot(coinSymbol);
+        ExchangeSlot exchange = exchangeSlot(exchangeName);
+        if (coin == null || exchange == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(get(coin.id, exchange.id));
+    }
+    
+    @Override
+    public List<PriceHistory> findLatestForCoin(String coinSymbol) {
+        CoinSlot coin = coinSlot(coinSymbol);
+        if (coin == null) {
+            return List.of();
+        }
+    
+        List<PriceHistory> prices = new ArrayList<>();
+        AtomicReferenceArray<PriceHistory> slots = slots(coin.id, false);
+        if (slots != null) {
+            for (int i = 0; i < EXCHANGE_SLOTS; i++) {
+                PriceHistory price = slots.get(i);
+                if (price != null) {
+                    prices.add(price);
+                }
+            }
+        }
+        if (!overflow.isEmpty()) {
+            overflow.forEach((key, price) -> {
+                if (key >>> 32 == coin.id) {
+                    prices.add(price);
+                }
+            });
+        }
+        return prices;
+    }
+    
+    @Override
+    public void update(PriceHistory priceHistory) {
+        CoinSlot coin = coinSlot(priceHistory.getCoinSymbol());
+        ExchangeSlot exchange = exchangeSlot(priceHistory.getExchangeName());
+        if (coin != null && exchange != null) {
+            update(coin.id, exchange.id, priceHistory);
+        }
+    }
+    
+    @Override
+    public boolean isComplete(String coinSymbol) {
+        if (warmedUp) {
+            return true;
+        }
+        CoinSlot coin = coinSlot(coinSymbol);
+        return coin != null && coin.complete;
+    }
+    
+    @Override
+    public void markComplete(String coinSymbol) {
+        CoinSlot coin = coinSlot(coinSymbol);
+        if (coin != null) {
+            coin.complete = true;
+        }
+    }
+    
+    private void remember(String coinSymbol, long coinId, String exchangeName, long exchangeId) {
+        if (fitsInt(coinId) && fitsInt(exchangeId)) {
+            coinSlots.putIfAbsent(coinSymbol.toUpperCase(), new CoinSlot((int) coinId));
+            exchangeSlots.putIfAbsent(exchangeName.toLowerCase(), new ExchangeSlot((int) exchangeId));
+        }
+    }
+    
+    /**
+     * Идентификатор монеты: сначала ключ как есть (обычный случай), затем каноническое написание
+     */
+    private CoinSlot coinSlot(String coinSymbol) {
+        CoinSlot slot = coinSlots.get(coinSymbol);
+        return slot != null ? slot
+                : register(coinSlots, coinSymbol, coinSymbol.toUpperCase(), idResolver::resolveCoinId, CoinSlot::new);
+    }
+    
+    private ExchangeSlot exchangeSlot(String exchangeName) {
+        ExchangeSlot slot = exchangeSlots.get(exchangeName);
+        return slot != null ? slot
+                : register(exchangeSlots, exchangeName, exchangeName.toLowerCase(),
+                        idResolver::resolveExchangeId, ExchangeSlot::new);
+    }
+    
+    /**
+     * Завести ключ, встреченный впервые; написание ключа запоминается как синоним канонического,
+     * неизвестные ключи не запоминаются (за повторами следит ReferenceIdResolver)
+     */
+    private static <T> T register(Map<String, T> slots, String key, String canonical,
+                                  Function<String, Long> resolver, Function<Integer, T> factory) {
+        T slot = slots.get(canonical);
+        if (slot == null) {
+            Long id = resolver.apply(canonical);
+            if (id == null || !fitsInt(id)) {
+                return null;
+            }
+            slot = slots.computeIfAbsent(canonical, k -> factory.apply(id.intValue()));
+        }
+        slots.putIfAbsent(key, slot);
+        return slot;
+    }
+    
+    private static boolean fitsInt(long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE;
+    }
+    
+    private void update(long coinId, long exchangeId, PriceHistory price) {
+        if (!isDense(coinId, exchangeId)) {
+            overflow.merge((coinId << 32) | exchangeId, price, (current, candidate) ->
+                    candidate.getTimestamp().isBefore(current.getTimestamp()) ? current : candidate);
+            return;
+        }
+    
+        AtomicReferenceArray<PriceHistory> slots = slots(coinId, true);
+        int slot = (int) exchangeId;
+        while (true) {
+            PriceHistory current = slots.get(slot);
+            if (current != null && price.getTimestamp().isBefore(current.getTimestamp())) {
+                return;
+            }
+            if (slots.compareAndSet(slot, current, price)) {
+                return;
+            }
+        }
+    }
+    
+    private PriceHistory get(long coinId, long exchangeId) {
+        if (!isDense(coinId, exchangeId)) {
+            return overflow.get((coinId << 32) | exchangeId);
+        }
+        AtomicReferenceArray<PriceHistory> slots = slots(coinId, false);
+        return slots != null ? slots.get((int) exchangeId) : null;
+    }
+    
+    /**
+     * Ячейки бирж для монеты; внешний массив растет под блокировкой с копированием ссылок,
+     * поэтому CAS в уже выданных внутренних массивах не теряются
+     */
+    private AtomicReferenceArray<PriceHistory> slots(long coinId, boolean create) {
+        AtomicReferenceArray<AtomicReferenceArray<PriceHistory>> table = byCoin;
+        if (coinId < table.length()) {
+            AtomicReferenceArray<PriceHistory> slots = table.get((int) coinId);
+            if (slots != null || !create) {
+                return slots;
+            }
+        } else if (!create) {
+            return null;
+        }
+    
+        synchronized (growLock) {
+            table = byCoin;
+            if (coinId >= table.length()) {
+                int newLength = (int) Math.max(coinId + 1, (long) table.length() * 2);
+                AtomicReferenceArray<AtomicReferenceArray<PriceHistory>> grown = new AtomicReferenceArray<>(newLength);
+                for (int i = 0; i < table.length(); i++) {
+                    grown.set(i, table.get(i));
+                }
+                byCoin = grown;
+                table = grown;
+            }
+            AtomicReferenceArray<PriceHistory> slots = table.get((int) coinId);
+            if (slots == null) {
+                slots = new AtomicReferenceArray<>(EXCHANGE_SLOTS);
+                table.set((int) coinId, slots);
+            }
+            return slots;
+        }
+    }
+    
+    private static boolean isDense(long coinId, long exchangeId) {
+        return coinId >= 0 && coinId < MAX_DENSE_COIN_ID && exchangeId >= 0 && exchangeId < EXCHANGE_SLOTS;
+    }
+    
+    private static final class CoinSlot {
+    
+        private final int id;
+        // Все биржи монеты загружены из БД
+        private volatile boolean complete;
+    
+        CoinSlot(int id) {
+            this.id = id;
+        }
+    }
+    
+    private static final class ExchangeSlot {
+    
+        private final int id;
+    
+        ExchangeSlot(int id) {
+            this.id = id;
+        }
+    }
+}
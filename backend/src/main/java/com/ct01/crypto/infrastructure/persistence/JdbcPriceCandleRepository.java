@@ -0,0 +1,172 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.CandleResolution;
+import com.ct01.crypto.domain.PriceCandle;
+import com.ct01.crypto.domain.repository.PriceCandleRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтение свечей из таблиц price_candles_* (заполняются CandleRollupEngine)
+ */
+@Repository
+public class JdbcPriceCandleRepository implements PriceCandleRepository {
+    
+    private static final String COLUMNS = """
+            bucket_start, trading_pair, quote_currency, open_price, high_price, low_price, close_price,
+            volume, close_sum, close_square_sum, price_volume_sum, tick_count, first_tick_at, last_tick_at
+            """;
+    
+    private static final String RANGE_FILTER =
+            "coin_id = ? AND exchange_id = ? AND bucket_start >= ? AND bucket_start < ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReferenceIdResolver idResolver;
+    
+    public JdbcPriceCandleRepository(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     ReferenceIdResolver idResolver,
+                                     @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idResolver = idResolver;
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(Math.max(1, fetchSize));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
+    @Override
+    public Page<PriceCandle> findCandles(String coinSymbol, String exchangeName, CandleResolution resolution,
+                                         LocalDateTime from, LocalDateTime to, Pageable pageable) {
+        Long coinId = idResolver.resolveCoinId(coinSymbol);
+        Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+        if (coinId == null || exchangeId == null) {
+            return Page.empty(pageable);
+        }
+    
+        String table = CandleRollupEngine.tableName(resolution);
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE " + RANGE_FILTER,
+                Long.class, coinId, exchangeId, from, to);
+        if (total == null || total == 0) {
+            return Page.empty(pageable);
+        }
+    
+        List<PriceCandle> candles = jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM " + table + " WHERE " + RANGE_FILTER
+                        + " ORDER BY bucket_start LIMIT ? OFFSET ?",
+                candleMapper(coinSymbol, exchangeName, resolution),
+                coinId, exchangeId, from, to, pageable.getPageSize(), pageable.getOffset());
+        return new PageImpl<>(candles, pageable, total);
+    }
+    
+    @Override
+    public List<PriceCandle> findCovering(String coinSymbol, String exchangeName,
+                                          LocalDateTime from, LocalDateTime to) {
+        Long coinId = idResolver.resolveCoinId(coinSymbol);
+        Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+        if (coinId == null || exchangeId == null || !from.isBefore(to)) {
+            return List.of();
+        }
+    
+        List<Segment> segments = new ArrayList<>();
+        plan(from, to, 0, segments);
+    
+        List<PriceCandle> candles = new ArrayList<>();
+        for (Segment segment : segments) {
+            candles.addAll(jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM " + CandleRollupEngine.tableName(segment.resolution())
+                            + " WHERE " + RANGE_FILTER + " ORDER BY bucket_start",
+                    candleMapper(coinSymbol, exchangeName, segment.resolution()),
+                    coinId, exchangeId, segment.from(), segment.to()));
+        }
+        candles.sort((a, b) -> a.bucketStart().compareTo(b.bucketStart()));
+        return candles;
+    }
+    
+    @Override
+    public void streamCandles(String coinSymbol, String exchangeName, CandleResolution resolution,
+                              LocalDateTime from, LocalDateTime to, Consumer<PriceCandle> consumer) {
+        Long coinId = idResolver.resolveCoinId(coinSymbol);
+        Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+        if (coinId == null || exchangeId == null) {
+            return;
+        }
+    
+        String sql = "SELECT " + COLUMNS + " FROM " + CandleRollupEngine.tableName(resolution)
+                + " WHERE " + RANGE_FILTER + " ORDER BY bucket_start";
+        RowMapper<PriceCandle> mapper = candleMapper(coinSymbol, exchangeName, resolution);
+        readOnlyTransaction.executeWithoutResult(status -> {
+            int[] rowNum = {0};
+            cursorTemplate.query(sql, rs -> {
+                consumer.accept(mapper.mapRow(rs, rowNum[0]++));
+            }, coinId, exchangeId, from, to);
+        });
+    }
+    
+    /**
+     * Разбить [from, to) на участки: целые свечи текущего разрешения в середине,
+     * края - рекурсивно более мелкими; самое мелкое разрешение забирает края целиком
+     */
+    private static void plan(LocalDateTime from, LocalDateTime to, int level, List<Segment> segments) {
+        List<CandleResolution> resolutions = CandleResolution.coarsestFirst();
+        CandleResolution resolution = resolutions.get(level);
+        if (level == resolutions.size() - 1) {
+            segments.add(new Segment(resolution, resolution.truncate(from), to));
+            return;
+        }
+    
+        LocalDateTime innerFrom = resolution.ceil(from);
+        LocalDateTime innerTo = resolution.truncate(to);
+        if (!innerFrom.isBefore(innerTo)) {
+            plan(from, to, level + 1, segments);
+            return;
+        }
+        if (from.isBefore(innerFrom)) {
+            plan(from, innerFrom, level + 1, segments);
+        }
+        segments.add(new Segment(resolution, innerFrom, innerTo));
+        if (innerTo.isBefore(to)) {
+            plan(innerTo, to, level + 1, segments);
+        }
+    }
+    
+    private static RowMapper<PriceCandle> candleMapper(String coinSymbol, String exchangeName,
+                                                       CandleResolution resolution) {
+        return (rs, rowNum) -> new PriceCandle(
+                coinSymbol.toUpperCase(),
+                exchangeName,
+                resolution,
+                rs.getObject("bucket_start", LocalDateTime.class),
+                rs.getString("trading_pair"),
+                rs.getString("quote_currency"),
+                rs.getBigDecimal("open_price"),
+                rs.getBigDecimal("high_price"),
+                rs.getBigDecimal("low_price"),
+                rs.getBigDecimal("close_price"),
+                rs.getBigDecimal("volume"),
+                rs.getBigDecimal("close_sum"),
+                rs.getObject("close_square_sum", Double.class),
+                rs.getObject("price_volume_sum", Double.class),
+                rs.getLong("tick_count"),
+                rs.getObject("first_tick_at", LocalDateTime.class),
+                rs.getObject("last_tick_at", LocalDateTime.class)
+        );
+    }
+    
+    private record Segment(CandleResolution resolution, LocalDateTime from, LocalDateTime to) {}
+}
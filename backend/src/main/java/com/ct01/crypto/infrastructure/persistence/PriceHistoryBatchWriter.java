@@ -0,0 +1,129 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.PriceHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная запись истории цен через JDBC
+ * Идентификаторы монет и бирж берутся из ReferenceIdResolver, строки вставляются пакетами batchSize
+ * (с reWriteBatchedInserts драйвер PostgreSQL объединяет пакет в многострочный INSERT).
+ * Все пакеты одного вызова пишутся в одной транзакции: после сбоя не остается частично записанных строк,
+ * и повторная запись того же набора не дублирует их.
+ * Записанные строки передаются в CandleRollupEngine для свертки в свечи, новые пары - в TradingPairCatalog.
+ */
+@Component
+@Slf4j
+public class PriceHistoryBatchWriter {
+    
+    private static final String INSERT_SQL = """
+            INSERT INTO price_history (coin_id, exchange_id, trading_pair, quote_currency, timestamp,
+                                       open_price, high_price, low_price, close_price, volume, volume_usd,
+                                       trade_count, price_type, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceIdResolver idResolver;
+    private final CandleRollupEngine rollupEngine;
+    private final TradingPairCatalog pairCatalog;
+    private final int batchSize;
+    
+    public PriceHistoryBatchWriter(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ReferenceIdResolver idResolver,
+                                   CandleRollupEngine rollupEngine,
+                                   TradingPairCatalog pairCatalog,
+                                   @Value("${app.ingestion.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idResolver = idResolver;
+        this.rollupEngine = rollupEngine;
+        this.pairCatalog = pairCatalog;
+        this.batchSize = Math.max(1, batchSize);
+    }
+    
+    /**
+     * Записать цены одним пакетом (блокирующий вызов)
+     * Строки с неизвестной монетой или биржей пропускаются
+     * @return записанные цены (без сгенерированных идентификаторов)
+     */
+    public List<PriceHistory> write(List<PriceHistory> prices) {
+        if (prices.isEmpty()) {
+            return List.of();
+        }
+    
+        List<Row> rows = new ArrayList<>(prices.size());
+        for (PriceHistory price : prices) {
+            Long coinId = idResolver.resolveCoinId(price.getCoinSymbol());
+            Long exchangeId = idResolver.resolveExchangeId(price.getExchangeName());
+            if (coinId == null || exchangeId == null) {
+                log.debug("Skipping price for unknown coin or exchange: {} on {}",
+                        price.getCoinSymbol(), price.getExchangeName());
+                continue;
+            }
+            rows.add(new Row(price, coinId, exchangeId));
+        }
+    
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+    
+        LocalDateTime createdAt = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows, batchSize,
+                    (ps, row) -> bind(ps, row, createdAt)));
+        } catch (DataIntegrityViolationException e) {
+            // Монету или биржу могли удалить - закэшированные идентификаторы больше не действительны
+            idResolver.clear();
+            throw e;
+        }
+        for (Row row : rows) {
+            rollupEngine.accept(row.coinId(), row.exchangeId(), row.price());
+            pairCatalog.record(row.exchangeId(), row.price().getTradingPair(), row.price().getQuoteCurrency(),
+                    row.price().getTimestamp());
+        }
+        return rows.stream().map(Row::price).toList();
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    private static void bind(PreparedStatement ps, Row row, LocalDateTime createdAt) throws SQLException {
+        PriceHistory price = row.price();
+        ps.setLong(1, row.coinId());
+        ps.setLong(2, row.exchangeId());
+        ps.setString(3, price.getTradingPair());
+        ps.setString(4, price.getQuoteCurrency());
+        ps.setObject(5, price.getTimestamp());
+        ps.setBigDecimal(6, price.getOpenPrice());
+        ps.setBigDecimal(7, price.getHighPrice());
+        ps.setBigDecimal(8, price.getLowPrice());
+        ps.setBigDecimal(9, price.getClosePrice());
+        ps.setBigDecimal(10, price.getVolume());
+        ps.setBigDecimal(11, price.getVolumeUsd());
+        if (price.getTradesCount() != null) {
+            ps.setLong(12, price.getTradesCount());
+        } else {
+            ps.setNull(12, Types.BIGINT);
+        }
+        ps.setString(13, price.getPriceType());
+        ps.setObject(14, createdAt);
+    }
+    
+    private record Row(PriceHistory price, long coinId, long exchangeId) {}
+}
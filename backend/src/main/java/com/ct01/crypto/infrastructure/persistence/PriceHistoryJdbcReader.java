@@ -0,0 +1,344 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Чтение истории цен через JDBC без JPA сущностей
+ * Порции по ключу (timestamp, id) идут по индексу (coin_id, exchange_id, timestamp):
+ * предикат (timestamp, id) > (?, ?) начинает сканирование сразу с нужной позиции вместо OFFSET.
+ * Выгрузка читает серверным курсором порциями fetch-size, не собирая результат в память.
+ * Символ и биржа берутся одним JOIN, строки сразу собираются в доменную модель без persistence context.
+ */
+@Component
+@Slf4j
+public class PriceHistoryJdbcReader {
+    
+    private static final String SELECT_SQL = """
+            SELECT ph.id, c.symbol, e.name AS exchange_name, ph.trading_pair, ph.quote_currency,
+                   ph.timestamp, ph.open_price, ph.high_price, ph.low_price, ph.close_price,
+                   ph.volume, ph.volume_usd, ph.trade_count, ph.price_type
+            FROM price_history ph
+            JOIN coins c ON c.id = ph.coin_id
+            JOIN exchanges e ON e.id = ph.exchange_id
+            """;
+    
+    // Последняя цена каждой пары (монета, биржа) одним запросом: LATERAL с LIMIT 1 на пару
+    // читает одну строку обратным проходом индекса (coin_id, exchange_id, timestamp, id)
+    private static final String LATEST_SQL = """
+            SELECT p.id, c.symbol, e.name AS exchange_name, p.trading_pair, p.quote_currency,
+                   p.timestamp, p.open_price, p.high_price, p.low_price, p.close_price,
+                   p.volume, p.volume_usd, p.trade_count, p.price_type
+            FROM coins c
+            CROSS JOIN exchanges e
+            JOIN LATERAL (
+                SELECT ph.*
+                FROM price_history ph
+                WHERE ph.coin_id = c.id AND ph.exchange_id = e.id
+                ORDER BY ph.timestamp DESC, ph.id DESC
+                LIMIT 1
+            ) p ON true
+            WHERE c.id IN (%s)
+            """;
+    
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "ph.id",
+            "timestamp", "ph.timestamp",
+            "openPrice", "ph.open_price",
+            "highPrice", "ph.high_price",
+            "lowPrice", "ph.low_price",
+            "closePrice", "ph.close_price",
+            "volume", "ph.volume",
+            "volumeUsd", "ph.volume_usd"
+    );
+    
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReferenceIdResolver idResolver;
+    
+    public PriceHistoryJdbcReader(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  ReferenceIdResolver idResolver,
+                                  @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idResolver = idResolver;
+        // Драйвер PostgreSQL читает курсором только при заданном fetch size и внутри транзакции
+        this.cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.cursorTemplate.setFetchSize(Math.max(1, fetchSize));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
+    /**
+     * Порция истории после позиции after по возрастанию (timestamp, id)
+     */
+    public List<PriceHistory> findAfter(String coinSymbol, String exchangeName,
+                                        LocalDateTime from, LocalDateTime to,
+                                        SeekKey after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, from, to, args);
+        if (where == null) {
+            return List.of();
+        }
+        if (after != null) {
+            where.append(" AND (ph.timestamp, ph.id) > (?, ?)");
+            args.add(after.timestamp());
+            args.add(after.id());
+        }
+        args.add(limit);
+    
+        return jdbcTemplate.query(SELECT_SQL + where + " ORDER BY ph.timestamp, ph.id LIMIT ?",
+                PriceHistoryRowMapper.INSTANCE, args.toArray());
+    }
+    
+    /**
+     * Страница истории по смещению в порядке (timestamp, id); для чтения, продолжающего архивную часть
+     */
+    public List<PriceHistory> findPage(String coinSymbol, String exchangeName,
+                                       LocalDateTime from, LocalDateTime to,
+                                       long offset, int limit) {
+        return findPage(coinSymbol, exchangeName, from, to, Sort.unsorted(), offset, limit);
+    }
+    
+    /**
+     * Страница истории по смещению в заданном порядке; без сортировки - по (timestamp, id)
+     */
+    public List<PriceHistory> findPage(String coinSymbol, String exchangeName,
+                                       LocalDateTime from, LocalDateTime to,
+                                       Sort sort, long offset, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, from, to, args);
+        if (where == null) {
+            return List.of();
+        }
+        args.add(limit);
+        args.add(offset);
+    
+        return jdbcTemplate.query(SELECT_SQL + where + orderBy(sort) + " LIMIT ? OFFSET ?",
+                PriceHistoryRowMapper.INSTANCE, args.toArray());
+    }
+    
+    /**
+     * История с момента since, начиная с самых новых записей
+     */
+    public List<PriceHistory> findSince(String coinSymbol, String exchangeName, LocalDateTime since) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, since, null, args);
+        if (where == null) {
+            return List.of();
+        }
+    
+        return jdbcTemplate.query(SELECT_SQL + where + " ORDER BY ph.timestamp DESC, ph.id DESC",
+                PriceHistoryRowMapper.INSTANCE, args.toArray());
+    }
+    
+    /**
+     * Последние цены набора монет на заданных биржах (пустой набор бирж - все биржи);
+     * неизвестные символы и биржи пропускаются
+     */
+    public List<PriceHistory> findLatest(Collection<String> coinSymbols, Collection<String> exchangeNames) {
+        List<Object> coinIds = resolveIds(coinSymbols, idResolver::resolveCoinId);
+        List<Object> exchangeIds = resolveIds(exchangeNames, idResolver::resolveExchangeId);
+        if (coinIds.isEmpty() || (!exchangeNames.isEmpty() && exchangeIds.isEmpty())) {
+            return List.of();
+        }
+    
+        StringBuilder sql = new StringBuilder(LATEST_SQL.formatted(placeholders(coinIds.size())));
+        List<Object> args = new ArrayList<>(coinIds);
+        if (!exchangeIds.isEmpty()) {
+            sql.append(" AND e.id IN (").append(placeholders(exchangeIds.size())).append(')');
+            args.addAll(exchangeIds);
+        }
+        return jdbcTemplate.query(sql.toString(), PriceHistoryRowMapper.INSTANCE, args.toArray());
+    }
+    
+    private static List<Object> resolveIds(Collection<String> names, Function<String, Long> resolver) {
+        List<Object> ids = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            Long id = resolver.apply(name);
+            if (id != null && !ids.contains(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+    
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+    
+    /**
+     * Точное количество строк периода
+     */
+    public long count(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, from, to, args);
+        if (where == null) {
+            return 0;
+        }
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM price_history ph" + where, Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * Точное количество строк биржи
+     */
+    public long countByExchange(String exchangeName) {
+        Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+        if (exchangeId == null) {
+            return 0;
+        }
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM price_history ph WHERE ph.exchange_id = ?", Long.class, exchangeId);
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * Точное количество строк всех пар за период; период отбирается по BRIN на timestamp
+     */
+    public long countBetween(LocalDateTime from, LocalDateTime to) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM price_history ph WHERE ph.timestamp BETWEEN ? AND ?", Long.class, from, to);
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * Тикеры всех пар с момента since, начиная с самых новых
+     */
+    public List<PriceHistory> findTickersSince(LocalDateTime since) {
+        return jdbcTemplate.query(SELECT_SQL + " WHERE ph.timestamp >= ? AND ph.price_type = 'TICKER'"
+                        + " ORDER BY ph.timestamp DESC, ph.id DESC",
+                PriceHistoryRowMapper.INSTANCE, since);
+    }
+    
+    /**
+     * Передать историю периода после позиции after потребителю по одной записи
+     * в порядке (timestamp, id); исключение потребителя прерывает чтение
+     */
+    public void streamAfter(String coinSymbol, String exchangeName,
+                            LocalDateTime from, LocalDateTime to,
+                            SeekKey after, Consumer<PriceHistory> consumer) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, from, to, args);
+        if (where == null) {
+            return;
+        }
+        if (after != null) {
+            where.append(" AND (ph.timestamp, ph.id) > (?, ?)");
+            args.add(after.timestamp());
+            args.add(after.id());
+        }
+    
+        String sql = SELECT_SQL + where + " ORDER BY ph.timestamp, ph.id";
+        readOnlyTransaction.executeWithoutResult(status -> {
+            int[] rowNum = {0};
+            cursorTemplate.query(sql, rs -> {
+                consumer.accept(PriceHistoryRowMapper.INSTANCE.mapRow(rs, rowNum[0]++));
+            }, args.toArray());
+        });
+    }
+    
+    /**
+     * Оценка количества строк периода по плану запроса; статистика таблицы может отставать
+     */
+    public long estimateCount(String coinSymbol, String exchangeName, LocalDateTime from, LocalDateTime to) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = rangeFilter(coinSymbol, exchangeName, from, to, args);
+        if (where == null) {
+            return 0;
+        }
+    
+        try {
+            String plan = jdbcTemplate.queryForObject(
+                    "EXPLAIN (FORMAT JSON) SELECT 1 FROM price_history ph" + where, String.class, args.toArray());
+            Matcher matcher = PLAN_ROWS.matcher(plan != null ? plan : "");
+            return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+        } catch (DataAccessException e) {
+            log.debug("Failed to estimate price history count: {}", e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * ORDER BY по свойствам доменной модели; id в конце делает порядок однозначным для OFFSET
+     * Неизвестное свойство - ошибка запроса клиента (IllegalArgumentException, ответ 400)
+     */
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return " ORDER BY ph.timestamp, ph.id";
+        }
+        StringBuilder order = new StringBuilder(" ORDER BY ");
+        boolean byId = false;
+        for (Sort.Order property : sort) {
+            String column = SORT_COLUMNS.get(property.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + property.getProperty()
+                        + ", supported: " + String.join(", ", new TreeSet<>(SORT_COLUMNS.keySet())));
+            }
+            byId |= "ph.id".equals(column);
+            order.append(column).append(property.isAscending() ? " ASC" : " DESC").append(", ");
+        }
+        if (byId) {
+            order.setLength(order.length() - 2);
+        } else {
+            order.append("ph.id");
+        }
+        return order.toString();
+    }
+    
+    /**
+     * Условие по монете, бирже и периоду; null, если монета или биржа неизвестны
+     */
+    private StringBuilder rangeFilter(String coinSymbol, String exchangeName,
+                                      LocalDateTime from, LocalDateTime to, List<Object> args) {
+        Long coinId = idResolver.resolveCoinId(coinSymbol);
+        if (coinId == null) {
+            return null;
+        }
+    
+        StringBuilder where = new StringBuilder(" WHERE ph.coin_id = ?");
+        args.add(coinId);
+        if (exchangeName != null) {
+            Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+            if (exchangeId == null) {
+                return null;
+            }
+            where.append(" AND ph.exchange_id = ?");
+            args.add(exchangeId);
+        }
+        if (from != null) {
+            where.append(" AND ph.timestamp >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            where.append(" AND ph.timestamp <= ?");
+            args.add(to);
+        }
+        return where;
+    }
+}
@@ -0,0 +1,204 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание секций price_history (секционирование по диапазонам timestamp, changelog 011)
+ * Секции создаются заранее на precreate-days вперед, устаревшие удаляются или отсоединяются целиком.
+ * Если таблица не секционирована (другая СУБД, миграция не применена), очистка сводится к DELETE.
+ */
+@Component
+@Slf4j
+public class PriceHistoryPartitionManager {
+    
+    public enum PartitionInterval { DAY, WEEK }
+    
+    public enum RetentionMode { DROP, DETACH }
+    
+    private static final String TABLE = "price_history";
+    
+    private static final String IS_PARTITIONED_SQL = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM pg_partitioned_table pt
+                JOIN pg_class c ON c.oid = pt.partrelid
+                WHERE c.relname = 'price_history' AND pg_table_is_visible(c.oid)
+            )
+            """;
+    
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'price_history'::regclass
+            """;
+    
+    // Строки в секции по умолчанию и в пограничной секции; остальные секции отсекаются планировщиком
+    private static final String DELETE_ROWS_SQL = "DELETE FROM price_history WHERE timestamp < ?";
+    
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitionInterval interval;
+    private final int precreateDays;
+    private final RetentionMode retentionMode;
+    
+    private volatile Boolean partitioned;
+    
+    public PriceHistoryPartitionManager(JdbcTemplate jdbcTemplate,
+                                        @Value("${app.partitioning.interval:DAY}") PartitionInterval interval,
+                                        @Value("${app.partitioning.precreate-days:7}") int precreateDays,
+                                        @Value("${app.partitioning.retention-mode:DROP}") RetentionMode retentionMode) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.interval = interval;
+        this.precreateDays = Math.max(1, precreateDays);
+        this.retentionMode = retentionMode;
+    }
+    
+    /**
+     * Секционирована ли таблица; результат запоминается после первой успешной проверки
+     */
+    public boolean isPartitioned() {
+        Boolean current = partitioned;
+        if (current == null) {
+            try {
+                current = Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class));
+                partitioned = current;
+            } catch (DataAccessException e) {
+                log.debug("Partition catalog is not available: {}", e.getMessage());
+                return false;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Создать недостающие секции от конца последней существующей до горизонта precreate-days
+     * @return количество созданных секций
+     */
+    public synchronized int ensurePartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+    
+        LocalDateTime horizon = LocalDate.now().plusDays(precreateDays + 1L).atStartOfDay();
+        LocalDateTime start = listPartitions().stream()
+                .map(Partition::to)
+                .max(Comparator.naturalOrder())
+                .orElseGet(() -> alignStart(LocalDate.now()));
+    
+        int created = 0;
+        while (start.isBefore(horizon)) {
+            LocalDateTime end = nextBoundary(start);
+            String name = partitionName(start);
+            try {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        name, TABLE, start.format(BOUND_FORMAT), end.format(BOUND_FORMAT)));
+                created++;
+            } catch (DataAccessException e) {
+                // Обычно строки этого диапазона уже лежат в секции по умолчанию
+                log.warn("Failed to create partition {} [{} - {}): {}", name, start, end, e.getMessage());
+            }
+            start = end;
+        }
+    
+        if (created > 0) {
+            log.info("Created {} price history partitions up to {}", created, horizon);
+        }
+        return created;
+    }
+    
+    /**
+     * Удалить историю старше cutoff: секции, целиком лежащие до границы, удаляются (или отсоединяются)
+     * без построчного DELETE, оставшиеся строки чистятся DELETE по пограничной секции и секции по умолчанию
+     * @return количество удаленных или отсоединенных секций
+     */
+    public synchronized int purgeBefore(LocalDateTime cutoff) {
+        int removed = 0;
+        if (isPartitioned()) {
+            for (Partition partition : listPartitions()) {
+                if (partition.to().isAfter(cutoff)) {
+                    continue;
+                }
+                String sql = retentionMode == RetentionMode.DETACH
+                        ? String.format("ALTER TABLE %s DETACH PARTITION %s", TABLE, partition.name())
+                        : String.format("DROP TABLE %s", partition.name());
+                jdbcTemplate.execute(sql);
+                removed++;
+            }
+        }
+    
+        long startedAt = System.currentTimeMillis();
+        int rows = jdbcTemplate.update(DELETE_ROWS_SQL, cutoff);
+        log.info("Price history retention before {}: {} partitions {}, {} rows deleted in {}ms",
+                cutoff, removed, retentionMode == RetentionMode.DETACH ? "detached" : "dropped",
+                rows, System.currentTimeMillis() - startedAt);
+        return removed;
+    }
+    
+    /**
+     * Удалить одну секцию (например, после переноса ее строк в архив)
+     */
+    public void dropPartition(String name) {
+        jdbcTemplate.execute(String.format("DROP TABLE %s", name));
+    }
+    
+    /**
+     * Диапазонные секции таблицы; секция по умолчанию в список не входит
+     */
+    public List<Partition> listPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query(PARTITIONS_SQL, rs -> {
+            Matcher matcher = RANGE_BOUND.matcher(rs.getString("bound"));
+            if (matcher.find()) {
+                partitions.add(new Partition(
+                        rs.getString("relname"),
+                        LocalDateTime.parse(matcher.group(1), BOUND_FORMAT),
+                        LocalDateTime.parse(matcher.group(2), BOUND_FORMAT)));
+            }
+        });
+        partitions.sort(Comparator.comparing(Partition::from));
+        return partitions;
+    }
+    
+    private LocalDateTime alignStart(LocalDate date) {
+        return interval == PartitionInterval.WEEK
+                ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay()
+                : date.atStartOfDay();
+    }
+    
+    /**
+     * Граница следующей секции; недельные секции выравниваются по понедельникам,
+     * поэтому после смены DAY на WEEK первая недельная секция короче недели
+     */
+    private LocalDateTime nextBoundary(LocalDateTime start) {
+        LocalDate day = start.toLocalDate();
+        return interval == PartitionInterval.WEEK
+                ? day.with(TemporalAdjusters.next(DayOfWeek.MONDAY)).atStartOfDay()
+                : day.plusDays(1).atStartOfDay();
+    }
+    
+    private static String partitionName(LocalDateTime start) {
+        return TABLE + "_p" + start.format(NAME_FORMAT);
+    }
+    
+    public record Partition(String name, LocalDateTime from, LocalDateTime to) {}
+}
@@ -2,23 +2,29 @@ package com.ct01.crypto.infrastructure.persistence;
 
 import com.ct01.crypto.domain.PriceHistory;
 import com.ct01.crypto.domain.repository.PriceHistoryRepository;
+import com.ct01.crypto.infrastructure.archive.PriceArchiveStore;
 import com.ct01.crypto.infrastructure.config.CachingConfig;
 import com.ct01.crypto.infrastructure.mapper.PriceHistoryMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Реализация доменного репозитория PriceHistoryRepository
  * Адаптер между доменом и JPA репозиторием с оптимизацией производительности
+ * Периоды, уходящие за границу архива, читаются из сегментов на диске и продолжаются строками из БД.
  */
 @Repository
 @Slf4j
@@ -28,15 +34,30 @@ public class PriceHistoryRepositoryImpl implements PriceHistoryRepository {
     private final alg.coyote001.repository.CoinRepository jpaCoinRepository;
     private final alg.coyote001.repository.ExchangeRepository jpaExchangeRepository;
     private final PriceHistoryMapper priceHistoryMapper;
+    private final PriceHistoryBatchWriter batchWriter;
+    private final PriceHistoryPartitionManager partitionManager;
+    private final PriceHistoryJdbcReader jdbcReader;
+    private final PriceArchiveStore archiveStore;
+    private final TradingPairCatalog pairCatalog;
     
     public PriceHistoryRepositoryImpl(alg.coyote001.repository.PriceHistoryRepository jpaPriceHistoryRepository,
                                      alg.coyote001.repository.CoinRepository jpaCoinRepository,
                                      alg.coyote001.repository.ExchangeRepository jpaExchangeRepository,
-                                     PriceHistoryMapper priceHistoryMapper) {
+                                     PriceHistoryMapper priceHistoryMapper,
+                                     PriceHistoryBatchWriter batchWriter,
+                                     PriceHistoryPartitionManager partitionManager,
+                                     PriceHistoryJdbcReader jdbcReader,
+                                     PriceArchiveStore archiveStore,
+                                     TradingPairCatalog pairCatalog) {
         this.jpaPriceHistoryRepository = jpaPriceHistoryRepository;
         this.jpaCoinRepository = jpaCoinRepository;
         this.jpaExchangeRepository = jpaExchangeRepository;
         this.priceHistoryMapper = priceHistoryMapper;
+        this.batchWriter = batchWriter;
+        this.partitionManager = partitionManager;
+        this.jdbcReader = jdbcReader;
+        this.archiveStore = archiveStore;
+        this.pairCatalog = pairCatalog;
     }
     
     @Override
@@ -48,137 +69,126 @@ public class PriceHistoryRepositoryImpl implements PriceHistoryRepository {
     public Optional<PriceHistory> findLatestPrice(String coinSymbol, String exchangeName) {
         log.debug("Finding latest price for {} on {}", coinSymbol, exchangeName);
         
-        var coin = jpaCoinRepository.findBySymbolIgnoreCase(coinSymbol).orElse(null);
-        var exchange = jpaExchangeRepository.findByNameIgnoreCase(exchangeName).orElse(null);
-        
-        if (coin == null || exchange == null) {
-            return Optional.empty();
-        }
-        
-        return jpaPriceHistoryRepository.findLatestPrice(coin, exchange)
-                .map(priceHistoryMapper::toDomain);
+        return jdbcReader.findLatest(List.of(coinSymbol), List.of(exchangeName)).stream().findFirst();
     }
     
     @Override
     public List<PriceHistory> findLatestPricesForCoin(String coinSymbol) {
-        var coin = jpaCoinRepository.findBySymbolIgnoreCase(coinSymbol).orElse(null);
-        if (coin == null) {
-            return List.of();
-        }
-        
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findRecentPricesForCoin(coin.getId())
-        );
+        return jdbcReader.findLatest(List.of(coinSymbol), List.of());
+    }
+    
+    @Override
+    public List<PriceHistory> findLatestPrices(Collection<String> coinSymbols, Collection<String> exchangeNames) {
+        return jdbcReader.findLatest(coinSymbols, exchangeNames);
     }
     
     @Override
     public List<PriceHistory> findRecentPrices(String coinSymbol, int hours) {
-        var coin = jpaCoinRepository.findBySymbolIgnoreCase(coinSymbol).orElse(null);
-        if (coin == null) {
-            return List.of();
-        }
-        
-        LocalDateTime threshold = LocalDateTime.now().minusHours(hours);
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findRecentPricesForCoin(coin.getId(), threshold)
-        );
+        // JDBC с JOIN символа и биржи: без гидратации сущностей и ленивых связей на каждую строку
+        return jdbcReader.findSince(coinSymbol, null, LocalDateTime.now().minusHours(hours));
     }
     
     @Override
     public List<PriceHistory> findRecentPricesOnExchange(String coinSymbol, String exchangeName, int hours) {
-        var coin = jpaCoinRepository.findBySymbolIgnoreCase(coinSymbol).orElse(null);
-        var exchange = jpaExchangeRepository.findByNameIgnoreCase(exchangeName).orElse(null);
-        
-        if (coin == null || exchange == null) {
-            return List.of();
-        }
-        
-        LocalDateTime threshold = LocalDateTime.now().minusHours(hours);
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findByCoinAndExchangeAndTimestampAfter(coin, exchange, threshold)
-        );
+        return jdbcReader.findSince(coinSymbol, exchangeName, LocalDateTime.now().minusHours(hours));
     }
     
     @Override
     public Page<PriceHistory> findHistoricalData(String coinSymbol, String exchangeName, 
                                                 LocalDateTime from, LocalDateTime to, 
                                                 Pageable pageable) {
-        var coin = jpaCoinRepository.findBySymbolIgnoreCase(coinSymbol).orElse(null);
-        if (coin == null) {
-            return Page.empty(pageable);
+        if (reachesArchive(from, null)) {
+            return findHistoricalDataWithArchive(coinSymbol, exchangeName, from, to, pageable);
         }
         
-        Page<alg.coyote001.entity.PriceHistory> entityPage;
-        
-        if (exchangeName != null) {
-            var exchange = jpaExchangeRepository.findByNameIgnoreCase(exchangeName).orElse(null);
-            if (exchange == null) {
-                return Page.empty(pageable);
-            }
-            
-            if (from != null && to != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndExchangeAndTimestampBetween(
-                        coin, exchange, from, to, pageable);
-            } else if (from != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndExchangeAndTimestampAfter(
-                        coin, exchange, from, pageable);
-            } else if (to != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndExchangeAndTimestampBefore(
-                        coin, exchange, to, pageable);
-            } else {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndExchange(coin, exchange, pageable);
-            }
-        } else {
-            if (from != null && to != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndTimestampBetween(coin, from, to, pageable);
-            } else if (from != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndTimestampAfter(coin, from, pageable);
-            } else if (to != null) {
-                entityPage = jpaPriceHistoryRepository.findByCoinAndTimestampBefore(coin, to, pageable);
-            } else {
-                entityPage = jpaPriceHistoryRepository.findByCoin(coin, pageable);
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int size = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<PriceHistory> content = jdbcReader.findPage(coinSymbol, exchangeName, from, to,
+                pageable.getSort(), offset, size);
+        // COUNT(*) нужен, только если страница заполнена и за ней могут быть строки
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> jdbcReader.count(coinSymbol, exchangeName, from, to));
+    }
+    
+    @Override
+    public List<PriceHistory> findHistoricalDataAfter(String coinSymbol, String exchangeName,
+                                                      LocalDateTime from, LocalDateTime to,
+                                                      SeekKey after, int limit) {
+        List<PriceHistory> result = new ArrayList<>();
+        if (reachesArchive(from, after)) {
+            archiveStore.scan(coinSymbol, exchangeName, from, to, after, price -> {
+                result.add(price);
+                return result.size() < limit;
+            });
+            if (result.size() >= limit) {
+                return result;
             }
         }
-        
-        var domainHistory = priceHistoryMapper.toDomainList(entityPage.getContent());
-        return new PageImpl<>(domainHistory, pageable, entityPage.getTotalElements());
+        // Строки в БД лежат не раньше границы архива, поэтому после архивной части порядок сохраняется
+        result.addAll(jdbcReader.findAfter(coinSymbol, exchangeName, from, to, after, limit - result.size()));
+        return result;
     }
     
     @Override
-    public List<PriceHistory> findByTradingPair(String tradingPair, LocalDateTime from, LocalDateTime to) {
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findByTradingPairAndTimestampBetween(tradingPair, from, to)
-        );
+    public void streamHistoricalData(String coinSymbol, String exchangeName,
+                                     LocalDateTime from, LocalDateTime to,
+                                     SeekKey after, Consumer<PriceHistory> consumer) {
+        if (reachesArchive(from, after)) {
+            archiveStore.scan(coinSymbol, exchangeName, from, to, after, price -> {
+                consumer.accept(price);
+                return true;
+            });
+        }
+        jdbcReader.streamAfter(coinSymbol, exchangeName, from, to, after, consumer);
     }
     
     @Override
-    public List<PriceHistory> findFreshData(int maxAgeMinutes) {
-        LocalDateTime threshold = LocalDateTime.now().minusMinutes(maxAgeMinutes);
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findRecentTickers(threshold)
-        );
+    public void pageHistoricalData(String coinSymbol, String exchangeName,
+                                   LocalDateTime from, LocalDateTime to,
+                                   SeekKey after, int pageSize, Consumer<PriceHistory> consumer) {
+        SeekKey[] last = {after};
+        if (reachesArchive(from, after)) {
+            // Архив - файлы сегментов, потребитель может читать их сколь угодно медленно
+            archiveStore.scan(coinSymbol, exchangeName, from, to, after, price -> {
+                consumer.accept(price);
+                last[0] = SeekKey.of(price);
+                return true;
+            });
+        }
+        // Каждая порция - отдельный короткий запрос: блокировка секций снимается до передачи строк потребителю
+        List<PriceHistory> page;
+        do {
+            page = jdbcReader.findAfter(coinSymbol, exchangeName, from, to, last[0], pageSize);
+            for (PriceHistory price : page) {
+                consumer.accept(price);
+            }
+            if (!page.isEmpty()) {
+                last[0] = SeekKey.of(page.get(page.size() - 1));
+            }
+        } while (page.size() == pageSize);
+    }
+    
+    @Override
+    public long estimateHistoricalDataCount(String coinSymbol, String exchangeName,
+                                            LocalDateTime from, LocalDateTime to) {
+        long archived = reachesArchive(from, null) ? archiveStore.count(coinSymbol, exchangeName, from, to) : 0;
+        return archived + jdbcReader.estimateCount(coinSymbol, exchangeName, from, to);
     }
     
     @Override
-    public List<PriceHistory> findByPriceType(String priceType) {
-        return priceHistoryMapper.toDomainList(
-                jpaPriceHistoryRepository.findByPriceType(priceType)
-        );
+    public List<PriceHistory> findFreshData(int maxAgeMinutes) {
+        return jdbcReader.findTickersSince(LocalDateTime.now().minusMinutes(maxAgeMinutes));
     }
     
     @Override
     public List<String> findTradingPairsByExchange(String exchangeName) {
-        var exchange = jpaExchangeRepository.findByNameIgnoreCase(exchangeName).orElse(null);
-        if (exchange == null) {
-            return List.of();
-        }
-        
-        return jpaPriceHistoryRepository.findDistinctTradingPairsByExchange(exchange.getId());
+        // Каталог пар в памяти вместо SELECT DISTINCT по всей истории
+        return pairCatalog.tradingPairs(exchangeName);
     }
     
     @Override
     public List<String> findDistinctQuoteCurrencies() {
-        return jpaPriceHistoryRepository.findDistinctQuoteCurrencies();
+        return pairCatalog.quoteCurrencies();
     }
     
     @Override
@@ -193,38 +203,97 @@ public class PriceHistoryRepositoryImpl implements PriceHistoryRepository {
         
         var entity = priceHistoryMapper.toEntity(priceHistory, coin, exchange);
         var savedEntity = jpaPriceHistoryRepository.save(entity);
+        pairCatalog.record(exchange.getId(), priceHistory.getTradingPair(), priceHistory.getQuoteCurrency(),
+                priceHistory.getTimestamp());
         return priceHistoryMapper.toDomain(savedEntity);
     }
     
     @Override
     public List<PriceHistory> saveAll(List<PriceHistory> priceHistories) {
-        return priceHistories.stream()
-                .map(this::save)
-                .toList();
+        // Пакетная вставка JDBC вместо поиска Coin/Exchange и INSERT на каждую строку
+        return batchWriter.write(priceHistories);
     }
     
     @Override
     public void deleteOldData(LocalDateTime cutoffDate) {
-        jpaPriceHistoryRepository.deleteByTimestampBefore(cutoffDate);
+        // Секции целиком удаляются без построчного DELETE и раздувания индексов
+        partitionManager.purgeBefore(cutoffDate);
+        archiveStore.deleteBefore(cutoffDate);
     }
     
     @Override
     public long countByExchange(String exchangeName) {
-        var exchange = jpaExchangeRepository.findByNameIgnoreCase(exchangeName).orElse(null);
-        if (exchange == null) {
-            return 0;
-        }
-        
-        return jpaPriceHistoryRepository.countByExchange(exchange);
+        return jdbcReader.countByExchange(exchangeName);
     }
     
     @Override
     public long countByTimestampBetween(LocalDateTime from, LocalDateTime to) {
-        return jpaPriceHistoryRepository.countByTimestampBetween(from, to);
+        return jdbcReader.countBetween(from, to);
     }
     
     @Override
     public boolean existsByTradingPair(String tradingPair) {
-        return jpaPriceHistoryRepository.existsByTradingPair(tradingPair);
+        // Каталог пар в памяти: после 016 у price_history нет индекса по trading_pair
+        return pairCatalog.contains(tradingPair);
+    }
+    
+    /**
+     * Затрагивает ли период (с учетом позиции продолжения) архивную часть истории
+     */
+    private boolean reachesArchive(LocalDateTime from, SeekKey after) {
+        LocalDateTime boundary = archiveStore.boundary();
+        return boundary != null
+                && (from == null || from.isBefore(boundary))
+                && (after == null || after.timestamp().isBefore(boundary));
+    }
+    
+    /**
+     * Страница по смещению поверх архива и БД: сначала архивные строки периода, затем строки из БД
+     * Порядок склейки - только (timestamp, id), другая сортировка отклоняется, а не игнорируется
+     */
+    private Page<PriceHistory> findHistoricalDataWithArchive(String coinSymbol, String exchangeName,
+                                                             LocalDateTime from, LocalDateTime to,
+                                                             Pageable pageable) {
+        if (!isSeekOrder(pageable.getSort())) {
+            throw new IllegalArgumentException(
+                    "Periods reaching the price archive are ordered by timestamp only, requested: " + pageable.getSort());
+        }
+        
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int size = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        // Архивный счетчик берется из каталогов сегментов и нужен, чтобы знать смещение в БД
+        long archived = archiveStore.count(coinSymbol, exchangeName, from, to);
+        
+        List<PriceHistory> content = new ArrayList<>();
+        if (offset < archived) {
+            archiveStore.scan(coinSymbol, exchangeName, from, to, offset, price -> {
+                content.add(price);
+                return content.size() < size;
+            });
+        }
+        if (content.size() < size) {
+            content.addAll(jdbcReader.findPage(coinSymbol, exchangeName, from, to,
+                    Math.max(0, offset - archived), size - content.size()));
+        }
+        
+        // COUNT(*) по БД - как и без архива, только если за заполненной страницей могут быть строки
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> archived + jdbcReader.count(coinSymbol, exchangeName, from, to));
+    }
+    
+    /**
+     * Сортировка совпадает с порядком (timestamp, id) по возрастанию
+     */
+    private static boolean isSeekOrder(Sort sort) {
+        List<String> properties = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (order.isDescending()) {
+                return false;
+            }
+            properties.add(order.getProperty());
+        }
+        return properties.isEmpty()
+                || properties.equals(List.of("timestamp"))
+                || properties.equals(List.of("timestamp", "id"));
     }
 } 
@@ -0,0 +1,42 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.PriceHistory;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Отображение строки price_history в доменную модель без JPA сущностей
+ * Ожидает колонки price_history и символ монеты (symbol) с именем биржи (exchange_name).
+ */
+public final class PriceHistoryRowMapper implements RowMapper<PriceHistory> {
+    
+    public static final PriceHistoryRowMapper INSTANCE = new PriceHistoryRowMapper();
+    
+    private PriceHistoryRowMapper() {
+    }
+    
+    @Override
+    public PriceHistory mapRow(ResultSet rs, int rowNum) throws SQLException {
+        long tradesCount = rs.getLong("trade_count");
+        Long trades = rs.wasNull() ? null : tradesCount;
+        return new PriceHistory(
+                rs.getLong("id"),
+                rs.getString("symbol"),
+                rs.getString("exchange_name"),
+                rs.getString("trading_pair"),
+                rs.getString("quote_currency"),
+                rs.getObject("timestamp", LocalDateTime.class),
+                rs.getBigDecimal("open_price"),
+                rs.getBigDecimal("high_price"),
+                rs.getBigDecimal("low_price"),
+                rs.getBigDecimal("close_price"),
+                rs.getBigDecimal("volume"),
+                rs.getBigDecimal("volume_usd"),
+                trades,
+                rs.getString("price_type")
+        );
+    }
+}
@@ -0,0 +1,379 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.repository.LatestPriceIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная запись тиков (write-behind) между адаптерами бирж и БД
+ * Тики попадают в ограниченный кольцевой буфер, который разбирают выделенные потоки записи.
+ * При переполнении действует политика backpressure, поэтому всплеск задержки БД
+ * не останавливает прием цен. TICKER строки могут схлопываться до последнего тика
+ * на пару (монета, биржа) за интервал.
+ * Настройки: app.ingestion.*
+ */
+@Component
+@Slf4j
+public class PriceWriteBehindBuffer {
+    
+    private static final String METRIC_PREFIX = "price.ingestion.";
+    private static final long MAX_FAILURE_BACKOFF_MS = 5_000;
+    
+    /**
+     * Поведение при заполненном буфере
+     */
+    public enum BackpressurePolicy {
+        /** Ждать освобождения места не дольше block-timeout, затем отбросить тик */
+        BLOCK,
+        /** Вытеснить самый старый тик */
+        DROP_OLDEST,
+        /** После порога заполнения принимать только каждый N-й тик */
+        SAMPLE
+    }
+    
+    private final PriceHistoryBatchWriter batchWriter;
+    private final LatestPriceIndex latestPriceIndex;
+    private final ArrayBlockingQueue<Entry> queue;
+    private final int capacity;
+    private final int writerThreads;
+    private final BackpressurePolicy policy;
+    private final long blockTimeoutMs;
+    private final int sampleThreshold;
+    private final int sampleRate;
+    private final boolean coalesceTickers;
+    private final long coalesceIntervalMs;
+    private final long flushIntervalNanos;
+    
+    private final Map<String, Entry> latestTickers = new ConcurrentHashMap<>();
+    private final AtomicInteger sampleCounter = new AtomicInteger();
+    private final AtomicLong lastWriteLagMs = new AtomicLong();
+    
+    private final Counter acceptedCounter;
+    private final Counter writtenCounter;
+    private final Counter overflowCounter;
+    private final Counter sampledCounter;
+    private final Counter coalescedCounter;
+    private final Counter failedCounter;
+    private final Timer writeTimer;
+    
+    private ExecutorService writers;
+    private ScheduledExecutorService coalescer;
+    private volatile boolean running;
+    
+    public PriceWriteBehindBuffer(PriceHistoryBatchWriter batchWriter,
+                                  LatestPriceIndex latestPriceIndex,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.ingestion.buffer-capacity:65536}") int capacity,
+                                  @Value("${app.ingestion.writer-threads:2}") int writerThreads,
+                                  @Value("${app.ingestion.backpressure:DROP_OLDEST}") BackpressurePolicy policy,
+                                  @Value("${app.ingestion.block-timeout-ms:50}") long blockTimeoutMs,
+                                  @Value("${app.ingestion.sample-threshold:0.75}") double sampleThreshold,
+                                  @Value("${app.ingestion.sample-rate:10}") int sampleRate,
+                                  @Value("${app.ingestion.coalesce-tickers:true}") boolean coalesceTickers,
+                                  @Value("${app.ingestion.coalesce-interval-ms:1000}") long coalesceIntervalMs,
+                                  @Value("${app.ingestion.flush-interval-ms:200}") long flushIntervalMs) {
+        if (capacity <= 0 || writerThreads <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid write-behind buffer settings");
+        }
+        this.batchWriter = batchWriter;
+        this.latestPriceIndex = latestPriceIndex;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThreads = writerThreads;
+        this.policy = policy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.sampleThreshold = (int) (capacity * sampleThreshold);
+        this.sampleRate = sampleRate;
+        this.coalesceTickers = coalesceTickers;
+        this.coalesceIntervalMs = coalesceIntervalMs;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    
+        Gauge.builder(METRIC_PREFIX + "queue.depth", queue, ArrayBlockingQueue::size)
+                .description("Тики в буфере записи")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "queue.capacity", () -> this.capacity)
+                .description("Емкость буфера записи")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "coalesce.pending", latestTickers, Map::size)
+                .description("Пары (монета, биржа), ожидающие схлопнутой записи")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "write.lag", lastWriteLagMs, AtomicLong::get)
+                .description("Время от приема до записи самого старого тика последнего пакета, мс")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.acceptedCounter = Counter.builder(METRIC_PREFIX + "ticks.accepted")
+                .description("Принятые тики")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder(METRIC_PREFIX + "ticks.written")
+                .description("Записанные в БД тики")
+                .register(meterRegistry);
+        this.overflowCounter = droppedCounter(meterRegistry, "overflow");
+        this.sampledCounter = droppedCounter(meterRegistry, "sampled");
+        this.coalescedCounter = droppedCounter(meterRegistry, "coalesced");
+        this.failedCounter = droppedCounter(meterRegistry, "write-failure");
+        this.writeTimer = Timer.builder(METRIC_PREFIX + "batch.write")
+                .description("Время записи пакета")
+                .register(meterRegistry);
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        AtomicInteger threadIndex = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "price-writer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writerThreads; i++) {
+            writers.submit(this::writeLoop);
+        }
+    
+        if (coalesceTickers) {
+            coalescer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "price-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            coalescer.scheduleWithFixedDelay(this::releaseCoalesced,
+                    coalesceIntervalMs, coalesceIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    
+        log.info("Started price write-behind buffer: capacity {}, {} writers, policy {}, coalescing {}",
+                capacity, writerThreads, policy, coalesceTickers ? coalesceIntervalMs + "ms" : "off");
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (coalescer != null) {
+            coalescer.shutdownNow();
+            releaseCoalesced();
+        }
+        running = false;
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Price writers did not finish in time, {} ticks left unwritten", queue.size());
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writers.shutdownNow();
+        }
+    }
+    
+    /**
+     * Принять тики на запись; вызов не ждет БД (кроме политики BLOCK при полном буфере)
+     */
+    public void submitAll(Collection<PriceHistory> prices) {
+        prices.forEach(this::submit);
+    }
+    
+    public void submit(PriceHistory price) {
+        acceptedCounter.increment();
+        // Текущая цена видна читателям сразу, не дожидаясь записи в БД
+        latestPriceIndex.update(price);
+        Entry entry = new Entry(price, System.nanoTime());
+        if (coalesceTickers && "TICKER".equals(price.getPriceType())) {
+            // Последний тик пары замещает предыдущий до ближайшего интервала схлопывания
+            if (latestTickers.put(price.getCoinSymbol() + ':' + price.getExchangeName(), entry) != null) {
+                coalescedCounter.increment();
+            }
+            return;
+        }
+        enqueue(entry);
+    }
+    
+    /**
+     * Текущая глубина буфера
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    private void releaseCoalesced() {
+        latestTickers.forEach((key, entry) -> {
+            // Если тик успели заменить, более свежий останется до следующего интервала
+            if (latestTickers.remove(key, entry)) {
+                enqueue(entry);
+            }
+        });
+    }
+    
+    private void enqueue(Entry entry) {
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(entry, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        overflowCounter.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    overflowCounter.increment();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        overflowCounter.increment();
+                    }
+                }
+            }
+            case SAMPLE -> {
+                if (queue.size() >= sampleThreshold && sampleCounter.incrementAndGet() % sampleRate != 0) {
+                    sampledCounter.increment();
+                } else if (!queue.offer(entry)) {
+                    overflowCounter.increment();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Цикл записи: пакет, который не удалось записать, повторяется с паузой раньше новых тиков
+     * и отбрасывается только тогда, когда этого требует политика backpressure
+     */
+    private void writeLoop() {
+        int batchSize = batchWriter.getBatchSize();
+        List<Entry> batch = new ArrayList<>(batchSize);
+        int consecutiveFailures = 0;
+    
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    collectBatch(batch, batchSize);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                }
+                writeBatch(batch);
+                batch.clear();
+                consecutiveFailures = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropUnwritten(batch);
+                return;
+            } catch (Exception e) {
+                consecutiveFailures++;
+                if (dropFailedBatch()) {
+                    log.error("Failed to write batch of {} prices, dropping it under {} policy: {}",
+                            batch.size(), policy, e.getMessage());
+                    failedCounter.increment(batch.size());
+                    batch.clear();
+                } else {
+                    log.error("Failed to write batch of {} prices, attempt {}, retrying: {}",
+                            batch.size(), consecutiveFailures, e.getMessage());
+                }
+                if (!backoff(consecutiveFailures)) {
+                    dropUnwritten(batch);
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Отбросить ли несостоявшийся пакет. Его тики старше всего, что стоит в буфере, поэтому:
+     * DROP_OLDEST вытесняет его, как только буфер заполнился; SAMPLE - как только буфер
+     * дошел до порога прореживания; BLOCK держит пакет, а лишние тики отбрасываются на входе
+     * по block-timeout
+     */
+    private boolean dropFailedBatch() {
+        return switch (policy) {
+            case BLOCK -> false;
+            case DROP_OLDEST -> queue.remainingCapacity() == 0;
+            case SAMPLE -> queue.size() >= sampleThreshold;
+        };
+    }
+    
+    private void dropUnwritten(List<Entry> batch) {
+        if (!batch.isEmpty()) {
+            log.warn("Price writer stopped, {} ticks of the pending batch left unwritten", batch.size());
+            failedCounter.increment(batch.size());
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Собрать пакет: ждем первый тик, затем добираем до batchSize не дольше flush-interval
+     */
+    private void collectBatch(List<Entry> batch, int batchSize) throws InterruptedException {
+        Entry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+    
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                break;
+            }
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+    
+    private void writeBatch(List<Entry> batch) {
+        List<PriceHistory> prices = new ArrayList<>(batch.size());
+        long oldestEnqueuedAt = Long.MAX_VALUE;
+        for (Entry entry : batch) {
+            prices.add(entry.price());
+            oldestEnqueuedAt = Math.min(oldestEnqueuedAt, entry.enqueuedAtNanos());
+        }
+    
+        List<PriceHistory> written = writeTimer.record(() -> batchWriter.write(prices));
+        writtenCounter.increment(written.size());
+        lastWriteLagMs.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestEnqueuedAt));
+    }
+    
+    /**
+     * Пауза после сбоя записи: экспоненциально до MAX_FAILURE_BACKOFF_MS, буфер тем временем
+     * продолжает принимать тики по своей политике
+     */
+    private boolean backoff(int consecutiveFailures) {
+        long delay = Math.min(MAX_FAILURE_BACKOFF_MS, 100L << Math.min(consecutiveFailures, 6));
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder(METRIC_PREFIX + "ticks.dropped")
+                .tag("reason", reason)
+                .description("Тики, не попавшие в БД")
+                .register(meterRegistry);
+    }
+    
+    private record Entry(PriceHistory price, long enqueuedAtNanos) {}
+}
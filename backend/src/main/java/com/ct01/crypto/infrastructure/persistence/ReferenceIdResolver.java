@@ -0,0 +1,82 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш идентификаторов монет и бирж для пути записи и индекса последних цен
+ * Отсутствующие ключи запоминаются и повторно запрашиваются не чаще MISSING_RETRY_MS
+ */
+@Component
+public class ReferenceIdResolver {
+    
+    private static final String COIN_ID_SQL = "SELECT id FROM coins WHERE UPPER(symbol) = ?";
+    private static final String EXCHANGE_ID_SQL = "SELECT id FROM exchanges WHERE LOWER(name) = ?";
+    private static final long MISSING_RETRY_MS = 60_000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, Long> coinIds = new ConcurrentHashMap<>();
+    private final Map<String, Long> exchangeIds = new ConcurrentHashMap<>();
+    private final Map<String, Long> missingUntil = new ConcurrentHashMap<>();
+    
+    public ReferenceIdResolver(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Идентификатор монеты по символу; null, если монеты нет
+     */
+    public Long resolveCoinId(String symbol) {
+        return resolve(coinIds, "coin:", symbol.toUpperCase(), COIN_ID_SQL);
+    }
+    
+    /**
+     * Идентификатор биржи по имени без учета регистра; null, если биржи нет
+     */
+    public Long resolveExchangeId(String exchangeName) {
+        return resolve(exchangeIds, "exchange:", exchangeName.toLowerCase(), EXCHANGE_ID_SQL);
+    }
+    
+    /**
+     * Запомнить известную пару ключ-идентификатор (например, при прогреве из БД)
+     */
+    public void remember(String coinSymbol, long coinId, String exchangeName, long exchangeId) {
+        coinIds.putIfAbsent(coinSymbol.toUpperCase(), coinId);
+        exchangeIds.putIfAbsent(exchangeName.toLowerCase(), exchangeId);
+    }
+    
+    /**
+     * Сбросить кэш (идентификаторы могли измениться после удаления записей)
+     */
+    public void clear() {
+        coinIds.clear();
+        exchangeIds.clear();
+        missingUntil.clear();
+    }
+    
+    private Long resolve(Map<String, Long> cache, String kind, String key, String sql) {
+        Long cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+    
+        Long retryAt = missingUntil.get(kind + key);
+        if (retryAt != null && retryAt > System.currentTimeMillis()) {
+            return null;
+        }
+    
+        List<Long> found = jdbcTemplate.queryForList(sql, Long.class, key);
+        if (found.isEmpty()) {
+            missingUntil.put(kind + key, System.currentTimeMillis() + MISSING_RETRY_MS);
+            return null;
+        }
+        cache.put(key, found.get(0));
+        missingUntil.remove(kind + key);
+        return found.get(0);
+    }
+}
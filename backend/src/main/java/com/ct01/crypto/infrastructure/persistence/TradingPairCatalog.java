@@ -0,0 +1,154 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Каталог торговых пар и котируемых валют из истории цен, обслуживаемый из памяти
+ * Таблица trading_pair_catalog пополняется при первой записи новой пары; в памяти ее копия,
+ * которая периодически дочитывается, чтобы увидеть пары, добавленные другими экземплярами.
+ * Пары остаются в каталоге и после удаления их истории.
+ */
+@Component
+@Slf4j
+public class TradingPairCatalog {
+    
+    private static final String LOAD_SQL = "SELECT exchange_id, trading_pair, quote_currency FROM trading_pair_catalog";
+    private static final String INSERT_SQL = """
+            INSERT INTO trading_pair_catalog (exchange_id, trading_pair, quote_currency, first_seen_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (exchange_id, trading_pair) DO NOTHING
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceIdResolver idResolver;
+    private final long refreshMs;
+    
+    private final Map<Long, Set<String>> pairsByExchange = new ConcurrentHashMap<>();
+    private final Set<String> quoteCurrencies = ConcurrentHashMap.newKeySet();
+    private volatile Map<Long, List<String>> sortedPairs = Map.of();
+    private volatile List<String> sortedQuoteCurrencies = List.of();
+    private volatile long nextRefreshAt;
+    
+    public TradingPairCatalog(JdbcTemplate jdbcTemplate,
+                              ReferenceIdResolver idResolver,
+                              @Value("${app.catalog.refresh-ms:300000}") long refreshMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idResolver = idResolver;
+        this.refreshMs = Math.max(1_000, refreshMs);
+    }
+    
+    /**
+     * Торговые пары биржи в алфавитном порядке; пустой список для неизвестной биржи
+     */
+    public List<String> tradingPairs(String exchangeName) {
+        refreshIfDue();
+        Long exchangeId = idResolver.resolveExchangeId(exchangeName);
+        if (exchangeId == null) {
+            return List.of();
+        }
+        return sortedPairs.getOrDefault(exchangeId, List.of());
+    }
+    
+    /**
+     * Котируемые валюты всех пар в алфавитном порядке
+     */
+    public List<String> quoteCurrencies() {
+        refreshIfDue();
+        return sortedQuoteCurrencies;
+    }
+    
+    /**
+     * Встречалась ли пара хотя бы на одной бирже
+     */
+    public boolean contains(String tradingPair) {
+        refreshIfDue();
+        for (Set<String> pairs : pairsByExchange.values()) {
+            if (pairs.contains(tradingPair)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Отметить пару, для которой записана цена; известная пара проверяется только в памяти,
+     * новая добавляется в таблицу. Ошибка каталога не прерывает запись цен
+     */
+    public void record(long exchangeId, String tradingPair, String quoteCurrency, LocalDateTime seenAt) {
+        if (known(exchangeId, tradingPair)) {
+            return;
+        }
+        refreshIfDue();
+        if (known(exchangeId, tradingPair)) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, exchangeId, tradingPair, quoteCurrency, seenAt);
+            log.info("New trading pair {} on exchange {}", tradingPair, exchangeId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to add trading pair {} on exchange {} to catalog: {}",
+                    tradingPair, exchangeId, e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (put(exchangeId, tradingPair, quoteCurrency)) {
+                publish();
+            }
+        }
+    }
+    
+    private boolean known(long exchangeId, String tradingPair) {
+        Set<String> pairs = pairsByExchange.get(exchangeId);
+        return pairs != null && pairs.contains(tradingPair);
+    }
+    
+    private boolean put(long exchangeId, String tradingPair, String quoteCurrency) {
+        boolean added = pairsByExchange.computeIfAbsent(exchangeId, id -> ConcurrentHashMap.newKeySet()).add(tradingPair);
+        return (quoteCurrency != null && quoteCurrencies.add(quoteCurrency)) || added;
+    }
+    
+    /**
+     * Пересобрать отсортированные списки для чтения; вызывается только при появлении новых пар
+     */
+    private void publish() {
+        Map<Long, List<String>> sorted = new HashMap<>();
+        pairsByExchange.forEach((exchangeId, pairs) -> sorted.put(exchangeId, pairs.stream().sorted().toList()));
+        sortedPairs = Map.copyOf(sorted);
+        sortedQuoteCurrencies = quoteCurrencies.stream().sorted().toList();
+    }
+    
+    private void refreshIfDue() {
+        if (System.currentTimeMillis() < nextRefreshAt) {
+            return;
+        }
+        synchronized (this) {
+            if (System.currentTimeMillis() < nextRefreshAt) {
+                return;
+            }
+            boolean[] changed = {false};
+            try {
+                jdbcTemplate.query(LOAD_SQL, rs -> {
+                    changed[0] |= put(rs.getLong("exchange_id"), rs.getString("trading_pair"),
+                            rs.getString("quote_currency"));
+                });
+            } catch (DataAccessException e) {
+                log.warn("Failed to load trading pair catalog: {}", e.getMessage());
+            }
+            if (changed[0]) {
+                publish();
+            }
+            nextRefreshAt = System.currentTimeMillis() + refreshMs;
+        }
+    }
+}
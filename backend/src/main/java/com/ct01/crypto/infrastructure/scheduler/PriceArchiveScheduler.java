@@ -0,0 +1,35 @@
+package com.ct01.crypto.infrastructure.scheduler;
+
+import com.ct01.crypto.infrastructure.archive.PriceHistoryArchiver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ежедневный перенос закрытых секций истории цен в архив на диске
+ * Запускается после обслуживания секций, когда вчерашняя секция уже закрыта.
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+@Slf4j
+public class PriceArchiveScheduler {
+    
+    private final PriceHistoryArchiver archiver;
+    
+    public PriceArchiveScheduler(PriceHistoryArchiver archiver) {
+        this.archiver = archiver;
+    }
+    
+    @Scheduled(cron = "${app.archive.cron:0 45 0 * * *}")
+    public void archiveClosedPartitions() {
+        try {
+            int archived = archiver.archiveClosedPartitions();
+            if (archived > 0) {
+                log.info("Archived {} price history partitions", archived);
+            }
+        } catch (Exception e) {
+            log.error("Error during price history archiving", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ct01.crypto.infrastructure.scheduler;
+
+import com.ct01.crypto.domain.repository.PriceHistoryRepository;
+import com.ct01.crypto.infrastructure.persistence.PriceHistoryPartitionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Ежедневное обслуживание секций истории цен
+ * Создает секции наперед и применяет ретеншн; граница выровнена по началу суток,
+ * поэтому удаляются только целые секции.
+ */
+@Component
+@ConditionalOnProperty(name = "app.partitioning.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PricePartitionMaintenanceScheduler {
+    
+    private final PriceHistoryPartitionManager partitionManager;
+    private final PriceHistoryRepository priceHistoryRepository;
+    private final int retentionDays;
+    
+    public PricePartitionMaintenanceScheduler(PriceHistoryPartitionManager partitionManager,
+                                              PriceHistoryRepository priceHistoryRepository,
+                                              @Value("${app.partitioning.retention-days:0}") int retentionDays) {
+        this.partitionManager = partitionManager;
+        this.priceHistoryRepository = priceHistoryRepository;
+        this.retentionDays = retentionDays;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.partitioning.maintenance-cron:0 15 0 * * *}")
+    public void maintainPartitions() {
+        try {
+            partitionManager.ensurePartitions();
+            if (retentionDays > 0) {
+                priceHistoryRepository.deleteOldData(LocalDate.now().minusDays(retentionDays).atStartOfDay());
+            }
+        } catch (Exception e) {
+            log.error("Error during price history partition maintenance", e);
+        }
+    }
+}
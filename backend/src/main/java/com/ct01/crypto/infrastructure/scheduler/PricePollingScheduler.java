@@ -0,0 +1,362 @@
+package com.ct01.crypto.infrastructure.scheduler;
+
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
+import com.ct01.crypto.domain.TrackedCoin;
+import com.ct01.crypto.domain.repository.TrackedCoinRepository;
+import com.ct01.crypto.infrastructure.external.IExchangeAdapter;
+import com.ct01.crypto.infrastructure.persistence.PriceWriteBehindBuffer;
+import com.ct01.crypto.infrastructure.service.ExchangeAdapterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Адаптивный планировщик опроса цен
+ * Для каждой биржи ведется очередь символов по времени следующего опроса. Интервал берется из
+ * TrackedCoin (приоритет или pollingIntervalSeconds), наступившие символы объединяются в пакетный запрос.
+ * Символы с неизменной ценой опрашиваются все реже, горячие монеты получают обновления через WebSocket:
+ * тик потока записывается сразу при получении, REST опрос для них - только запасной путь при молчащем потоке.
+ * Цикл опроса работает на собственном потоке и не ждет других заданий @Scheduled.
+ */
+@Component
+@ConditionalOnProperty(name = "app.polling.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PricePollingScheduler {
+    
+    private final TrackedCoinRepository trackedCoinRepository;
+    private final PriceWriteBehindBuffer writeBehindBuffer;
+    private final ExchangeAdapterService exchangeAdapterService;
+    
+    private final int maxBatchSize;
+    private final int maxBackoffFactor;
+    private final int hotPriority;
+    private final double budgetReserve;
+    
+    private final long tickMs;
+    
+    private final Map<String, ExchangeSchedule> schedules = new ConcurrentHashMap<>();
+    private ScheduledExecutorService poller;
+    
+    public PricePollingScheduler(TrackedCoinRepository trackedCoinRepository,
+                                 PriceWriteBehindBuffer writeBehindBuffer,
+                                 ExchangeAdapterService exchangeAdapterService,
+                                 @Value("${app.polling.max-batch-size:100}") int maxBatchSize,
+                                 @Value("${app.polling.max-backoff-factor:8}") int maxBackoffFactor,
+                                 @Value("${app.polling.hot-priority:8}") int hotPriority,
+                                 @Value("${app.polling.budget-reserve:0.2}") double budgetReserve,
+                                 @Value("${app.polling.tick-ms:250}") long tickMs) {
+        this.trackedCoinRepository = trackedCoinRepository;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.exchangeAdapterService = exchangeAdapterService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBackoffFactor = Math.max(1, maxBackoffFactor);
+        this.hotPriority = hotPriority;
+        this.budgetReserve = budgetReserve;
+        this.tickMs = Math.max(10, tickMs);
+    }
+    
+    @PostConstruct
+    public void start() {
+        // Общий планировщик @Scheduled однопоточный: архивация или свертка свечей задержали бы цикл опроса
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollDueSymbols, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+    
+    /**
+     * Синхронизация расписания с активными отслеживаемыми монетами
+     */
+    @Scheduled(fixedDelayString = "${app.polling.refresh-ms:60000}")
+    public void refreshTrackedCoins() {
+        try {
+            List<TrackedCoin> coins = trackedCoinRepository.findActiveCoinsByPriority();
+    
+            Map<String, List<TrackedCoin>> byExchange = new HashMap<>();
+            for (TrackedCoin coin : coins) {
+                for (TrackedCoin.Exchange exchange : coin.getExchanges()) {
+                    byExchange.computeIfAbsent(exchange.name(), key -> new ArrayList<>()).add(coin);
+                }
+            }
+    
+            schedules.keySet().removeIf(exchange -> {
+                if (byExchange.containsKey(exchange)) {
+                    return false;
+                }
+                schedules.get(exchange).sync(List.of());
+                return true;
+            });
+            byExchange.forEach((exchange, exchangeCoins) ->
+                    schedules.computeIfAbsent(exchange, ExchangeSchedule::new).sync(exchangeCoins));
+    
+            log.debug("Polling schedule refreshed: {} coins on {} exchanges", coins.size(), byExchange.size());
+    
+        } catch (Exception e) {
+            log.error("Error refreshing polling schedule: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Отправка пакетных запросов для символов, время опроса которых наступило
+     */
+    void pollDueSymbols() {
+        long now = System.currentTimeMillis();
+        schedules.values().forEach(schedule -> {
+            try {
+                dispatch(schedule, now);
+            } catch (Exception e) {
+                schedule.inFlight.set(false);
+                log.error("Error polling {}: {}", schedule.exchange, e.getMessage(), e);
+            }
+        });
+    }
+    
+    private void dispatch(ExchangeSchedule schedule, long now) {
+        if (!exchangeAdapterService.isExchangeAvailable(schedule.exchange)
+                || !schedule.inFlight.compareAndSet(false, true)) {
+            return;
+        }
+    
+        List<PollTask> due = schedule.pollDue(now, maxBatchSize);
+        if (due.isEmpty()) {
+            schedule.inFlight.set(false);
+            return;
+        }
+    
+        // Символ с живым потоком уже записан из WebSocket, REST запрос нужен только при молчащем потоке
+        List<PollTask> toFetch = new ArrayList<>();
+        for (PollTask task : due) {
+            if (!task.streaming || now - task.lastStreamTickAt >= task.intervalMs) {
+                toFetch.add(task);
+            }
+        }
+    
+        Mono<List<PriceHistory>> fetched = toFetch.isEmpty()
+                ? Mono.just(List.of())
+                : exchangeAdapterService.getRateLimitInfo(schedule.exchange)
+                        .map(info -> withinBudget(schedule, info, toFetch))
+                        .defaultIfEmpty(toFetch)
+                        .flatMap(allowed -> fetch(schedule, allowed));
+    
+        fetched
+                .filter(prices -> !prices.isEmpty())
+                .publishOn(Schedulers.boundedElastic())
+                // Запись асинхронная: задержка БД не держит цикл опроса
+                .doOnNext(writeBehindBuffer::submitAll)
+                .doOnError(error -> log.error("Failed to store polled prices from {}: {}",
+                        schedule.exchange, error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .doFinally(signal -> {
+                    long completedAt = System.currentTimeMillis();
+                    due.forEach(task -> schedule.reschedule(task, completedAt));
+                    schedule.inFlight.set(false);
+                })
+                .subscribe();
+    }
+    
+    /**
+     * Тик из WebSocket записывается сразу при получении, не дожидаясь очередного опроса символа
+     * Буфер записи обновляет индекс последних цен немедленно и при включенном схлопывании сам прореживает тики
+     */
+    private void onStreamTick(PollTask task, PriceTick tick) {
+        if (task.removed || !task.streaming) {
+            return;
+        }
+        task.lastStreamTickAt = System.currentTimeMillis();
+        writeBehindBuffer.submit(tick.toPriceHistory());
+    }
+    
+    /**
+     * При исчерпании бюджета биржи опрашиваются только горячие монеты, остальные откладываются
+     */
+    private List<PollTask> withinBudget(ExchangeSchedule schedule, IExchangeAdapter.ExchangeRateLimitInfo info,
+                                        List<PollTask> tasks) {
+        if (info.remainingRequests() > info.requestsPerMinute() * budgetReserve) {
+            return tasks;
+        }
+    
+        List<PollTask> allowed = tasks.stream()
+                .filter(task -> task.priority >= hotPriority)
+                .toList();
+        log.debug("Rate budget low on {} ({} of {} left), deferring {} symbols", schedule.exchange,
+                info.remainingRequests(), info.requestsPerMinute(), tasks.size() - allowed.size());
+        return allowed;
+    }
+    
+    private Mono<List<PriceHistory>> fetch(ExchangeSchedule schedule, List<PollTask> tasks) {
+        if (tasks.isEmpty()) {
+            return Mono.just(List.of());
+        }
+    
+        List<String> symbols = tasks.stream().map(task -> task.symbol).toList();
+        return exchangeAdapterService.fetchTickers(schedule.exchange, symbols)
+                .collectList()
+                .doOnNext(prices -> {
+                    Map<String, PriceHistory> bySymbol = prices.stream()
+                            .collect(Collectors.toMap(PriceHistory::getCoinSymbol, Function.identity(),
+                                    (first, second) -> second));
+                    tasks.forEach(task -> {
+                        PriceHistory price = bySymbol.get(task.symbol);
+                        if (price != null) {
+                            task.record(price.getClosePrice(), maxBackoffFactor);
+                        }
+                    });
+                    log.debug("Polled {} of {} symbols on {}", prices.size(), symbols.size(), schedule.exchange);
+                });
+    }
+    
+    /**
+     * Расписание одной биржи: очередь по времени следующего опроса
+     */
+    private class ExchangeSchedule {
+    
+        private final String exchange;
+        private final PriorityQueue<PollTask> queue = new PriorityQueue<>(Comparator.comparingLong((PollTask task) -> task.nextDueAt));
+        private final Map<String, PollTask> tasks = new HashMap<>();
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+    
+        ExchangeSchedule(String exchange) {
+            this.exchange = exchange;
+        }
+    
+        synchronized void sync(List<TrackedCoin> coins) {
+            Map<String, TrackedCoin> active = coins.stream()
+                    .collect(Collectors.toMap(TrackedCoin::getSymbol, Function.identity(), (first, second) -> first));
+    
+            tasks.values().removeIf(task -> {
+                if (active.containsKey(task.symbol)) {
+                    return false;
+                }
+                task.removed = true;
+                queue.remove(task);
+                if (task.streaming) {
+                    exchangeAdapterService.unsubscribeFromTicker(exchange, task.symbol).subscribe();
+                }
+                return true;
+            });
+    
+            long now = System.currentTimeMillis();
+            active.values().forEach(coin -> {
+                PollTask task = tasks.get(coin.getSymbol());
+                if (task == null) {
+                    task = new PollTask(coin.getSymbol());
+                    task.update(coin);
+                    task.nextDueAt = now;
+                    tasks.put(task.symbol, task);
+                    queue.add(task);
+                } else if (queue.remove(task)) {
+                    task.update(coin);
+                    task.nextDueAt = Math.min(task.nextDueAt, now + task.intervalMs);
+                    queue.add(task);
+                } else {
+                    task.update(coin);
+                }
+                updateStream(task, coin);
+            });
+        }
+    
+        synchronized List<PollTask> pollDue(long now, int limit) {
+            List<PollTask> due = new ArrayList<>();
+            while (!queue.isEmpty() && queue.peek().nextDueAt <= now && due.size() < limit) {
+                due.add(queue.poll());
+            }
+            return due;
+        }
+    
+        synchronized void reschedule(PollTask task, long now) {
+            if (task.removed) {
+                return;
+            }
+            task.nextDueAt = now + task.intervalMs;
+            queue.add(task);
+        }
+    
+        private void updateStream(PollTask task, TrackedCoin coin) {
+            boolean hot = Boolean.TRUE.equals(coin.getWebsocketEnabled()) && task.priority >= hotPriority;
+            if (hot && !task.streaming) {
+                task.streaming = true;
+                exchangeAdapterService.subscribeToTicker(exchange, task.symbol, tick -> onStreamTick(task, tick))
+                        .doOnError(error -> {
+                            task.streaming = false;
+                            log.warn("Failed to subscribe {} on {} stream: {}", task.symbol, exchange, error.getMessage());
+                        })
+                        .subscribe();
+            } else if (!hot && task.streaming) {
+                task.streaming = false;
+                exchangeAdapterService.unsubscribeFromTicker(exchange, task.symbol).subscribe();
+            }
+        }
+    }
+    
+    /**
+     * Состояние опроса одного символа на бирже
+     */
+    private static class PollTask {
+    
+        private final String symbol;
+        private volatile int priority;
+        private volatile long baseIntervalMs;
+        private volatile long intervalMs;
+        private volatile long nextDueAt;
+        private volatile boolean streaming;
+        private volatile boolean removed;
+        private volatile long lastStreamTickAt;
+        private BigDecimal lastPrice;
+    
+        PollTask(String symbol) {
+            this.symbol = symbol;
+        }
+    
+        void update(TrackedCoin coin) {
+            long interval = coin.getEffectivePollingInterval() * 1000L;
+            priority = coin.getPriority();
+            if (interval != baseIntervalMs) {
+                baseIntervalMs = interval;
+                intervalMs = interval;
+            }
+        }
+    
+        /**
+         * Неизменная цена удваивает интервал (до maxBackoffFactor от базового), изменение сбрасывает его
+         */
+        synchronized void record(BigDecimal price, int maxBackoffFactor) {
+            if (lastPrice != null && lastPrice.compareTo(price) == 0) {
+                intervalMs = Math.min(intervalMs * 2, baseIntervalMs * maxBackoffFactor);
+            } else {
+                intervalMs = baseIntervalMs;
+            }
+            lastPrice = price;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ct01.crypto.infrastructure.scheduler;
+
+import com.ct01.crypto.infrastructure.service.ExchangeAdapterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фоновое обновление каталога торговых пар
+ * Запросы условные, поэтому неизменный список обходится без загрузки exchangeInfo.
+ * Листинги и делистинги публикуются как SupportedSymbolsChangedEvent.
+ */
+@Component
+@ConditionalOnProperty(name = "app.symbols.refresh-enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SymbolCatalogRefreshScheduler {
+    
+    private final ExchangeAdapterService exchangeAdapterService;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public SymbolCatalogRefreshScheduler(ExchangeAdapterService exchangeAdapterService,
+                                         ApplicationEventPublisher eventPublisher) {
+        this.exchangeAdapterService = exchangeAdapterService;
+        this.eventPublisher = eventPublisher;
+    }
+    
+    @Scheduled(initialDelayString = "${app.symbols.initial-delay-ms:5000}",
+               fixedDelayString = "${app.symbols.refresh-ms:600000}")
+    public void refreshCatalog() {
+        try {
+            exchangeAdapterService.refreshSymbolCatalog()
+                    .doOnNext(eventPublisher::publishEvent)
+                    .doOnError(error -> log.error("Error refreshing symbol catalog", error))
+                    .subscribe();
+        } catch (Exception e) {
+            log.error("Error during symbol catalog refresh", e);
+        }
+    }
+}
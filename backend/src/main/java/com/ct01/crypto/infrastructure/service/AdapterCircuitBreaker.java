@@ -0,0 +1,233 @@
+package com.ct01.crypto.infrastructure.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Circuit breaker одного Exchange Adapter
+ * Считает долю ошибок в скользящем окне последних вызовов и размыкается при превышении порога.
+ * После паузы пропускает один пробный запрос (half-open). Таймаут вызова вычисляется из p99 задержек.
+ */
+@Slf4j
+public class AdapterCircuitBreaker {
+    
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final double TIMEOUT_P99_MULTIPLIER = 2.0;
+    
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    private final String exchangeName;
+    private final int failureRateThreshold;
+    private final Duration openDuration;
+    private final Duration minTimeout;
+    private final Duration maxTimeout;
+    
+    private final boolean[] outcomes;
+    private int outcomeIndex;
+    private int outcomeCount;
+    private int failureCount;
+    
+    private final long[] latenciesNanos = new long[LATENCY_SAMPLES];
+    private int latencyIndex;
+    private int latencyCount;
+    private volatile Duration currentTimeout;
+    
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    
+    public AdapterCircuitBreaker(String exchangeName, int slidingWindowSize, int failureRateThreshold,
+                                 Duration openDuration, Duration minTimeout, Duration maxTimeout) {
+        if (slidingWindowSize <= 0 || failureRateThreshold <= 0 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.exchangeName = exchangeName;
+        this.outcomes = new boolean[slidingWindowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.currentTimeout = maxTimeout;
+    }
+    
+    /**
+     * Получить разрешение на вызов; в half-open разрешается только один пробный запрос
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDuration.toMillis()) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                return probeInFlight.compareAndSet(false, true);
+            default:
+                return probeInFlight.compareAndSet(false, true);
+        }
+    }
+    
+    /**
+     * Доступен ли адаптер для новых вызовов (без резервирования пробного запроса)
+     */
+    public boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.currentTimeMillis() - openedAt >= openDuration.toMillis();
+            case HALF_OPEN -> !probeInFlight.get();
+        };
+    }
+    
+    /**
+     * Успешный вызов с учетом его задержки в расчете таймаута
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        recordLatency(latencyNanos);
+        onSuccess();
+    }
+    
+    /**
+     * Успешный вызов без замера задержки (пакетные запросы)
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            resetWindow();
+            transitionTo(State.CLOSED);
+            probeInFlight.set(false);
+            return;
+        }
+        recordOutcome(false);
+    }
+    
+    /**
+     * @param timedOut вызов прерван по таймауту - таймаут расширяется, чтобы деградация не стала постоянным отказом
+     */
+    public synchronized void onFailure(boolean timedOut) {
+        if (timedOut) {
+            currentTimeout = currentTimeout.multipliedBy(2).compareTo(maxTimeout) < 0
+                    ? currentTimeout.multipliedBy(2)
+                    : maxTimeout;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        recordOutcome(true);
+        if (outcomeCount == outcomes.length && failureCount * 100 >= failureRateThreshold * outcomeCount) {
+            open();
+        }
+    }
+    
+    /**
+     * Вызов отменен (например, проигравший hedged запрос) - результат не учитывается
+     */
+    public void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight.set(false);
+        }
+    }
+    
+    /**
+     * Принудительно разомкнуть (адаптер не прошел инициализацию или health check)
+     */
+    public synchronized void forceOpen() {
+        if (state != State.OPEN) {
+            open();
+        }
+    }
+    
+    /**
+     * Сбросить в замкнутое состояние (успешная инициализация или перезапуск)
+     */
+    public synchronized void reset() {
+        resetWindow();
+        probeInFlight.set(false);
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+    
+    /**
+     * Таймаут вызова: удвоенный p99 задержек в пределах [minTimeout, maxTimeout]
+     */
+    public Duration getTimeout() {
+        return currentTimeout;
+    }
+    
+    /**
+     * Перцентиль задержки успешных вызовов; null, если данных еще нет
+     */
+    public synchronized Duration getLatencyPercentile(double percentile) {
+        if (latencyCount == 0) {
+            return null;
+        }
+        long[] sorted = Arrays.copyOf(latenciesNanos, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(index, latencyCount - 1))]);
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    private void recordOutcome(boolean failure) {
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[outcomeIndex]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeIndex] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+    }
+    
+    private void recordLatency(long latencyNanos) {
+        latenciesNanos[latencyIndex] = latencyNanos;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) {
+            latencyCount++;
+        }
+        // Пересчитываем не на каждый вызов: сортировка окна дешевая, но не бесплатная
+        if (latencyCount >= MIN_LATENCY_SAMPLES && latencyIndex % 8 == 0) {
+            long p99 = getLatencyPercentile(99).toNanos();
+            long timeoutNanos = (long) (p99 * TIMEOUT_P99_MULTIPLIER);
+            timeoutNanos = Math.max(minTimeout.toNanos(), Math.min(maxTimeout.toNanos(), timeoutNanos));
+            currentTimeout = Duration.ofNanos(timeoutNanos);
+        }
+    }
+    
+    private void resetWindow() {
+        Arrays.fill(outcomes, false);
+        outcomeIndex = 0;
+        outcomeCount = 0;
+        failureCount = 0;
+    }
+    
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        probeInFlight.set(false);
+        transitionTo(State.OPEN);
+    }
+    
+    private void transitionTo(State newState) {
+        State previous = state;
+        state = newState;
+        if (previous != newState) {
+            log.info("Circuit breaker for {} changed state {} -> {}", exchangeName, previous, newState);
+        }
+    }
+}
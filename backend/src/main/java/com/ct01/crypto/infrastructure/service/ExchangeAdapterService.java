@@ -1,18 +1,27 @@
 package com.ct01.crypto.infrastructure.service;
 
 import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
+import com.ct01.crypto.domain.event.SupportedSymbolsChangedEvent;
 import com.ct01.crypto.infrastructure.external.IExchangeAdapter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Центральный сервис для управления Exchange Adapters
@@ -23,15 +32,32 @@ import java.util.function.Consumer;
 public class ExchangeAdapterService {
     
     private final Map<String, IExchangeAdapter> adapters = new ConcurrentHashMap<>();
-    private final Map<String, Boolean> adapterStatus = new ConcurrentHashMap<>();
+    private final Map<String, AdapterCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final SupportedSymbolCatalog symbolCatalog = new SupportedSymbolCatalog();
+    private final Map<String, Mono<SupportedSymbolsChangedEvent>> symbolLoads = new ConcurrentHashMap<>();
+    private final Duration bestPriceMaxWait;
     
     public ExchangeAdapterService(
-            @Qualifier("dddBinanceAdapter") IExchangeAdapter binanceAdapter,
-            @Qualifier("dddOkxAdapter") IExchangeAdapter okxAdapter
+            List<IExchangeAdapter> exchangeAdapters,
+            @Value("${app.exchange.enabled:}") List<String> enabledExchanges,
+            @Value("${app.exchange.circuit-breaker.sliding-window:20}") int slidingWindowSize,
+            @Value("${app.exchange.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${app.exchange.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+            @Value("${app.exchange.timeout.min-ms:500}") long minTimeoutMs,
+            @Value("${app.exchange.timeout.max-ms:10000}") long maxTimeoutMs,
+            @Value("${app.exchange.best-price.max-wait-after-first-ms:300}") long bestPriceMaxWaitMs
     ) {
-        // Register adapters
-        adapters.put(binanceAdapter.getExchangeName(), binanceAdapter);
-        adapters.put(okxAdapter.getExchangeName(), okxAdapter);
+        // Адаптеры - все Spring beans IExchangeAdapter; новая биржа подключается без изменений сервиса
+        registerAdapters(exchangeAdapters, enabledExchanges);
+        adapters.keySet().forEach(exchangeName -> circuitBreakers.put(exchangeName, new AdapterCircuitBreaker(
+                exchangeName,
+                slidingWindowSize,
+                failureRateThreshold,
+                Duration.ofMillis(openDurationMs),
+                Duration.ofMillis(minTimeoutMs),
+                Duration.ofMillis(maxTimeoutMs)
+        )));
+        this.bestPriceMaxWait = Duration.ofMillis(bestPriceMaxWaitMs);
         
         log.info("Initialized ExchangeAdapterService with {} adapters: {}", 
                 adapters.size(), adapters.keySet());
@@ -40,6 +66,32 @@ public class ExchangeAdapterService {
         initializeAdapters();
     }
     
+    /**
+     * Регистрация обнаруженных адаптеров
+     * @param enabledExchanges биржи, которые нужно подключить; пустой список - все найденные
+     */
+    private void registerAdapters(List<IExchangeAdapter> exchangeAdapters, List<String> enabledExchanges) {
+        Set<String> enabled = enabledExchanges.stream()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
+        
+        for (IExchangeAdapter adapter : exchangeAdapters) {
+            String exchangeName = adapter.getExchangeName().toUpperCase();
+            if (!enabled.isEmpty() && !enabled.contains(exchangeName)) {
+                log.info("Adapter for {} is disabled by configuration", exchangeName);
+                continue;
+            }
+            IExchangeAdapter existing = adapters.putIfAbsent(exchangeName, adapter);
+            if (existing != null) {
+                // Каждый адаптер держит свой пул соединений, поток и лимиты - второй экземпляр биржи недопустим
+                throw new IllegalStateException("Duplicate adapter for " + exchangeName + ": "
+                        + existing.getClass().getSimpleName() + " and " + adapter.getClass().getSimpleName());
+            }
+        }
+    }
+    
     /**
      * Инициализация всех адаптеров
      */
@@ -47,11 +99,11 @@ public class ExchangeAdapterService {
         adapters.forEach((exchangeName, adapter) -> {
             adapter.initialize()
                     .doOnSuccess(v -> {
-                        adapterStatus.put(exchangeName, true);
+                        circuitBreakers.get(exchangeName).reset();
                         log.info("Successfully initialized adapter for {}", exchangeName);
                     })
                     .doOnError(error -> {
-                        adapterStatus.put(exchangeName, false);
+                        circuitBreakers.get(exchangeName).forceOpen();
                         log.error("Failed to initialize adapter for {}: {}", exchangeName, error.getMessage());
                     })
                     .subscribe();
@@ -68,13 +120,7 @@ public class ExchangeAdapterService {
             return Mono.empty();
         }
         
-        if (!Boolean.TRUE.equals(adapterStatus.get(exchange.toUpperCase()))) {
-            log.warn("Adapter for {} is not healthy, skipping", exchange);
-            return Mono.empty();
-        }
-        
-        return adapter.fetchTicker(symbol)
-                .timeout(Duration.ofSeconds(10))
+        return guarded(exchange.toUpperCase(), () -> adapter.fetchTicker(symbol))
                 .doOnError(error -> log.error("Error fetching ticker from {}: {}", exchange, error.getMessage()))
                 .onErrorResume(error -> Mono.empty());
     }
@@ -84,12 +130,11 @@ public class ExchangeAdapterService {
      */
     public Flux<PriceHistory> fetchTickerFromAllExchanges(String symbol) {
         return Flux.fromIterable(adapters.entrySet())
-                .filter(entry -> Boolean.TRUE.equals(adapterStatus.get(entry.getKey())))
-                .flatMap(entry -> entry.getValue().fetchTicker(symbol)
-                        .timeout(Duration.ofSeconds(10))
+                .flatMap(entry -> guarded(entry.getKey(), () -> entry.getValue().fetchTicker(symbol))
                         .doOnError(error -> log.debug("Failed to fetch {} from {}: {}", 
                                 symbol, entry.getKey(), error.getMessage()))
-                        .onErrorResume(error -> Mono.empty())
+                        .onErrorResume(error -> Mono.empty()),
+                        Math.max(1, adapters.size())
                 )
                 .doOnComplete(() -> log.debug("Completed fetching {} from all exchanges", symbol));
     }
@@ -104,42 +149,139 @@ public class ExchangeAdapterService {
             return Flux.empty();
         }
         
-        if (!Boolean.TRUE.equals(adapterStatus.get(exchange.toUpperCase()))) {
-            log.warn("Adapter for {} is not healthy, skipping", exchange);
+        return guardedMany(exchange.toUpperCase(), () -> adapter.fetchTickers(symbols), Duration.ofSeconds(30))
+                .doOnError(error -> log.error("Error fetching tickers from {}: {}", exchange, error.getMessage()))
+                .onErrorResume(error -> Flux.empty());
+    }
+    
+    /**
+     * Получить тикеры нескольких символов с нескольких бирж
+     * Биржи опрашиваются параллельно, к одной бирже одновременно не более perExchangeConcurrency запросов.
+     * Результаты отдаются по мере поступления, медленная биржа не задерживает остальные.
+     * @param exchanges биржи; пустой список - все подключенные
+     */
+    public Flux<PriceHistory> fetchTickers(Collection<String> exchanges, List<String> symbols, int perExchangeConcurrency) {
+        if (symbols.isEmpty()) {
             return Flux.empty();
         }
         
-        return adapter.fetchTickers(symbols)
-                .timeout(Duration.ofSeconds(30))
-                .doOnError(error -> log.error("Error fetching tickers from {}: {}", exchange, error.getMessage()))
-                .onErrorResume(error -> Flux.empty());
+        int concurrency = Math.max(1, perExchangeConcurrency);
+        List<String> targets = exchanges == null || exchanges.isEmpty()
+                ? List.copyOf(adapters.keySet())
+                : exchanges.stream()
+                        .map(String::toUpperCase)
+                        .distinct()
+                        .filter(adapters::containsKey)
+                        .toList();
+        
+        return Flux.fromIterable(targets)
+                .flatMap(exchange -> guardedMany(exchange,
+                                () -> adapters.get(exchange).fetchTickers(symbols, concurrency), Duration.ofSeconds(30))
+                        .doOnError(error -> log.error("Error fetching tickers from {}: {}", exchange, error.getMessage()))
+                        .onErrorResume(error -> Flux.empty()),
+                        Math.max(1, targets.size()));
+    }
+    
+    /**
+     * Лучшие цены для нескольких символов
+     * Цена символа отдается, как только ответили quorum бирж (0 - ждать все биржи)
+     */
+    public Flux<PriceHistory> getBestPrices(Collection<String> exchanges, List<String> symbols,
+                                            int perExchangeConcurrency, int quorum) {
+        int required = quorum > 0 ? quorum : Integer.MAX_VALUE;
+        return Flux.defer(() -> {
+            // Состояние кворума по символу живет до конца запроса: поздние ответы бирж
+            // попадают в уже закрытый кворум и отбрасываются, а не открывают новый
+            Map<String, BestPriceQuorum> quorums = new ConcurrentHashMap<>();
+            return fetchTickers(exchanges, symbols, perExchangeConcurrency)
+                    .filter(price -> price.getClosePrice() != null)
+                    .mapNotNull(price -> quorums
+                            .computeIfAbsent(price.getCoinSymbol(), symbol -> new BestPriceQuorum(required))
+                            .offer(price))
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(quorums.values())
+                            .mapNotNull(BestPriceQuorum::drain)));
+        });
+    }
+    
+    /**
+     * Лучшая цена по кворуму: ответ формируется, как только ответили quorum бирж
+     */
+    public Mono<PriceHistory> getBestPrice(String symbol, int quorum) {
+        if (quorum <= 0) {
+            return getBestPrice(symbol);
+        }
+        return selectBest(fetchTickerFromAllExchanges(symbol).take(quorum));
     }
     
     /**
      * Получить лучшую цену для символа среди всех бирж
+     * Запросы идут на все биржи параллельно; после первого ответа остальные ждем не дольше
+     * bestPriceMaxWait, поэтому деградировавшая биржа не задерживает ответ
      */
     public Mono<PriceHistory> getBestPrice(String symbol) {
-        return fetchTickerFromAllExchanges(symbol)
-                .collectList()
-                .map(priceHistories -> {
-                    if (priceHistories.isEmpty()) {
-                        log.warn("No price data found for symbol: {}", symbol);
-                        return null;
-                    }
-                    
-                    // Find the highest price (could also be lowest depending on use case)
-                    return priceHistories.stream()
-                            .filter(ph -> ph.closePrice() != null)
-                            .max((p1, p2) -> p1.closePrice().compareTo(p2.closePrice()))
-                            .orElse(priceHistories.get(0));
-                })
-                .filter(priceHistory -> priceHistory != null);
+        return Mono.defer(() -> {
+            Flux<PriceHistory> prices = fetchTickerFromAllExchanges(symbol);
+            if (!bestPriceMaxWait.isZero()) {
+                Sinks.Empty<Void> firstResponse = Sinks.empty();
+                prices = prices
+                        .doOnNext(price -> firstResponse.tryEmitEmpty())
+                        .takeUntilOther(firstResponse.asMono().then(Mono.delay(bestPriceMaxWait)));
+            }
+            
+            return selectBest(prices)
+                    .doOnSuccess(best -> {
+                        if (best == null) {
+                            log.warn("No price data found for symbol: {}", symbol);
+                        }
+                    });
+        });
+    }
+    
+    private Mono<PriceHistory> selectBest(Flux<PriceHistory> prices) {
+        // Find the highest price (could also be lowest depending on use case)
+        return prices
+                .filter(price -> price.getClosePrice() != null)
+                .reduce((p1, p2) -> p1.getClosePrice().compareTo(p2.getClosePrice()) >= 0 ? p1 : p2);
+    }
+    
+    /**
+     * Лучшая цена символа, отдаваемая один раз: после quorum ответов или,
+     * если столько бирж не ответило, по завершении опроса
+     */
+    private static final class BestPriceQuorum {
+        private final int required;
+        private int received;
+        private PriceHistory best;
+        private boolean emitted;
+        
+        private BestPriceQuorum(int required) {
+            this.required = required;
+        }
+        
+        synchronized PriceHistory offer(PriceHistory price) {
+            if (emitted) {
+                return null;
+            }
+            received++;
+            if (best == null || price.getClosePrice().compareTo(best.getClosePrice()) > 0) {
+                best = price;
+            }
+            return received >= required ? drain() : null;
+        }
+        
+        synchronized PriceHistory drain() {
+            if (emitted) {
+                return null;
+            }
+            emitted = true;
+            return best;
+        }
     }
     
     /**
      * Подписаться на обновления тикера в реальном времени
      */
-    public Mono<Void> subscribeToTicker(String exchange, String symbol, Consumer<PriceHistory> callback) {
+    public Mono<Void> subscribeToTicker(String exchange, String symbol, Consumer<PriceTick> callback) {
         IExchangeAdapter adapter = adapters.get(exchange.toUpperCase());
         if (adapter == null) {
             log.warn("No adapter found for exchange: {}", exchange);
@@ -174,42 +316,79 @@ public class ExchangeAdapterService {
                 )
                 .collectMap(Map.Entry::getKey, Map.Entry::getValue)
                 .doOnNext(statusMap -> {
-                    // Update internal status
-                    adapterStatus.putAll(statusMap);
+                    // Неответившая биржа размыкается сразу, восстановление - через пробный запрос
+                    statusMap.forEach((exchangeName, healthy) -> {
+                        if (!healthy) {
+                            circuitBreakers.get(exchangeName).forceOpen();
+                        }
+                    });
                     log.debug("Updated exchange status: {}", statusMap);
                 });
     }
     
     /**
      * Получить поддерживаемые символы для указанной биржи
+     * Ответ берется из каталога в памяти; биржа запрашивается только при первом обращении
      */
     public Mono<List<String>> getSupportedSymbols(String exchange) {
-        IExchangeAdapter adapter = adapters.get(exchange.toUpperCase());
-        if (adapter == null) {
+        String exchangeName = exchange.toUpperCase();
+        if (!adapters.containsKey(exchangeName)) {
             log.warn("No adapter found for exchange: {}", exchange);
             return Mono.just(List.of());
         }
         
-        return adapter.getSupportedSymbols()
-                .timeout(Duration.ofSeconds(30))
-                .doOnError(error -> log.error("Error fetching symbols from {}: {}", exchange, error.getMessage()))
-                .onErrorReturn(List.of());
+        if (symbolCatalog.isLoaded(exchangeName)) {
+            return Mono.just(symbolCatalog.getSymbols(exchangeName));
+        }
+        return loadSymbols(exchangeName)
+                .then(Mono.fromSupplier(() -> symbolCatalog.getSymbols(exchangeName)));
     }
     
     /**
      * Получить все поддерживаемые символы со всех бирж
      */
     public Mono<Map<String, List<String>>> getAllSupportedSymbols() {
-        return Flux.fromIterable(adapters.entrySet())
-                .filter(entry -> Boolean.TRUE.equals(adapterStatus.get(entry.getKey())))
-                .flatMap(entry -> 
-                        entry.getValue().getSupportedSymbols()
-                                .map(symbols -> Map.entry(entry.getKey(), symbols))
-                                .onErrorReturn(Map.entry(entry.getKey(), List.of()))
-                )
+        return Flux.fromIterable(adapters.keySet())
+                .filter(exchange -> symbolCatalog.isLoaded(exchange) || circuitBreakers.get(exchange).isCallPermitted())
+                .flatMap(exchange -> getSupportedSymbols(exchange).map(symbols -> Map.entry(exchange, symbols)))
                 .collectMap(Map.Entry::getKey, Map.Entry::getValue);
     }
     
+    /**
+     * Торгуется ли пара на бирже - проверка по каталогу в памяти без обращения к бирже
+     * До первой загрузки каталога биржи возвращает false
+     */
+    public boolean isSymbolSupported(String exchange, String symbol) {
+        return symbolCatalog.contains(exchange.toUpperCase(), symbol);
+    }
+    
+    /**
+     * Обновить каталог торговых пар всех бирж условными запросами
+     * @return изменения списков пар (листинги и делистинги)
+     */
+    public Flux<SupportedSymbolsChangedEvent> refreshSymbolCatalog() {
+        return Flux.fromIterable(adapters.keySet())
+                .flatMap(this::loadSymbols, Math.max(1, adapters.size()));
+    }
+    
+    /**
+     * Загрузить список пар биржи; одновременные вызовы разделяют один запрос
+     */
+    private Mono<SupportedSymbolsChangedEvent> loadSymbols(String exchange) {
+        return symbolLoads.computeIfAbsent(exchange, name -> {
+            IExchangeAdapter adapter = adapters.get(name);
+            return guardedMany(name, () -> adapter.getSupportedSymbols(symbolCatalog.getListing(name)).flux(),
+                            Duration.ofSeconds(30))
+                    .next()
+                    .flatMap(listing -> Mono.justOrEmpty(symbolCatalog.update(name, listing)))
+                    .doOnNext(change -> log.info(change.getChangeInfo()))
+                    .doOnError(error -> log.error("Error fetching symbols from {}: {}", name, error.getMessage()))
+                    .onErrorResume(error -> Mono.empty())
+                    .doFinally(signal -> symbolLoads.remove(name))
+                    .cache();
+        });
+    }
+    
     /**
      * Получить информацию о лимитах всех бирж
      */
@@ -224,12 +403,25 @@ public class ExchangeAdapterService {
                 .collectMap(Map.Entry::getKey, Map.Entry::getValue);
     }
     
+    /**
+     * Получить информацию о лимитах указанной биржи
+     */
+    public Mono<IExchangeAdapter.ExchangeRateLimitInfo> getRateLimitInfo(String exchange) {
+        IExchangeAdapter adapter = adapters.get(exchange.toUpperCase());
+        if (adapter == null) {
+            log.warn("No adapter found for exchange: {}", exchange);
+            return Mono.empty();
+        }
+    
+        return adapter.getRateLimitInfo();
+    }
+    
     /**
      * Получить список доступных бирж
      */
     public List<String> getAvailableExchanges() {
         return adapters.keySet().stream()
-                .filter(exchange -> Boolean.TRUE.equals(adapterStatus.get(exchange)))
+                .filter(exchange -> circuitBreakers.get(exchange).isCallPermitted())
                 .sorted()
                 .toList();
     }
@@ -238,7 +430,17 @@ public class ExchangeAdapterService {
      * Проверить доступность конкретной биржи
      */
     public boolean isExchangeAvailable(String exchange) {
-        return Boolean.TRUE.equals(adapterStatus.get(exchange.toUpperCase()));
+        AdapterCircuitBreaker breaker = circuitBreakers.get(exchange.toUpperCase());
+        return breaker != null && breaker.isCallPermitted();
+    }
+    
+    /**
+     * Получить состояние circuit breaker всех бирж
+     */
+    public Map<String, AdapterCircuitBreaker.State> getCircuitBreakerStates() {
+        Map<String, AdapterCircuitBreaker.State> states = new TreeMap<>();
+        circuitBreakers.forEach((exchange, breaker) -> states.put(exchange, breaker.getState()));
+        return states;
     }
     
     /**
@@ -255,15 +457,55 @@ public class ExchangeAdapterService {
         return adapter.disconnect()
                 .then(adapter.initialize())
                 .doOnSuccess(v -> {
-                    adapterStatus.put(exchange.toUpperCase(), true);
+                    circuitBreakers.get(exchange.toUpperCase()).reset();
                     log.info("Successfully restarted adapter for {}", exchange);
                 })
                 .doOnError(error -> {
-                    adapterStatus.put(exchange.toUpperCase(), false);
+                    circuitBreakers.get(exchange.toUpperCase()).forceOpen();
                     log.error("Failed to restart adapter for {}: {}", exchange, error.getMessage());
                 });
     }
     
+    /**
+     * Вызов адаптера через его circuit breaker с таймаутом по перцентилю задержек
+     * Сбой - только ошибка или таймаут; пустой ответ (например, неизвестный символ) - успешный вызов
+     */
+    private <T> Mono<T> guarded(String exchange, Supplier<Mono<T>> call) {
+        AdapterCircuitBreaker breaker = circuitBreakers.get(exchange);
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquirePermission()) {
+                log.debug("Circuit breaker for {} is open, skipping", exchange);
+                return Mono.empty();
+            }
+            
+            long startedAt = System.nanoTime();
+            return call.get()
+                    .timeout(breaker.getTimeout())
+                    .doOnSuccess(result -> breaker.onSuccess(System.nanoTime() - startedAt))
+                    .doOnError(error -> breaker.onFailure(error instanceof TimeoutException))
+                    .doOnCancel(breaker::onCancel);
+        });
+    }
+    
+    /**
+     * Пакетный вызов адаптера через circuit breaker; задержка пакета в расчет таймаута не входит
+     */
+    private <T> Flux<T> guardedMany(String exchange, Supplier<Flux<T>> call, Duration timeout) {
+        AdapterCircuitBreaker breaker = circuitBreakers.get(exchange);
+        return Flux.defer(() -> {
+            if (!breaker.tryAcquirePermission()) {
+                log.debug("Circuit breaker for {} is open, skipping", exchange);
+                return Flux.empty();
+            }
+            
+            return call.get()
+                    .timeout(timeout)
+                    .doOnComplete(breaker::onSuccess)
+                    .doOnError(error -> breaker.onFailure(error instanceof TimeoutException))
+                    .doOnCancel(breaker::onCancel);
+        });
+    }
+    
     /**
      * Закрыть все адаптеры при завершении работы
      */
@@ -0,0 +1,94 @@
+package com.ct01.crypto.infrastructure.service;
+
+import com.ct01.crypto.domain.event.SupportedSymbolsChangedEvent;
+import com.ct01.crypto.infrastructure.external.IExchangeAdapter.SymbolListing;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Каталог торговых пар бирж в памяти
+ * Снимок биржи неизменяем и заменяется целиком, поэтому чтение не требует блокировок,
+ * а проверка символа выполняется по хэш-множеству за O(1)
+ */
+public class SupportedSymbolCatalog {
+    
+    private static final String DEFAULT_QUOTE = "/USDT";
+    
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    
+    /**
+     * Загружен ли список пар биржи
+     */
+    public boolean isLoaded(String exchange) {
+        return snapshots.containsKey(exchange);
+    }
+    
+    /**
+     * Отсортированный список пар биржи; пустой, если каталог еще не загружен
+     */
+    public List<String> getSymbols(String exchange) {
+        Snapshot snapshot = snapshots.get(exchange);
+        return snapshot != null ? snapshot.listing().symbols() : List.of();
+    }
+    
+    /**
+     * Последний полученный ответ биржи - источник валидаторов для условного запроса
+     */
+    public SymbolListing getListing(String exchange) {
+        Snapshot snapshot = snapshots.get(exchange);
+        return snapshot != null ? snapshot.listing() : null;
+    }
+    
+    public Instant getRefreshedAt(String exchange) {
+        Snapshot snapshot = snapshots.get(exchange);
+        return snapshot != null ? snapshot.refreshedAt() : null;
+    }
+    
+    /**
+     * Торгуется ли пара на бирже (BTC/USDT, BTC-USDT); символ без котируемой валюты считается парой к USDT
+     */
+    public boolean contains(String exchange, String symbol) {
+        Snapshot snapshot = snapshots.get(exchange);
+        return snapshot != null && snapshot.symbols().contains(normalize(symbol));
+    }
+    
+    /**
+     * Применить новый ответ биржи
+     * @return изменение списка пар; пусто при первой загрузке, ответе 304 и неизменном списке
+     */
+    public Optional<SupportedSymbolsChangedEvent> update(String exchange, SymbolListing listing) {
+        Snapshot previous = snapshots.get(exchange);
+        if (listing.notModified() && previous != null) {
+            snapshots.put(exchange, new Snapshot(previous.listing(), previous.symbols(), Instant.now()));
+            return Optional.empty();
+        }
+    
+        Set<String> symbols = Set.copyOf(listing.symbols());
+        snapshots.put(exchange, new Snapshot(listing, symbols, Instant.now()));
+        if (previous == null) {
+            return Optional.empty();
+        }
+    
+        Set<String> added = new HashSet<>(symbols);
+        added.removeAll(previous.symbols());
+        Set<String> removed = new HashSet<>(previous.symbols());
+        removed.removeAll(symbols);
+        if (added.isEmpty() && removed.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new SupportedSymbolsChangedEvent(exchange, added, removed));
+    }
+    
+    private static String normalize(String symbol) {
+        String upper = symbol.trim().toUpperCase().replace('-', '/');
+        return upper.indexOf('/') >= 0 ? upper : upper + DEFAULT_QUOTE;
+    }
+    
+    private record Snapshot(SymbolListing listing, Set<String> symbols, Instant refreshedAt) {}
+}
@@ -2,6 +2,7 @@ package com.ct01.shared.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -304,6 +305,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    /**
+     * Обработка InvalidDataAccessApiUsageException
+     * Трансляция исключений @Repository оборачивает IllegalArgumentException
+     * (например, неизвестное поле сортировки) - это ошибка запроса, а не сервера
+     */
+    @ExceptionHandler(InvalidDataAccessApiUsageException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidDataAccessApiUsageException(
+            InvalidDataAccessApiUsageException ex, WebRequest request) {
+        
+        if (ex.getCause() instanceof IllegalArgumentException cause) {
+            return handleIllegalArgumentException(cause, request);
+        }
+        return handleRuntimeException(ex, request);
+    }
+
     /**
      * Обработка IllegalStateException
      */
@@ -1,155 +0,0 @@
--- ==============================================
--- CT.01 Crypto Module Performance Indexes
--- Version: 3.001
--- Description: Critical indexes for crypto API performance optimization
--- ==============================================
-
--- Index for coin symbol lookups (most frequent operation)
-CREATE INDEX IF NOT EXISTS idx_coin_symbol_case_insensitive 
-    ON coin (LOWER(symbol));
-
--- Index for coin status filtering (active coins queries)
-CREATE INDEX IF NOT EXISTS idx_coin_status_active 
-    ON coin (status) 
-    WHERE status = 'ACTIVE';
-
--- Index for coin market rank ordering (top coins queries)
-CREATE INDEX IF NOT EXISTS idx_coin_market_rank 
-    ON coin (market_rank ASC) 
-    WHERE market_rank IS NOT NULL;
-
--- Composite index for coin priority + status
-CREATE INDEX IF NOT EXISTS idx_coin_priority_status 
-    ON coin (priority DESC, status, is_active);
-
--- Index for coin categories (category-based filtering)
-CREATE INDEX IF NOT EXISTS idx_coin_categories_gin 
-    ON coin USING GIN (categories);
-
--- Index for last sync date (maintenance queries)
-CREATE INDEX IF NOT EXISTS idx_coin_last_sync 
-    ON coin (last_sync_at DESC);
-
--- ==============================================
--- PRICE HISTORY PERFORMANCE INDEXES
--- ==============================================
-
--- Primary composite index for price lookups
-CREATE INDEX IF NOT EXISTS idx_price_history_coin_exchange_timestamp 
-    ON price_history (coin_id, exchange_id, timestamp DESC);
-
--- Index for coin + timestamp range queries (without exchange filter)
-CREATE INDEX IF NOT EXISTS idx_price_history_coin_timestamp 
-    ON price_history (coin_id, timestamp DESC);
-
--- Index for exchange-specific queries
-CREATE INDEX IF NOT EXISTS idx_price_history_exchange_timestamp 
-    ON price_history (exchange_id, timestamp DESC);
-
--- Index for price type filtering (ticker vs candle data)
-CREATE INDEX IF NOT EXISTS idx_price_history_price_type 
-    ON price_history (price_type, timestamp DESC);
-
--- Index for fresh data queries (last 24h, last hour, etc.)
-CREATE INDEX IF NOT EXISTS idx_price_history_recent 
-    ON price_history (timestamp DESC) 
-    WHERE timestamp > NOW() - INTERVAL '24 hours';
-
--- Composite index for OHLC data queries
-CREATE INDEX IF NOT EXISTS idx_price_history_ohlc 
-    ON price_history (coin_id, exchange_id, timestamp DESC) 
-    WHERE open_price IS NOT NULL AND high_price IS NOT NULL 
-      AND low_price IS NOT NULL AND close_price IS NOT NULL;
-
--- Index for volume-based queries
-CREATE INDEX IF NOT EXISTS idx_price_history_volume_usd 
-    ON price_history (volume_usd DESC NULLS LAST, timestamp DESC) 
-    WHERE volume_usd IS NOT NULL;
-
--- ==============================================
--- TRACKED COIN PERFORMANCE INDEXES  
--- ==============================================
-
--- Index for tracked coin symbol lookups
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_symbol_case_insensitive 
-    ON tracked_coin (LOWER(symbol));
-
--- Index for active tracked coins
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_active_priority 
-    ON tracked_coin (is_active, priority DESC) 
-    WHERE is_active = true;
-
--- Index for exchange-based filtering
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_exchanges_gin 
-    ON tracked_coin USING GIN (exchanges);
-
--- Index for quote currencies
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_quote_currencies_gin 
-    ON tracked_coin USING GIN (quote_currencies);
-
--- Index for websocket enabled coins
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_websocket 
-    ON tracked_coin (websocket_enabled, is_active) 
-    WHERE websocket_enabled = true AND is_active = true;
-
--- Index for custom polling intervals
-CREATE INDEX IF NOT EXISTS idx_tracked_coin_polling_interval 
-    ON tracked_coin (polling_interval_seconds) 
-    WHERE polling_interval_seconds IS NOT NULL;
-
--- ==============================================
--- USER PREFERENCE INDEXES (for user-specific queries)
--- ==============================================
-
--- Index for user + coin preference lookups
-CREATE INDEX IF NOT EXISTS idx_user_coin_preference_user_coin 
-    ON user_coin_preference (user_id, coin_id);
-
--- Index for favorite coins
-CREATE INDEX IF NOT EXISTS idx_user_coin_preference_favorites 
-    ON user_coin_preference (user_id, is_favorite) 
-    WHERE is_favorite = true;
-
--- Index for notification-enabled coins
-CREATE INDEX IF NOT EXISTS idx_user_coin_preference_notifications 
-    ON user_coin_preference (user_id, notifications_enabled) 
-    WHERE notifications_enabled = true;
-
--- Index for active alerts
-CREATE INDEX IF NOT EXISTS idx_user_coin_preference_alerts 
-    ON user_coin_preference (user_id, has_alerts) 
-    WHERE has_alerts = true;
-
--- ==============================================
--- OPTIMIZATION COMMENTS
--- ==============================================
-
-/*
-PERFORMANCE OPTIMIZATION NOTES:
-
-1. COIN TABLE INDEXES:
-   - idx_coin_symbol_case_insensitive: Optimizes symbol lookups (most frequent)
-   - idx_coin_status_active: Partial index for active coins only
-   - idx_coin_market_rank: Supports top-ranked coin queries
-   - idx_coin_priority_status: Composite for priority + status filtering
-
-2. PRICE_HISTORY TABLE INDEXES:
-   - idx_price_history_coin_exchange_timestamp: Primary composite for 90% of queries
-   - idx_price_history_recent: Partial index for last 24h data only
-   - idx_price_history_ohlc: Partial index for complete OHLC data only
-
-3. TRACKED_COIN TABLE INDEXES:
-   - idx_tracked_coin_active_priority: Critical for dashboard queries
-   - GIN indexes for array fields (exchanges, quote_currencies)
-
-4. INDEX MAINTENANCE:
-   - All indexes use NULLS LAST for proper sorting
-   - Partial indexes reduce storage and improve performance
-   - GIN indexes for array operations
-
-EXPECTED PERFORMANCE GAINS:
-- Coin symbol lookups: 95% improvement
-- Price history queries: 80% improvement  
-- Active coins filtering: 90% improvement
-- Market rank ordering: 85% improvement
-*/ 
\ No newline at end of file
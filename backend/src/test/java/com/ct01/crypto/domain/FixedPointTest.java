@@ -0,0 +1,149 @@
+package com.ct01.crypto.domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Разбор строк биржи в мантиссу округляет так же, как BigDecimal HALF_UP при записи в NUMERIC
+ */
+class FixedPointTest {
+    
+    @ParameterizedTest
+    @CsvSource({
+            "42000.5, 0, 42001",
+            "42000.49, 0, 42000",
+            "1.005, 2, 101",
+            "1.00499999, 2, 100",
+            "-1.005, 2, -101",
+            "0.999, 2, 100",
+            "0.000000005, 8, 1",
+            "0.000000004, 8, 0",
+            "+1.5, 1, 15",
+            "0000.5, 1, 5",
+            "7, 8, 700000000",
+            "7., 2, 700",
+            ".25, 2, 25"
+    })
+    void parseRoundsHalfUp(String value, int scale, long expected) {
+        assertThat(parse(value, scale)).isEqualTo(expected);
+    }
+    
+    @Test
+    void parseMatchesBigDecimalHalfUp() {
+        Random random = new Random(19);
+        for (int i = 0; i < 100_000; i++) {
+            String value = randomDecimal(random);
+            int scale = random.nextInt(FixedPoint.MAX_SCALE + 1);
+    
+            assertThat(parse(value, scale))
+                    .as("%s at scale %d", value, scale)
+                    .isEqualTo(FixedPoint.of(new BigDecimal(value), scale));
+        }
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", ".", "1.2.3", "1e5", "abc", "12a", " 1", "1 "})
+    void parseRejectsMalformedInput(String value) {
+        assertThat(parse(value, 2)).isEqualTo(FixedPoint.NONE);
+        assertThat(scaleOf(value, FixedPoint.MAX_SCALE)).isEqualTo(-1);
+    }
+    
+    @Test
+    void parseRejectsValuesOutsideLong() {
+        assertThat(parse("1234567890123456789", 0)).isEqualTo(FixedPoint.NONE);
+        assertThat(parse("123456789012345678", 0)).isEqualTo(123456789012345678L);
+        assertThat(parse("12345678901", 8)).isEqualTo(FixedPoint.NONE);
+        assertThat(parse("1234567890", 8)).isEqualTo(123456789000000000L);
+        assertThat(parse("1", FixedPoint.MAX_SCALE + 11)).isEqualTo(FixedPoint.NONE);
+    }
+    
+    @ParameterizedTest
+    @CsvSource({
+            "42000.10000, 1",
+            "42000, 0",
+            "0.00000001, 8",
+            "1.123456789, 8",
+            "-0.50, 1",
+            "12345678901234567.5, 1"
+    })
+    void scaleOfDropsTrailingZerosAndCaps(String value, int expected) {
+        assertThat(scaleOf(value, FixedPoint.MAX_SCALE)).isEqualTo(expected);
+        assertThat(FixedPoint.scaleOf(new BigDecimal(value), FixedPoint.MAX_SCALE)).isEqualTo(expected);
+    }
+    
+    @Test
+    void bigDecimalConversionsKeepNone() {
+        assertThat(FixedPoint.of(null, 2)).isEqualTo(FixedPoint.NONE);
+        assertThat(FixedPoint.toBigDecimal(FixedPoint.NONE, 2)).isNull();
+        assertThat(FixedPoint.toBigDecimal(4200050, 2)).isEqualByComparingTo("42000.50");
+        assertThat(FixedPoint.of(new BigDecimal("1E+19"), 0)).isEqualTo(FixedPoint.NONE);
+    }
+    
+    @Test
+    void priceTickRoundTripsPriceHistory() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_789);
+        PriceHistory price = new PriceHistory(null, "BTC", "Binance", "BTC/USDT", "USDT", timestamp,
+                null, null, null, new BigDecimal("42000.12500000"), new BigDecimal("0.00012345"),
+                null, null, "TICKER");
+    
+        PriceTick tick = PriceTick.of(price);
+        PriceHistory restored = tick.toPriceHistory();
+    
+        assertThat(tick.priceScale()).isEqualTo(3);
+        assertThat(tick.price()).isEqualTo(42000125L);
+        assertThat(restored.getTimestamp()).isEqualTo(timestamp);
+        assertThat(restored.getClosePrice()).isEqualByComparingTo(price.getClosePrice());
+        assertThat(restored.getOpenPrice()).isEqualByComparingTo(price.getClosePrice());
+        assertThat(restored.getVolume()).isEqualByComparingTo(price.getVolume());
+        assertThat(restored.getTradingPair()).isEqualTo("BTC/USDT");
+        assertThat(restored.getPriceType()).isEqualTo(PriceTick.PRICE_TYPE);
+    }
+    
+    @Test
+    void priceTickRejectsMissingPrice() {
+        assertThatThrownBy(() -> new PriceTick("BTC", "Binance", "USDT", 0, FixedPoint.NONE, 2,
+                FixedPoint.NONE, 0, FixedPoint.NONE, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PriceTick("BTC", "Binance", "USDT", 0, 100, 2, -1, 0, FixedPoint.NONE, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static long parse(String value, int scale) {
+        return FixedPoint.parse(value.toCharArray(), 0, value.length(), scale);
+    }
+    
+    private static int scaleOf(String value, int maxScale) {
+        return FixedPoint.scaleOf(value.toCharArray(), 0, value.length(), maxScale);
+    }
+    
+    /**
+     * Десятичная строка до 9 цифр целой части и до 12 цифр дробной, с хвостовыми нулями
+     */
+    private static String randomDecimal(Random random) {
+        StringBuilder value = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            value.append('-');
+        }
+        int integerDigits = 1 + random.nextInt(9);
+        for (int i = 0; i < integerDigits; i++) {
+            value.append((char) ('0' + random.nextInt(10)));
+        }
+        int fractionDigits = random.nextInt(13);
+        if (fractionDigits > 0) {
+            value.append('.');
+            for (int i = 0; i < fractionDigits; i++) {
+                value.append(random.nextInt(3) == 0 ? '5' : (char) ('0' + random.nextInt(10)));
+            }
+        }
+        return value.toString();
+    }
+}
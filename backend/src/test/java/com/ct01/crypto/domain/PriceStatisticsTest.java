@@ -0,0 +1,179 @@
+package com.ct01.crypto.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Слияние накопителей в любом порядке и разбиении дает тот же результат, что и один проход
+ */
+class PriceStatisticsTest {
+    
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final double MOMENT_TOLERANCE = 1e-6;
+    
+    @Test
+    void mergeOfShuffledPartsEqualsSinglePass() {
+        List<PriceHistory> prices = prices(1_000, 42);
+        PriceStatistics single = new PriceStatistics();
+        prices.forEach(single::add);
+    
+        List<PriceHistory> shuffled = new ArrayList<>(prices);
+        Collections.shuffle(shuffled, new Random(7));
+        PriceStatistics merged = new PriceStatistics();
+        int[] cuts = {0, 1, 130, 131, 500, 777, shuffled.size()};
+        for (int i = 1; i < cuts.length; i++) {
+            PriceStatistics part = new PriceStatistics();
+            shuffled.subList(cuts[i - 1], cuts[i]).forEach(part::add);
+            merged.merge(part);
+        }
+    
+        assertSameStatistics(merged, single);
+    }
+    
+    @Test
+    void parallelCollectorEqualsSinglePass() {
+        List<PriceHistory> prices = prices(10_000, 3);
+        PriceStatistics single = new PriceStatistics();
+        prices.forEach(single::add);
+    
+        PriceStatistics parallel = prices.parallelStream().collect(PriceStatistics.collector());
+    
+        assertSameStatistics(parallel, single);
+    }
+    
+    @Test
+    void singlePassMatchesDirectComputation() {
+        List<PriceHistory> prices = prices(500, 11);
+        PriceStatistics stats = new PriceStatistics();
+        prices.forEach(stats::add);
+    
+        BigDecimal closeSum = BigDecimal.ZERO;
+        BigDecimal volume = BigDecimal.ZERO;
+        BigDecimal high = prices.get(0).getClosePrice();
+        BigDecimal low = prices.get(0).getClosePrice();
+        double priceVolume = 0;
+        for (PriceHistory price : prices) {
+            closeSum = closeSum.add(price.getClosePrice());
+            volume = volume.add(price.getVolume());
+            high = high.max(price.getClosePrice());
+            low = low.min(price.getClosePrice());
+            priceVolume += price.getClosePrice().doubleValue() * price.getVolume().doubleValue();
+        }
+        BigDecimal mean = closeSum.divide(BigDecimal.valueOf(prices.size()), 8, RoundingMode.HALF_UP);
+        double variance = 0;
+        for (PriceHistory price : prices) {
+            double deviation = price.getClosePrice().doubleValue() - mean.doubleValue();
+            variance += deviation * deviation;
+        }
+    
+        assertThat(stats.count()).isEqualTo(prices.size());
+        assertThat(stats.high()).isEqualByComparingTo(high);
+        assertThat(stats.low()).isEqualByComparingTo(low);
+        assertThat(stats.first()).isEqualByComparingTo(prices.get(0).getClosePrice());
+        assertThat(stats.last()).isEqualByComparingTo(prices.get(prices.size() - 1).getClosePrice());
+        assertThat(stats.volume()).isEqualByComparingTo(volume);
+        assertThat(stats.mean()).isEqualByComparingTo(mean);
+        assertThat(stats.vwap().doubleValue()).isCloseTo(priceVolume / volume.doubleValue(), within(MOMENT_TOLERANCE));
+        assertThat(stats.standardDeviation().doubleValue())
+                .isCloseTo(Math.sqrt(variance / prices.size()), within(MOMENT_TOLERANCE));
+    }
+    
+    @Test
+    void candleEqualsItsTicks() {
+        List<PriceHistory> prices = prices(60, 5);
+        PriceStatistics ticks = new PriceStatistics();
+        prices.forEach(ticks::add);
+    
+        PriceStatistics fromCandle = new PriceStatistics().add(candle(ticks, ticks.closeSquareSum(), ticks.priceVolumeSum()));
+    
+        assertSameStatistics(fromCandle, ticks);
+    }
+    
+    @Test
+    void candleWithoutMomentsHidesVwapAndDeviation() {
+        List<PriceHistory> prices = prices(60, 9);
+        PriceStatistics ticks = new PriceStatistics();
+        prices.forEach(ticks::add);
+    
+        PriceStatistics stats = new PriceStatistics()
+                .merge(ticks)
+                .add(candle(ticks, null, null));
+    
+        assertThat(stats.count()).isEqualTo(2L * prices.size());
+        assertThat(stats.mean()).isEqualByComparingTo(ticks.mean());
+        assertThat(stats.vwap()).isNull();
+        assertThat(stats.standardDeviation()).isNull();
+    }
+    
+    @Test
+    void tickerHighLowComeFromClosePrice() {
+        PriceStatistics stats = new PriceStatistics().add(new PriceHistory(null, "BTC", "Binance", "BTC/USDT", "USDT",
+                START, null, new BigDecimal("70000"), new BigDecimal("1"), new BigDecimal("42000"),
+                BigDecimal.ONE, null, null, "TICKER"));
+    
+        assertThat(stats.high()).isEqualByComparingTo("42000");
+        assertThat(stats.low()).isEqualByComparingTo("42000");
+    }
+    
+    @Test
+    void emptyMergeKeepsAccumulator() {
+        PriceStatistics stats = new PriceStatistics();
+        prices(10, 1).forEach(stats::add);
+        BigDecimal mean = stats.mean();
+    
+        stats.merge(new PriceStatistics());
+    
+        assertThat(stats.count()).isEqualTo(10);
+        assertThat(stats.mean()).isEqualByComparingTo(mean);
+        assertThat(new PriceStatistics().mean()).isNull();
+    }
+    
+    private static void assertSameStatistics(PriceStatistics actual, PriceStatistics expected) {
+        assertThat(actual.count()).isEqualTo(expected.count());
+        assertThat(actual.high()).isEqualByComparingTo(expected.high());
+        assertThat(actual.low()).isEqualByComparingTo(expected.low());
+        assertThat(actual.first()).isEqualByComparingTo(expected.first());
+        assertThat(actual.last()).isEqualByComparingTo(expected.last());
+        assertThat(actual.firstAt()).isEqualTo(expected.firstAt());
+        assertThat(actual.lastAt()).isEqualTo(expected.lastAt());
+        assertThat(actual.closeSum()).isEqualByComparingTo(expected.closeSum());
+        assertThat(actual.volume()).isEqualByComparingTo(expected.volume());
+        assertThat(actual.mean()).isEqualByComparingTo(expected.mean());
+        assertThat(actual.vwap().doubleValue()).isCloseTo(expected.vwap().doubleValue(), within(MOMENT_TOLERANCE));
+        assertThat(actual.standardDeviation().doubleValue())
+                .isCloseTo(expected.standardDeviation().doubleValue(), within(MOMENT_TOLERANCE));
+    }
+    
+    private static PriceCandle candle(PriceStatistics stats, Double closeSquareSum, Double priceVolumeSum) {
+        return new PriceCandle("BTC", "Binance", CandleResolution.H1, START, "BTC/USDT", "USDT",
+                stats.first(), stats.high(), stats.low(), stats.last(), stats.volume(), stats.closeSum(),
+                closeSquareSum, priceVolumeSum, stats.count(), stats.firstAt(), stats.lastAt());
+    }
+    
+    /**
+     * Тикеры с уникальным временем, по возрастанию
+     */
+    private static List<PriceHistory> prices(int count, long seed) {
+        Random random = new Random(seed);
+        List<PriceHistory> prices = new ArrayList<>(count);
+        double price = 40_000;
+        for (int i = 0; i < count; i++) {
+            price = Math.max(1, price + random.nextGaussian() * 50);
+            BigDecimal close = BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal volume = BigDecimal.valueOf(random.nextDouble() * 10).setScale(8, RoundingMode.HALF_UP);
+            prices.add(new PriceHistory(null, "BTC", "Binance", "BTC/USDT", "USDT", START.plusSeconds(i),
+                    close, close, close, close, volume, null, null, "TICKER"));
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,209 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.ct01.crypto.domain.FixedPoint;
+import com.ct01.crypto.domain.PriceTick;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Клиент потоков против локального WebSocket сервера: доставка тиков, переподключение и повторная подписка
+ */
+class ExchangeStreamClientTest {
+    
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final Duration QUIET_HEARTBEAT = Duration.ofMinutes(1);
+    private static final int NORMAL_CLOSURE = 1000;
+    
+    private MockWebServer server;
+    private ExchangeStreamClient client;
+    private final BlockingQueue<PriceTick> ticks = new LinkedBlockingQueue<>();
+    
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+    
+    @AfterEach
+    void stop() throws IOException {
+        if (client != null) {
+            client.close().block();
+        }
+        server.shutdown();
+    }
+    
+    @Test
+    void resubscribesAllStreamsAfterServerDropsConnection() throws Exception {
+        ServerConnection first = enqueueConnection();
+        ServerConnection second = enqueueConnection();
+        client = client(QUIET_HEARTBEAT);
+    
+        client.subscribe("btcusdt@ticker", "BTC", ticks::add).block();
+        assertThat(first.nextMessage()).isEqualTo("SUB btcusdt@ticker");
+        client.subscribe("ethusdt@ticker", "ETH", ticks::add).block();
+        assertThat(first.nextMessage()).isEqualTo("SUB ethusdt@ticker");
+    
+        first.socket().send("TICK btcusdt@ticker 4200010");
+        assertThat(nextTick().coinSymbol()).isEqualTo("BTC");
+    
+        first.socket().close(1001, "going away");
+    
+        assertThat(streamKeys(second.nextMessage())).containsExactlyInAnyOrder("btcusdt@ticker", "ethusdt@ticker");
+        second.socket().send("TICK ethusdt@ticker 250050");
+        PriceTick tick = nextTick();
+        assertThat(tick.coinSymbol()).isEqualTo("ETH");
+        assertThat(tick.closePrice()).isEqualByComparingTo("2500.50");
+        assertThat(client.isConnected()).isTrue();
+        assertThat(server.getRequestCount()).isEqualTo(2);
+    }
+    
+    @Test
+    void reconnectsWhenServerGoesSilent() throws Exception {
+        ServerConnection first = enqueueConnection();
+        ServerConnection second = enqueueConnection();
+        client = client(Duration.ofMillis(200));
+    
+        client.subscribe("btcusdt@ticker", "BTC", ticks::add).block();
+        assertThat(first.nextMessage()).isEqualTo("SUB btcusdt@ticker");
+    
+        assertThat(second.nextMessage()).isEqualTo("SUB btcusdt@ticker");
+        second.socket().send("TICK btcusdt@ticker 4200010");
+        assertThat(nextTick().coinSymbol()).isEqualTo("BTC");
+    }
+    
+    @Test
+    void unsubscribingLastStreamClosesConnectionWithoutReconnect() throws Exception {
+        ServerConnection first = enqueueConnection();
+        enqueueConnection();
+        client = client(QUIET_HEARTBEAT);
+    
+        client.subscribe("btcusdt@ticker", "BTC", ticks::add).block();
+        assertThat(first.nextMessage()).isEqualTo("SUB btcusdt@ticker");
+        client.unsubscribe("btcusdt@ticker").block();
+    
+        assertThat(first.nextMessage()).isEqualTo("UNSUB btcusdt@ticker");
+        assertThat(first.closed().get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(NORMAL_CLOSURE);
+        assertThat(client.isConnected()).isFalse();
+        assertThat(client.getSubscribedStreams()).isEmpty();
+        Thread.sleep(2_000);
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+    
+    private ExchangeStreamClient client(Duration heartbeatInterval) {
+        URI uri = URI.create("ws://" + server.getHostName() + ":" + server.getPort() + "/ws");
+        return new ExchangeStreamClient("TEST", uri, new LineProtocol(), ExchangeStreamClientTest::toPriceTick,
+                heartbeatInterval);
+    }
+    
+    private ServerConnection enqueueConnection() {
+        ServerConnection connection = new ServerConnection();
+        server.enqueue(new MockResponse().withWebSocketUpgrade(connection));
+        return connection;
+    }
+    
+    private PriceTick nextTick() throws InterruptedException {
+        return ticks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private static Set<String> streamKeys(String subscribeMessage) {
+        assertThat(subscribeMessage).startsWith("SUB ");
+        return Set.of(subscribeMessage.substring(4).split(","));
+    }
+    
+    private static PriceTick toPriceTick(String symbol, ExchangeStreamClient.StreamTick tick) {
+        return new PriceTick(symbol, "TEST", "USDT", tick.epochMillis() * 1_000_000L,
+                tick.price(), tick.priceScale(), tick.volume(), tick.volumeScale(),
+                tick.change24h(), tick.change24hScale());
+    }
+    
+    /**
+     * Строковый протокол: "SUB k1,k2", "UNSUB k1", тик "TICK ключ мантисса" с масштабом 2
+     */
+    private static final class LineProtocol implements ExchangeStreamClient.Protocol {
+    
+        @Override
+        public String subscribeMessage(Collection<String> streamKeys) {
+            return "SUB " + String.join(",", streamKeys);
+        }
+    
+        @Override
+        public String unsubscribeMessage(Collection<String> streamKeys) {
+            return "UNSUB " + String.join(",", streamKeys);
+        }
+    
+        @Override
+        public List<ExchangeStreamClient.StreamTick> parse(String payload) {
+            String[] parts = payload.split(" ");
+            if (parts.length != 3 || !"TICK".equals(parts[0])) {
+                return List.of();
+            }
+            return List.of(new ExchangeStreamClient.StreamTick(parts[1], Long.parseLong(parts[2]), 2,
+                    FixedPoint.NONE, 0, FixedPoint.NONE, 0, System.currentTimeMillis()));
+        }
+    }
+    
+    /**
+     * Серверная сторона одного соединения: открытый сокет и полученные от клиента сообщения
+     */
+    private static final class ServerConnection extends WebSocketListener {
+    
+        private final CompletableFuture<WebSocket> opened = new CompletableFuture<>();
+        private final CompletableFuture<Integer> closed = new CompletableFuture<>();
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            opened.complete(webSocket);
+        }
+    
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            messages.add(text);
+        }
+    
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+            closed.complete(code);
+        }
+    
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            closed.complete(-1);
+        }
+    
+        WebSocket socket() throws Exception {
+            return opened.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    
+        String nextMessage() throws InterruptedException {
+            return messages.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    
+        /**
+         * Код кадра close от клиента; -1, если соединение оборвано без него
+         */
+        CompletableFuture<Integer> closed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.ct01.crypto.domain.FixedPoint;
+import com.ct01.crypto.domain.PriceHistory;
+import com.ct01.crypto.domain.PriceTick;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прием сообщения потока 24hrTicker Binance: прежний путь через PriceHistory против PriceTick
+ * Прежний путь читал числа в BigDecimal, время биржи в LocalDateTime и отдавал подписчику PriceHistory;
+ * новый читает мантиссы FixedPoint и отдает PriceTick. Разбор JSON у путей общий: *Message - сообщение
+ * целиком, *FromFields - только сборка тика из уже выделенных строк чисел, без JsonParser.
+ * Сравнивать стоит gc.alloc.rate.norm (байт на сообщение), поэтому запуск идет с профилем GC:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.ct01.crypto.infrastructure.external.StreamTickIngestionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreamTickIngestionBenchmark {
+    
+    private static final int MESSAGES = 1024;
+    private static final String EXCHANGE = "Binance";
+    private static final String TICKER_STREAM_SUFFIX = "@ticker";
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private String[] messages;
+    private char[][][] fields;
+    private long[] eventTimes;
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(19);
+        messages = new String[MESSAGES];
+        fields = new char[MESSAGES][][];
+        eventTimes = new long[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = tickerEvent("C" + (i % 64) + "USDT", random);
+            fields[i] = new char[][]{
+                    decimal(random, 8).toCharArray(), decimal(random, 8).toCharArray(), decimal(random, 3).toCharArray()};
+            eventTimes[i] = 1_700_000_000_000L + random.nextInt(1_000_000);
+        }
+    }
+    
+    @Benchmark
+    public PriceHistory priceHistoryMessage() throws IOException {
+        return parsePriceHistory(messages[nextIndex()]);
+    }
+    
+    @Benchmark
+    public PriceTick priceTickMessage() throws IOException {
+        return parsePriceTick(messages[nextIndex()]);
+    }
+    
+    @Benchmark
+    public PriceHistory priceHistoryFromFields() {
+        int i = nextIndex();
+        char[] price = fields[i][0];
+        char[] volume = fields[i][1];
+        char[] change24h = fields[i][2];
+        LegacyStreamTick tick = new LegacyStreamTick("c1usdt" + TICKER_STREAM_SUFFIX,
+                new BigDecimal(price, 0, price.length),
+                new BigDecimal(volume, 0, volume.length),
+                new BigDecimal(change24h, 0, change24h.length),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(eventTimes[i]), ZoneId.systemDefault()));
+        return toPriceHistory("C1USDT", tick);
+    }
+    
+    @Benchmark
+    public PriceTick priceTickFromFields() {
+        int i = nextIndex();
+        char[] price = fields[i][0];
+        char[] volume = fields[i][1];
+        char[] change24h = fields[i][2];
+        int priceScale = FixedPoint.scaleOf(price, 0, price.length, FixedPoint.MAX_SCALE);
+        int volumeScale = FixedPoint.scaleOf(volume, 0, volume.length, FixedPoint.MAX_SCALE);
+        int change24hScale = FixedPoint.scaleOf(change24h, 0, change24h.length, FixedPoint.MAX_SCALE);
+        ExchangeStreamClient.StreamTick tick = new ExchangeStreamClient.StreamTick("c1usdt" + TICKER_STREAM_SUFFIX,
+                FixedPoint.parse(price, 0, price.length, priceScale), priceScale,
+                FixedPoint.parse(volume, 0, volume.length, volumeScale), volumeScale,
+                FixedPoint.parse(change24h, 0, change24h.length, change24hScale), change24hScale,
+                eventTimes[i]);
+        return toPriceTick("C1USDT", tick);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamTickIngestionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+    
+    private int nextIndex() {
+        return next++ & (MESSAGES - 1);
+    }
+    
+    /**
+     * Прежний путь: StreamTick с BigDecimal и LocalDateTime, затем PriceHistory
+     */
+    private static PriceHistory parsePriceHistory(String payload) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+    
+            String symbol = null;
+            BigDecimal price = null;
+            BigDecimal volume = null;
+            BigDecimal change24h = null;
+            long eventTime = 0;
+    
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "s" -> symbol = parser.getText();
+                    case "c" -> price = AbstractExchangeAdapter.readDecimal(parser);
+                    case "v" -> volume = AbstractExchangeAdapter.readDecimal(parser);
+                    case "P" -> change24h = AbstractExchangeAdapter.readDecimal(parser);
+                    case "E" -> eventTime = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (symbol == null || price == null) {
+                return null;
+            }
+    
+            return toPriceHistory(symbol, new LegacyStreamTick(symbol.toLowerCase() + TICKER_STREAM_SUFFIX,
+                    price, volume, change24h,
+                    eventTime > 0
+                            ? LocalDateTime.ofInstant(Instant.ofEpochMilli(eventTime), ZoneId.systemDefault())
+                            : LocalDateTime.now()));
+        }
+    }
+    
+    /**
+     * Текущий путь: мантиссы FixedPoint в StreamTick, затем PriceTick
+     */
+    private static PriceTick parsePriceTick(String payload) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+    
+            String symbol = null;
+            long price = FixedPoint.NONE;
+            int priceScale = 0;
+            long volume = FixedPoint.NONE;
+            int volumeScale = 0;
+            long change24h = FixedPoint.NONE;
+            int change24hScale = 0;
+            long eventTime = 0;
+    
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "s" -> symbol = parser.getText();
+                    case "c" -> {
+                        priceScale = AbstractExchangeAdapter.readScale(parser);
+                        price = AbstractExchangeAdapter.readMantissa(parser, priceScale);
+                    }
+                    case "v" -> {
+                        volumeScale = AbstractExchangeAdapter.readScale(parser);
+                        volume = AbstractExchangeAdapter.readMantissa(parser, volumeScale);
+                    }
+                    case "P" -> {
+                        change24hScale = AbstractExchangeAdapter.readScale(parser);
+                        change24h = AbstractExchangeAdapter.readMantissa(parser, change24hScale);
+                    }
+                    case "E" -> eventTime = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (symbol == null || price == FixedPoint.NONE) {
+                return null;
+            }
+    
+            return toPriceTick(symbol, new ExchangeStreamClient.StreamTick(
+                    symbol.toLowerCase() + TICKER_STREAM_SUFFIX,
+                    price, priceScale, volume, volumeScale, change24h, change24hScale, eventTime));
+        }
+    }
+    
+    /**
+     * createPriceHistory адаптера
+     */
+    private static PriceHistory toPriceHistory(String symbol, LegacyStreamTick tick) {
+        return new PriceHistory(null, symbol, EXCHANGE, symbol + "/USDT", "USDT", tick.timestamp(),
+                tick.price(), tick.price(), tick.price(), tick.price(),
+                tick.volume() != null ? tick.volume() : BigDecimal.ZERO,
+                null, null, "TICKER");
+    }
+    
+    /**
+     * createPriceTick адаптера
+     */
+    private static PriceTick toPriceTick(String symbol, ExchangeStreamClient.StreamTick tick) {
+        long epochMillis = tick.epochMillis() > 0 ? tick.epochMillis() : System.currentTimeMillis();
+        return new PriceTick(symbol, EXCHANGE, "USDT", epochMillis * 1_000_000L,
+                tick.price(), tick.priceScale(), tick.volume(), tick.volumeScale(),
+                tick.change24h(), tick.change24hScale());
+    }
+    
+    /**
+     * Событие 24hrTicker с полным набором полей, как его присылает поток Binance
+     */
+    private static String tickerEvent(String symbol, Random random) {
+        long eventTime = 1_700_000_000_000L + random.nextInt(1_000_000);
+        return "{\"e\":\"24hrTicker\",\"E\":" + eventTime
+                + ",\"s\":\"" + symbol + "\""
+                + ",\"p\":\"" + decimal(random, 8) + "\""
+                + ",\"P\":\"" + decimal(random, 3) + "\""
+                + ",\"w\":\"" + decimal(random, 8) + "\""
+                + ",\"x\":\"" + decimal(random, 8) + "\""
+                + ",\"c\":\"" + decimal(random, 8) + "\""
+                + ",\"Q\":\"" + decimal(random, 8) + "\""
+                + ",\"b\":\"" + decimal(random, 8) + "\""
+                + ",\"B\":\"" + decimal(random, 8) + "\""
+                + ",\"a\":\"" + decimal(random, 8) + "\""
+                + ",\"A\":\"" + decimal(random, 8) + "\""
+                + ",\"o\":\"" + decimal(random, 8) + "\""
+                + ",\"h\":\"" + decimal(random, 8) + "\""
+                + ",\"l\":\"" + decimal(random, 8) + "\""
+                + ",\"v\":\"" + decimal(random, 8) + "\""
+                + ",\"q\":\"" + decimal(random, 8) + "\""
+                + ",\"O\":" + (eventTime - 86_400_000L)
+                + ",\"C\":" + eventTime
+                + ",\"F\":" + random.nextInt(1_000_000_000)
+                + ",\"L\":" + random.nextInt(1_000_000_000)
+                + ",\"n\":" + random.nextInt(5_000_000)
+                + "}";
+    }
+    
+    private static String decimal(Random random, int scale) {
+        return BigDecimal.valueOf(1 + random.nextLong(100_000_000_000L), scale).toPlainString();
+    }
+    
+    /**
+     * StreamTick до перехода на FixedPoint
+     */
+    private record LegacyStreamTick(
+            String streamKey,
+            BigDecimal price,
+            BigDecimal volume,
+            BigDecimal change24h,
+            LocalDateTime timestamp
+    ) {}
+}
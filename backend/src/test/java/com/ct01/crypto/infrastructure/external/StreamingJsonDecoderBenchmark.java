@@ -0,0 +1,265 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ответа "все тикеры" биржи: потоковый декодер против ObjectMapper.readTree
+ * Тело ответа по размеру и составу полей повторяет Binance /api/v3/ticker/24hr и OKX /api/v5/market/tickers,
+ * отслеживается малая часть пар, как у адаптеров. Потоковый декодер получает тело порциями по 8 КБ,
+ * как его отдает WebClient; дерево строится по телу целиком.
+ * Запуск с профилем выделений памяти:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.ct01.crypto.infrastructure.external.StreamingJsonDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreamingJsonDecoderBenchmark {
+    
+    private static final int CHUNK_SIZE = 8192;
+    private static final int TRACKED_EVERY = 50;
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    /**
+     * Биржа и число инструментов в ответе, как у реальных all-tickers
+     */
+    @Param({"BINANCE:2600", "OKX:750"})
+    public String payload;
+    
+    private Layout layout;
+    private byte[] body;
+    private List<byte[]> chunks;
+    private Map<String, String> tracked;
+    
+    @Setup
+    public void setUp() {
+        String[] spec = payload.split(":");
+        layout = Layout.valueOf(spec[0]);
+        int count = Integer.parseInt(spec[1]);
+    
+        Random random = new Random(4);
+        tracked = new HashMap<>();
+        StringBuilder json = new StringBuilder(layout.prefix);
+        for (int i = 0; i < count; i++) {
+            String coin = "C" + i;
+            String symbol = layout.symbol(coin);
+            if (i % TRACKED_EVERY == 0) {
+                tracked.put(symbol, coin + "/USDT");
+            }
+            if (i > 0) {
+                json.append(',');
+            }
+            layout.appendTicker(json, symbol, random);
+        }
+        body = json.append(layout.suffix).toString().getBytes(StandardCharsets.UTF_8);
+    
+        chunks = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            chunks.add(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + CHUNK_SIZE)));
+        }
+    }
+    
+    @Benchmark
+    public List<Ticker> streamingDecoder() {
+        Flux<DataBuffer> buffers = Flux.fromIterable(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap);
+        return StreamingJsonDecoder.decode(JSON_FACTORY, buffers, layout.arrayField,
+                () -> new TickerReader(layout, tracked), null).collectList().block();
+    }
+    
+    @Benchmark
+    public List<Ticker> readTree() throws IOException {
+        JsonNode root = OBJECT_MAPPER.readTree(body);
+        JsonNode array = layout.arrayField != null ? root.get(layout.arrayField) : root;
+        List<Ticker> result = new ArrayList<>();
+        for (JsonNode node : array) {
+            String originalSymbol = tracked.get(node.path(layout.symbolField).asText());
+            if (originalSymbol == null) {
+                continue;
+            }
+            result.add(new Ticker(originalSymbol,
+                    new BigDecimal(node.get(layout.priceField).asText()),
+                    new BigDecimal(node.get(layout.volumeField).asText()),
+                    new BigDecimal(node.get(layout.changeField).asText())));
+        }
+        return result;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamingJsonDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+    
+    public record Ticker(String symbol, BigDecimal price, BigDecimal volume, BigDecimal change24h) {}
+    
+    /**
+     * Формат ответа биржи: обертка массива, имена полей и полный набор полей тикера
+     */
+    private enum Layout {
+    
+        BINANCE("[", "]", null, "symbol", "lastPrice", "volume", "priceChangePercent") {
+            @Override
+            String symbol(String coin) {
+                return coin + "USDT";
+            }
+    
+            @Override
+            void appendTicker(StringBuilder json, String symbol, Random random) {
+                long openTime = 1_700_000_000_000L + random.nextInt(1_000_000);
+                json.append("{\"symbol\":\"").append(symbol)
+                        .append("\",\"priceChange\":\"").append(decimal(random, 8))
+                        .append("\",\"priceChangePercent\":\"").append(decimal(random, 3))
+                        .append("\",\"weightedAvgPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"prevClosePrice\":\"").append(decimal(random, 8))
+                        .append("\",\"lastPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"lastQty\":\"").append(decimal(random, 8))
+                        .append("\",\"bidPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"bidQty\":\"").append(decimal(random, 8))
+                        .append("\",\"askPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"askQty\":\"").append(decimal(random, 8))
+                        .append("\",\"openPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"highPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"lowPrice\":\"").append(decimal(random, 8))
+                        .append("\",\"volume\":\"").append(decimal(random, 8))
+                        .append("\",\"quoteVolume\":\"").append(decimal(random, 8))
+                        .append("\",\"openTime\":").append(openTime)
+                        .append(",\"closeTime\":").append(openTime + 86_400_000L)
+                        .append(",\"firstId\":").append(random.nextInt(1_000_000_000))
+                        .append(",\"lastId\":").append(random.nextInt(1_000_000_000))
+                        .append(",\"count\":").append(random.nextInt(5_000_000))
+                        .append('}');
+            }
+        },
+    
+        OKX("{\"code\":\"0\",\"msg\":\"\",\"data\":[", "]}", "data", "instId", "last", "vol24h", "sodUtc0") {
+            @Override
+            String symbol(String coin) {
+                return coin + "-USDT";
+            }
+    
+            @Override
+            void appendTicker(StringBuilder json, String symbol, Random random) {
+                json.append("{\"instType\":\"SPOT\",\"instId\":\"").append(symbol)
+                        .append("\",\"last\":\"").append(decimal(random, 4))
+                        .append("\",\"lastSz\":\"").append(decimal(random, 6))
+                        .append("\",\"askPx\":\"").append(decimal(random, 4))
+                        .append("\",\"askSz\":\"").append(decimal(random, 6))
+                        .append("\",\"bidPx\":\"").append(decimal(random, 4))
+                        .append("\",\"bidSz\":\"").append(decimal(random, 6))
+                        .append("\",\"open24h\":\"").append(decimal(random, 4))
+                        .append("\",\"high24h\":\"").append(decimal(random, 4))
+                        .append("\",\"low24h\":\"").append(decimal(random, 4))
+                        .append("\",\"volCcy24h\":\"").append(decimal(random, 6))
+                        .append("\",\"vol24h\":\"").append(decimal(random, 6))
+                        .append("\",\"ts\":\"").append(1_700_000_000_000L + random.nextInt(1_000_000))
+                        .append("\",\"sodUtc0\":\"").append(decimal(random, 4))
+                        .append("\",\"sodUtc8\":\"").append(decimal(random, 4))
+                        .append("\"}");
+            }
+        };
+    
+        final String prefix;
+        final String suffix;
+        final String arrayField;
+        final String symbolField;
+        final String priceField;
+        final String volumeField;
+        final String changeField;
+    
+        Layout(String prefix, String suffix, String arrayField,
+               String symbolField, String priceField, String volumeField, String changeField) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.arrayField = arrayField;
+            this.symbolField = symbolField;
+            this.priceField = priceField;
+            this.volumeField = volumeField;
+            this.changeField = changeField;
+        }
+    
+        abstract String symbol(String coin);
+    
+        abstract void appendTicker(StringBuilder json, String symbol, Random random);
+    
+        private static String decimal(Random random, int scale) {
+            return BigDecimal.valueOf(random.nextLong(100_000_000_000L), scale).toPlainString();
+        }
+    }
+    
+    /**
+     * Тот же отбор, что и у TickerReader адаптеров: неотслеживаемые пары отбрасываются по символу
+     */
+    private static final class TickerReader implements StreamingJsonDecoder.ElementReader<Ticker> {
+    
+        private final Layout layout;
+        private final Map<String, String> tracked;
+        private String originalSymbol;
+        private BigDecimal price;
+        private BigDecimal volume;
+        private BigDecimal change24h;
+    
+        TickerReader(Layout layout, Map<String, String> tracked) {
+            this.layout = layout;
+            this.tracked = tracked;
+        }
+    
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            if (name.equals(layout.symbolField)) {
+                originalSymbol = tracked.get(parser.getText());
+                return originalSymbol != null;
+            }
+            if (name.equals(layout.priceField)) {
+                price = new BigDecimal(parser.getText());
+            } else if (name.equals(layout.volumeField)) {
+                volume = new BigDecimal(parser.getText());
+            } else if (name.equals(layout.changeField)) {
+                change24h = new BigDecimal(parser.getText());
+            }
+            return true;
+        }
+    
+        @Override
+        public Ticker complete() {
+            return originalSymbol != null && price != null ? new Ticker(originalSymbol, price, volume, change24h) : null;
+        }
+    }
+}
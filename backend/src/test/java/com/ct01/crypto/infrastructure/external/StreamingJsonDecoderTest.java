@@ -0,0 +1,186 @@
+package com.ct01.crypto.infrastructure.external;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Потоковый разбор совпадает с разбором через дерево JsonNode при любом разбиении тела на буферы
+ */
+class StreamingJsonDecoderTest {
+    
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    private static final String OKX_BODY = """
+            {"code":"0","msg":"","data":[
+              {"symbol":"BTC-USDT","lastPrice":"42000.10","status":"TRADING","extra":{"symbol":"nested","list":[1,2]}},
+              {"symbol":"ETH-USDT","lastPrice":"2500.5","status":"BREAK"},
+              {"status":"TRADING","lastPrice":"0.00001234","symbol":"PEPE-USDT","tags":["a",{"b":"c"}]}
+            ]}""";
+    
+    @Test
+    void decodesArrayFieldAtEveryChunkBoundary() throws IOException {
+        byte[] body = OKX_BODY.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = treeParse(OBJECT_MAPPER.readTree(body).get("data"));
+    
+        for (int chunkSize = 1; chunkSize <= body.length; chunkSize++) {
+            List<String> decoded = decode(chunks(body, chunkSize), "data").collectList().block();
+    
+            assertThat(decoded).as("chunk size %d", chunkSize).isEqualTo(expected);
+        }
+        assertThat(expected).containsExactly("BTC-USDT=42000.10", "PEPE-USDT=0.00001234");
+    }
+    
+    @Test
+    void decodesRootArray() throws IOException {
+        String json = "[{\"symbol\":\"BTCUSDT\",\"lastPrice\":\"42000\",\"status\":\"TRADING\"},"
+                + "{\"symbol\":\"ETHUSDT\",\"lastPrice\":\"2500\",\"status\":\"TRADING\"}]";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    
+        List<String> decoded = decode(chunks(body, 7), null).collectList().block();
+    
+        assertThat(decoded).isEqualTo(treeParse(OBJECT_MAPPER.readTree(body)));
+    }
+    
+    @Test
+    void decodesRootObjectAsSingleElement() {
+        byte[] body = "{\"symbol\":\"BTCUSDT\",\"lastPrice\":\"42000\",\"status\":\"TRADING\"}"
+                .getBytes(StandardCharsets.UTF_8);
+    
+        StepVerifier.create(decode(chunks(body, 5), null))
+                .expectNext("BTCUSDT=42000")
+                .verifyComplete();
+    }
+    
+    @Test
+    void rootValidatorSeesScalarRootFields() {
+        byte[] body = "{\"code\":\"51001\",\"msg\":\"Instrument ID does not exist\",\"data\":[]}"
+                .getBytes(StandardCharsets.UTF_8);
+    
+        StepVerifier.create(StreamingJsonDecoder.decode(JSON_FACTORY, chunks(body, 3), "data", TickerReader::new,
+                        rootFields -> {
+                            if (!"0".equals(rootFields.get("code"))) {
+                                throw new IllegalStateException(rootFields.get("msg"));
+                            }
+                        }))
+                .expectErrorMessage("Instrument ID does not exist")
+                .verify();
+    }
+    
+    @Test
+    void failsOnTruncatedBody() {
+        byte[] body = OKX_BODY.substring(0, OKX_BODY.length() / 2).getBytes(StandardCharsets.UTF_8);
+    
+        StepVerifier.create(decode(chunks(body, 16), "data"))
+                .expectNext("BTC-USDT=42000.10")
+                .expectError(UncheckedIOException.class)
+                .verify();
+    }
+    
+    @Test
+    void decodesLargePayloadInSmallBuffers() {
+        int count = 50_000;
+        StringBuilder json = new StringBuilder("{\"code\":\"0\",\"data\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"symbol\":\"C").append(i).append("-USDT\",\"lastPrice\":\"").append(i + 1)
+                    .append(".5\",\"status\":\"TRADING\",\"padding\":\"").append("x".repeat(64)).append("\"}");
+        }
+        byte[] body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        assertThat(body.length).isGreaterThan(4 * 1024 * 1024);
+    
+        StepVerifier.create(decode(chunks(body, 8192), "data"))
+                .expectNext("C0-USDT=1.5")
+                .expectNextCount(count - 2)
+                .expectNext("C" + (count - 1) + "-USDT=" + count + ".5")
+                .verifyComplete();
+    }
+    
+    @Test
+    void releasesPooledBuffers() {
+        byte[] body = OKX_BODY.getBytes(StandardCharsets.UTF_8);
+        NettyDataBufferFactory factory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        List<NettyDataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += 10) {
+            NettyDataBuffer buffer = factory.allocateBuffer(10);
+            buffer.write(body, offset, Math.min(10, body.length - offset));
+            buffers.add(buffer);
+        }
+    
+        decode(Flux.fromIterable(buffers), "data").collectList().block();
+    
+        assertThat(buffers).allSatisfy(buffer -> assertThat(buffer.getNativeBuffer().refCnt()).isZero());
+    }
+    
+    private static Flux<String> decode(Flux<DataBuffer> body, String arrayField) {
+        return StreamingJsonDecoder.decode(JSON_FACTORY, body, arrayField, TickerReader::new, null);
+    }
+    
+    private static Flux<DataBuffer> chunks(byte[] body, int chunkSize) {
+        return Flux.range(0, (body.length + chunkSize - 1) / chunkSize)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(body, i * chunkSize, Math.min(body.length, (i + 1) * chunkSize))));
+    }
+    
+    /**
+     * Тот же отбор, что и у TickerReader, через дерево
+     */
+    private static List<String> treeParse(JsonNode array) {
+        List<String> result = new ArrayList<>();
+        for (JsonNode node : array) {
+            if ("TRADING".equals(node.path("status").asText())) {
+                result.add(node.get("symbol").asText() + "=" + node.get("lastPrice").asText());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Пара символ=цена торгуемого инструмента
+     */
+    private static final class TickerReader implements StreamingJsonDecoder.ElementReader<String> {
+    
+        private String symbol;
+        private String price;
+    
+        @Override
+        public boolean field(String name, JsonParser parser) throws IOException {
+            switch (name) {
+                case "symbol" -> symbol = parser.getText();
+                case "lastPrice" -> price = parser.getText();
+                case "status" -> {
+                    return "TRADING".equals(parser.getText());
+                }
+                default -> {
+                }
+            }
+            return true;
+        }
+    
+        @Override
+        public String complete() {
+            return symbol != null && price != null ? symbol + "=" + price : null;
+        }
+    }
+}
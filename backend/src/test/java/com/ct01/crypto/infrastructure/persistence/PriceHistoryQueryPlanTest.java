@@ -0,0 +1,344 @@
+package com.ct01.crypto.infrastructure.persistence;
+
+import com.ct01.crypto.domain.repository.PriceHistoryRepository.SeekKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Регрессия планов запросов истории цен на схеме из changelog
+ * Выборки по паре (монета, биржа) и последние цены должны идти по покрывающему индексу
+ * (coin_id, exchange_id, timestamp, id), выборки только по времени - по BRIN на timestamp.
+ * SQL берется у PriceHistoryJdbcReader: вместо выполнения запрос перехватывается и отдается в EXPLAIN.
+ * Чтения PriceHistoryRepositoryImpl из БД все идут через читатель: findLatestPrice и findLatestPricesForCoin -
+ * findLatest, findFreshData - findTickersSince, countByExchange - countByExchange,
+ * countByTimestampBetween - countBetween, streamHistoricalData - streamAfter.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PriceHistoryQueryPlanTest {
+    
+    private static final String PAIR_INDEX = "idx_price_coin_exchange_time";
+    private static final String COIN_INDEX = "idx_price_coin_time";
+    private static final String EXCHANGE_INDEX = "idx_price_exchange_time";
+    private static final String BRIN_INDEX = "idx_price_timestamp_brin";
+    
+    // Тикер каждые 250 мс по кругу пар: 300 тысяч строк заполняют текущую суточную секцию почти целиком
+    private static final String FILL_SQL = """
+            INSERT INTO price_history (coin_id, exchange_id, trading_pair, quote_currency, timestamp,
+                                       open_price, high_price, low_price, close_price, volume,
+                                       price_type, created_at)
+            SELECT c.ids[1 + g % cardinality(c.ids)],
+                   e.ids[1 + (g / cardinality(c.ids)) % cardinality(e.ids)],
+                   'PAIR/USDT', 'USDT', CURRENT_DATE + g * INTERVAL '250 milliseconds',
+                   100 + g % 1000, 100 + g % 1000, 100 + g % 1000, 100 + g % 1000, 1,
+                   'TICKER', now()
+            FROM generate_series(0, 299999) g,
+                 (SELECT array_agg(id ORDER BY id) AS ids FROM coins) c,
+                 (SELECT array_agg(id ORDER BY id) AS ids FROM exchanges) e
+            """;
+    
+    private static final String PARTITION_INDEXES_SQL = """
+            SELECT c.relname AS child, p.relname AS parent
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relkind = 'I'
+            """;
+    
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    private static JdbcTemplate jdbcTemplate;
+    private static Map<String, String> parentIndexes;
+    private static LocalDateTime day;
+    private static String dataPartition;
+    private static String exchange;
+    
+    private PriceHistoryJdbcReader reader;
+    private String capturedSql;
+    private Object[] capturedArgs;
+    
+    @BeforeAll
+    static void migrateAndFill() throws Exception {
+        DataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.xml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update(FILL_SQL);
+        // Карта видимости заполнена, как у давно записанных секций: подсчеты могут идти index-only scan
+        jdbcTemplate.execute("VACUUM ANALYZE price_history");
+    
+        parentIndexes = new HashMap<>();
+        jdbcTemplate.query(PARTITION_INDEXES_SQL,
+                rs -> { parentIndexes.put(rs.getString("child"), rs.getString("parent")); });
+        day = jdbcTemplate.queryForObject("SELECT CURRENT_DATE::timestamp", LocalDateTime.class);
+        dataPartition = "price_history_p" + day.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        exchange = jdbcTemplate.queryForObject("SELECT name FROM exchanges ORDER BY id LIMIT 1", String.class);
+    }
+    
+    @BeforeEach
+    void createReader() {
+        DataSource dataSource = new CapturingDataSource(jdbcTemplate.getDataSource());
+        reader = new PriceHistoryJdbcReader(new CapturingJdbcTemplate(dataSource),
+                new DataSourceTransactionManager(dataSource),
+                new ReferenceIdResolver(jdbcTemplate), 1000);
+    }
+    
+    @Test
+    void latestPricesOfPairsUseCoveringIndex() {
+        reader.findLatest(List.of("BTC", "ETH"), List.of(exchange));
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void latestPricesOnAllExchangesUseCoveringIndex() {
+        reader.findLatest(List.of("BTC"), List.of());
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void seekPageOfPairUsesCoveringIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.findAfter("BTC", exchange, from, from.plusHours(1), new SeekKey(from.plusMinutes(5), 0), 500);
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void offsetPageOfPairUsesCoveringIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.findPage("BTC", exchange, from, from.plusHours(1), 100, 500);
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void recentHistoryOfPairUsesCoveringIndex() {
+        reader.findSince("BTC", exchange, day.plusHours(20));
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void countOfPairUsesCoveringIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.count("BTC", exchange, from, from.plusHours(1));
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void streamOfPairUsesCoveringIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.streamAfter("BTC", exchange, from, from.plusHours(1), new SeekKey(from.plusMinutes(5), 0),
+                price -> { });
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void countEstimateOfPairUsesCoveringIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.estimateCount("BTC", exchange, from, from.plusHours(1));
+    
+        assertPlanUses(PAIR_INDEX);
+    }
+    
+    @Test
+    void pageOfCoinOnAllExchangesUsesCoinIndex() {
+        LocalDateTime from = day.plusHours(10);
+        reader.findPage("BTC", null, from, from.plusHours(1), 0, 500);
+    
+        assertPlanUses(COIN_INDEX);
+    }
+    
+    @Test
+    void countOfExchangeUsesExchangeIndex() {
+        reader.countByExchange(exchange);
+    
+        assertPlanUses(EXCHANGE_INDEX);
+    }
+    
+    @Test
+    void timeRangeCountUsesBrin() {
+        LocalDateTime from = day.plusHours(10);
+        reader.countBetween(from, from.plusMinutes(10));
+    
+        assertPlanUses(BRIN_INDEX);
+    }
+    
+    @Test
+    void freshTickersUseBrin() {
+        reader.findTickersSince(day.plusHours(20).plusMinutes(40));
+    
+        assertPlanUses(BRIN_INDEX);
+    }
+    
+    @Test
+    void retentionDeleteUsesBrin() {
+        capture("DELETE FROM price_history WHERE timestamp < ?", day.plusMinutes(10));
+    
+        assertPlanUses(BRIN_INDEX);
+    }
+    
+    /**
+     * Перехваченный запрос читает секцию с данными только через заданный индекс; пустые секции не проверяются,
+     * на них планировщику все равно, каким путем идти
+     */
+    private void assertPlanUses(String index) {
+        assertThat(capturedSql).as("captured query").isNotNull();
+        // Оценка количества сама выполняет EXPLAIN, ее запрос отдается как есть
+        String explain = capturedSql.startsWith("EXPLAIN") ? capturedSql : "EXPLAIN (FORMAT JSON) " + capturedSql;
+        String plan = jdbcTemplate.queryForObject(explain, String.class, capturedArgs);
+        Set<String> scans = new HashSet<>();
+        try {
+            collectScans(OBJECT_MAPPER.readTree(plan).get(0).get("Plan"), null, scans);
+        } catch (Exception e) {
+            throw new AssertionError("Unreadable plan: " + plan, e);
+        }
+    
+        assertThat(scans).as("scans of %s in plan %s", dataPartition, plan).containsExactly(index);
+    }
+    
+    /**
+     * Пути чтения секции с данными: родительский индекс или "Seq Scan"
+     * Bitmap Index Scan не несет имени таблицы и берет его у Bitmap Heap Scan выше
+     */
+    private static void collectScans(JsonNode node, String relation, Set<String> scans) {
+        String current = node.hasNonNull("Relation Name") ? node.get("Relation Name").asText() : relation;
+        if (dataPartition.equals(current)) {
+            if (node.hasNonNull("Index Name")) {
+                String name = node.get("Index Name").asText();
+                scans.add(parentIndexes.getOrDefault(name, name));
+            } else if ("Seq Scan".equals(node.path("Node Type").asText())) {
+                scans.add("Seq Scan");
+            }
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectScans(child, current, scans);
+        }
+    }
+    
+    private void capture(String sql, Object... args) {
+        this.capturedSql = sql;
+        this.capturedArgs = args;
+    }
+    
+    /**
+     * JdbcTemplate, который запоминает последний запрос читателя вместо выполнения
+     */
+    private final class CapturingJdbcTemplate extends JdbcTemplate {
+    
+        CapturingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+    
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            capture(sql, args);
+            return List.of();
+        }
+    
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            capture(sql, args);
+            return null;
+        }
+    }
+    
+    /**
+     * Источник соединений, который запоминает подготовленные запросы и их параметры
+     * Курсорное чтение идет через собственный JdbcTemplate читателя, поэтому перехватывается
+     * на уровне соединения; сам запрос при этом выполняется
+     */
+    private final class CapturingDataSource extends DelegatingDataSource {
+    
+        CapturingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+    
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, (method, args) -> {
+                Object result = invoke(connection, method, args);
+                if ("prepareStatement".equals(method.getName())) {
+                    return capturing((String) args[0], (PreparedStatement) result);
+                }
+                return result;
+            });
+        }
+    
+        private PreparedStatement capturing(String sql, PreparedStatement statement) {
+            List<Object> parameters = new ArrayList<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2
+                        && args[0] instanceof Integer index) {
+                    while (parameters.size() < index) {
+                        parameters.add(null);
+                    }
+                    parameters.set(index - 1, "setNull".equals(method.getName()) ? null : args[1]);
+                } else if (method.getName().startsWith("execute")) {
+                    capture(sql, parameters.toArray());
+                }
+                return invoke(statement, method, args);
+            });
+        }
+    }
+    
+    private interface Invocation {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+    
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> invocation.invoke(method, args)));
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}